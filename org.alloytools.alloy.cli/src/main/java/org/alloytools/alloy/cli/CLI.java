@@ -23,6 +23,7 @@ import java.util.stream.Collectors;
 
 import org.alloytools.alloy.dto.CommandDTO;
 import org.alloytools.alloy.dto.ExecutionDTO;
+import org.alloytools.alloy.dto.PhaseDTO;
 import org.alloytools.alloy.dto.SolutionDTO;
 import org.alloytools.alloy.infrastructure.api.AlloyMain;
 import org.alloytools.util.table.Table;
@@ -133,6 +134,9 @@ public class CLI extends Env {
 
 		@Description("Find multiple solutions, up to this number. Use 0 for as many as can be found. The default is 1, only the first solution.")
 		int repeat(int deflt);
+
+		@Description("Number of solutions computed ahead in the background while the previous ones are written when repeating. The default is 0, none.")
+		int prefetch(int deflt);
 		
 		@Description("Turn off the generation of multiplicy bounds for solvers")
 		boolean multboundsoff();
@@ -143,6 +147,21 @@ public class CLI extends Env {
 		@Description("Generate full temporal symmetries")
 		boolean tempsyms();
 
+		@Description("A file whose first line holds additional arguments for hypersmv when checking hyperproperties")
+		String hypersmvconfig(String deflt);
+
+		@Description("Search hyperproperty witnesses with increasing trace lengths, stopping at the first one found")
+		boolean iterative();
+
+		@Description("Bypass the persistent verdict cache, which is enabled by setting the alloy.verdict.cache system property to its directory")
+		boolean nocache();
+
+		@Description("Reuse the SMV models of trace models across runs, kept in the directory given by the alloy.hypermc.cache system property (by default ~/.alloy/hypermc)")
+		boolean smvcache();
+
+		@Description("Reuse the fair-state verdicts of trace models across runs, kept in the directory given by the alloy.fairstates.cache system property (by default ~/.alloy/fairstates)")
+		boolean fairstatescache();
+
 	}
 
 	/**
@@ -165,6 +184,12 @@ public class CLI extends Env {
 		opt.symmetry = options.ymmetry(opt.symmetry);
 		opt.noSelfCompose = options.compositionoff();
 		opt.tempSymmetries = options.tempsyms();
+		opt.hypersmvConfig = options.hypersmvconfig(null);
+		opt.iterativeBounds = options.iterative();
+		opt.noVerdictCache = options.nocache();
+		opt.smvCache = options.smvcache();
+		opt.fairStatesCache = options.fairstatescache();
+		opt.prefetch = options.prefetch(0);
 		opt.noMultBounds = options.multboundsoff();
 
 		Optional<SATFactory> solver = SATFactory.find(options.solver("sat4j"));
@@ -234,6 +259,7 @@ public class CLI extends Env {
 		receipt.noMultBounds = opt.noMultBounds;
 		receipt.tempSymmetries = opt.tempSymmetries;
 		receipt.noSelfCompose = opt.noSelfCompose;
+		receipt.iterativeBounds = opt.iterativeBounds;
 		receipt.symmetry = opt.symmetry;
 		receipt.unrolls = opt.unrolls;
 		receipt.coreGranularity = opt.coreGranularity;
@@ -261,6 +287,7 @@ public class CLI extends Env {
 
 			CommandDTO commandReceipt = Util.toDTO(c, source);
 			receipt.commands.put(c.label, commandReceipt);
+			rep.phases = commandReceipt.phases;
 
 			int index = 0;
 			trace.format("%02d. %-5s %-20s ", n, c.check ? "check" : "run", c.label);
@@ -306,6 +333,15 @@ public class CLI extends Env {
 					}
 				}
 				n++;
+				for (PhaseDTO phase : commandReceipt.phases) {
+					PhaseDTO total = receipt.phases.computeIfAbsent(phase.name, k -> {
+						PhaseDTO p = new PhaseDTO();
+						p.name = k;
+						return p;
+					});
+					total.millis += phase.millis;
+					total.peakRss = Math.max(total.peakRss, phase.peakRss);
+				}
 				if (outdir != null)
 					try {
 						File receiptFile = IO.getFile(outdir, "receipt.json");
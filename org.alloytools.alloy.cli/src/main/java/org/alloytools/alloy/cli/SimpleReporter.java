@@ -2,6 +2,10 @@ package org.alloytools.alloy.cli;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alloytools.alloy.dto.PhaseDTO;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +25,7 @@ class SimpleReporter extends A4Reporter {
 
 	Env cli;
 	File output;
+	List<PhaseDTO> phases = new ArrayList<>();
 
 	public SimpleReporter(Env cli) throws IOException {
 		this.cli = cli;
@@ -66,6 +71,18 @@ class SimpleReporter extends A4Reporter {
 			db("   " + totalVars + " vars. " + primaryVars + " primary vars. " + clauses + " clauses.\n");
 	}
 
+	@Override
+	public void phase(String phase, long millis, long peakRss) {
+		PhaseDTO dto = new PhaseDTO();
+		dto.name = phase;
+		dto.millis = millis;
+		dto.peakRss = peakRss;
+		synchronized (phases) {
+			phases.add(dto);
+		}
+		cli.trace("%s took %sms, peak rss %skB", phase, millis, peakRss);
+	}
+
 	@Override
 	public void resultCNF(String filename) {
 		cli.trace("received cnf file %s", filename);
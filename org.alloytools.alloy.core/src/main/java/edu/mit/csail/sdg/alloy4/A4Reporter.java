@@ -219,6 +219,35 @@ public class A4Reporter {
             parent.resultUNSAT(command, solvingTime, solution);
     }
 
+    /**
+     * This method is called when a phase of the analysis has finished, in
+     * particular the stages of the hyperproperty pipeline that run external tools
+     * (translation of each trace, SMV generation, fair-state check, hyper model
+     * checking, witness replay and decoding).
+     *
+     * @param phase - the name of the phase
+     * @param millis - the number of milliseconds spent in the phase
+     * @param peakRss - the peak resident set size sampled during the phase, in
+     *            kilobytes, or -1 if unavailable
+     */
+    public void phase(String phase, long millis, long peakRss) {
+        if (parent != null)
+            parent.phase(phase, millis, peakRss);
+    }
+
+    /**
+     * This method is called periodically while solving with a decompose strategy,
+     * if enabled, with a snapshot of its live metrics (configurations per second,
+     * queue depth, busy and idle solver threads, time histograms and the winning
+     * problem).
+     *
+     * @param json - the metrics, as a JSON object
+     */
+    public void metrics(String json) {
+        if (parent != null)
+            parent.metrics(json);
+    }
+
     /**
      * This method is called by the A4SolutionWriter when it is writing a particular
      * sig, field, or skolem.
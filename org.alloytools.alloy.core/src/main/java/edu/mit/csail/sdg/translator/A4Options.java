@@ -102,6 +102,14 @@ public final class A4Options implements Serializable {
      */
     public String     tempDirectory        = System.getProperty("java.io.tmpdir");
 
+    /**
+     * A file whose first line holds additional arguments for hypersmv, when
+     * checking hyperproperties; relative to the working directory of the JVM.
+     * <p>
+     * Default value is null, no additional arguments.
+     */
+    public String     hypersmvConfig       = null;
+
     /**
      * This option tells the compiler the "original filename" that these AST nodes
      * came from; it is only used for generating comments and other diagnostic
@@ -127,6 +135,7 @@ public final class A4Options implements Serializable {
     public boolean    noMultBounds         = false;
     public boolean    tempSymmetries       = false;
     public boolean    noSelfCompose        = false;
+    public boolean    iterativeBounds      = false;
 
     /**
      * This option constrols how deep we unroll loops and unroll recursive
@@ -149,6 +158,97 @@ public final class A4Options implements Serializable {
      */
     public int        decompose_threads    = 4;
 
+    /**
+     * This option specifies whether, when following a decompose strategy, each
+     * thread translates the integrated problem once and solves the
+     * configurations incrementally under assumptions
+     * <p>
+     * Default value is false.
+     */
+    public boolean    decompose_incremental = false;
+
+    /**
+     * This option specifies the period, in milliseconds, at which the live
+     * metrics of a decompose strategy are reported to the A4Reporter as JSON
+     * snapshots, and exported through JMX while solving; 0 disables them
+     * <p>
+     * Default value is 0.
+     */
+    public long       decompose_metrics    = 0;
+
+    /**
+     * This option specifies whether the integrated problems of a decompose
+     * strategy are solved by worker JVMs launched for the solver threads, which
+     * receive the problem once and then each configuration; otherwise, or if
+     * the problem cannot be shipped, they are solved locally
+     * <p>
+     * Default value is false.
+     */
+    public boolean    decompose_distributed = false;
+
+    /**
+     * This option specifies the maximum number of trace models of a
+     * hyperproperty that are solved and checked concurrently
+     * <p>
+     * Default value is the number of available processors.
+     */
+    public int        trace_threads        = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * This option specifies the BMC bound of the fair-state precheck of the
+     * trace models of a hyperproperty (non-positive skips the precheck)
+     * <p>
+     * Default value is 99.
+     */
+    public int        fairStatesBound      = 99;
+
+    /**
+     * This option specifies the deadline in milliseconds of the fair-state
+     * precheck of each trace model, after which it is deemed inconclusive
+     * (non-positive means no deadline)
+     * <p>
+     * Default value is 0.
+     */
+    public long       fairStatesTimeout    = 0;
+
+    /**
+     * This option caches the conclusive verdicts of the fair-state precheck,
+     * in memory and across runs, in the directory given by the system property
+     * alloy.fairstates.cache (by default ~/.alloy/fairstates) and capped by
+     * alloy.fairstates.cache.mb megabytes.
+     * <p>
+     * Default value is false.
+     */
+    public boolean    fairStatesCache      = false;
+
+    /**
+     * This option disables the persistent verdict cache for this execution, which
+     * is only active when the system property alloy.verdict.cache points to its
+     * directory.
+     * <p>
+     * Default value is false.
+     */
+    public boolean    noVerdictCache       = false;
+
+    /**
+     * This option enables the persistent cache of the SMV models generated by
+     * Electrod for the trace models of hyperproperties, kept in the directory
+     * given by the system property alloy.hypermc.cache (by default
+     * ~/.alloy/hypermc) and capped by alloy.hypermc.cache.mb megabytes.
+     * <p>
+     * Default value is false.
+     */
+    public boolean    smvCache             = false;
+
+    /**
+     * This option specifies the number of solutions that are computed ahead on a
+     * background thread when iterating over temporal solutions, while the
+     * previous ones are being processed.
+     * <p>
+     * Default value is 0, solutions are only computed when requested.
+     */
+    public int        prefetch             = 0;
+
     /** Whether to use higher order solver */
     public boolean    higherOrderSolver    = false;
     public boolean    holFullIncrements    = false;
@@ -170,15 +270,27 @@ public final class A4Options implements Serializable {
         x.solver = solver;
         x.solverDirectory = solverDirectory;
         x.tempDirectory = tempDirectory;
+        x.hypersmvConfig = hypersmvConfig;
         x.originalFilename = originalFilename;
         x.recordKodkod = recordKodkod;
         x.noOverflow = noOverflow;
         x.noSelfCompose = noSelfCompose;
+        x.iterativeBounds = iterativeBounds;
         x.noMultBounds = noMultBounds;
         x.tempSymmetries = tempSymmetries;
         x.coreGranularity = coreGranularity;
         x.decompose_mode = decompose_mode;
         x.decompose_threads = decompose_threads;
+        x.decompose_incremental = decompose_incremental;
+        x.decompose_metrics = decompose_metrics;
+        x.decompose_distributed = decompose_distributed;
+        x.trace_threads = trace_threads;
+        x.fairStatesBound = fairStatesBound;
+        x.fairStatesTimeout = fairStatesTimeout;
+        x.fairStatesCache = fairStatesCache;
+        x.noVerdictCache = noVerdictCache;
+        x.smvCache = smvCache;
+        x.prefetch = prefetch;
         return x;
     }
 
@@ -411,6 +411,9 @@ public final class A4Solution {
         solver_opts.setNoOverflow(opt.noOverflow);
         solver_opts.setNoMultBounds(opt.noMultBounds);
         solver_opts.setTempSymmetries(opt.tempSymmetries);
+        solver_opts.setHyperSMVConfig(opt.hypersmvConfig);
+        solver_opts.setSMVCache(opt.smvCache);
+        solver_opts.setPrefetch(opt.prefetch);
         solver_opts.setAllowHOL(true); // [HYPER] fix this, check for HO quants
         solver_opts.setMaxTraceLength(maxtrace);
         solver_opts.setMinTraceLength(mintrace);
@@ -423,6 +426,9 @@ public final class A4Solution {
                 solver_opts.setDecomposedMode(DMode.PARALLEL);
             if (opt.decompose_threads > 0)
                 solver_opts.setThreads(opt.decompose_threads);
+            solver_opts.setIncrementalIntegration(opt.decompose_incremental);
+            solver_opts.setMetricsPeriod(opt.decompose_metrics);
+            solver_opts.setRunDistributed(opt.decompose_distributed);
         } else {
             solver_opts.setRunDecomposed(false);
         }
@@ -599,6 +605,20 @@ public final class A4Solution {
         solved = true;
     }
 
+    /**
+     * Marks this solution as unsatisfiable without solving, used when the verdict
+     * of the command is already known.
+     */
+    A4Solution unsatisfiable() {
+        solved();
+        return this;
+    }
+
+    /** Returns the options that generated this solution. */
+    A4Options getOriginalOptions() {
+        return originalOptions;
+    }
+
     public boolean createAtomRelations() {
         return originalOptions.higherOrderSolver;
     }
@@ -1696,6 +1716,19 @@ public final class A4Solution {
                 finalbounds = (PardinusBounds) bounds;
             }
 
+            @Override
+            // reported concurrently by the trace models of hyperproperties
+            public synchronized void phase(String phase, long millis, long peakRss) {
+                if (rep != null)
+                    rep.phase(phase, millis, peakRss);
+            }
+
+            @Override
+            public synchronized void reportMetrics(String json) {
+                if (rep != null)
+                    rep.metrics(json);
+            }
+
             @Override
             public void holLoopStart(HOLTranslation tr, Formula f, Bounds b) {
                 rep.holLoopStart(tr, f, b);
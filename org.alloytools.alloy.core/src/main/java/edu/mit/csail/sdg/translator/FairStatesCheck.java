@@ -0,0 +1,270 @@
+package edu.mit.csail.sdg.translator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.ErrorWarning;
+import kodkod.solvers.api.NativeCode;
+import kodkod.solvers.api.PhaseTimer;
+
+/**
+ * The fair-state precheck of the trace models of a hyperproperty. A trace model
+ * can only be converted into the outermost formula if its FSM has some fair
+ * path, which is checked with nuXmv by searching for a counterexample to
+ * "F FALSE" up to a bound.
+ * <p>
+ * The nuXmv session is killed as soon as a verdict line is printed, or when the
+ * deadline expires. If no verdict is printed, either because the deadline
+ * expired or because nuXmv failed, a warning is reported and the model is
+ * assumed fair. With {@link A4Options#fairStatesCache}, conclusive verdicts are
+ * cached by the hash of the SMV model and the bound, both in memory, for up to
+ * {@value #MEMORY_ENTRIES} models, and in the directory given by the system
+ * property {@code alloy.fairstates.cache} (by default
+ * {@code ~/.alloy/fairstates}), evicting the least recently used entries once
+ * it exceeds {@code alloy.fairstates.cache.mb} megabytes (by default 1).
+ */
+final class FairStatesCheck {
+
+    /** The outcome of a precheck. */
+    enum Verdict {
+                  /** Some fair path exists. */
+                  FAIR,
+                  /** No fair path exists up to the bound. */
+                  UNFAIR,
+                  /**
+                   * No verdict was printed, as the deadline expired or nuXmv
+                   * failed.
+                   */
+                  UNKNOWN
+    }
+
+    /** The number of output lines reported when nuXmv fails. */
+    static final int                              OUTPUT_LINES = 20;
+
+    static final FairStatesCheck                  INSTANCE = new FairStatesCheck(System.getProperty("alloy.fairstates.cache"), Long.getLong("alloy.fairstates.cache.mb", 1) * 1024 * 1024);
+
+    private static final ScheduledExecutorService timer    = Executors.newSingleThreadScheduledExecutor(r -> {
+                                                               Thread t = new Thread(r, "fair-states-deadline");
+                                                               t.setDaemon(true);
+                                                               return t;
+                                                           });
+
+    /** The number of verdicts cached in memory. */
+    static final int                              MEMORY_ENTRIES = 256;
+
+    private final Map<String,Verdict>             verdicts       = Collections.synchronizedMap(new LinkedHashMap<String,Verdict>(16, 0.75f, true) {
+
+                                                                     private static final long serialVersionUID = 1L;
+
+                                                                     @Override
+                                                                     protected boolean removeEldestEntry(Map.Entry<String,Verdict> eldest) {
+                                                                         return size() > MEMORY_ENTRIES;
+                                                                     }
+                                                                 });
+    private final File                            root;
+    private final long                            limit;
+
+    /**
+     * @param dir - the directory of the persistent cache, or null for the default
+     *            one; only created once a verdict is persisted
+     * @param limit - the maximum size of the persistent cache in bytes
+     */
+    FairStatesCheck(String dir, long limit) {
+        this.root = dir != null ? new File(dir) : new File(System.getProperty("user.home"), ".alloy" + File.separator + "fairstates");
+        this.limit = limit;
+    }
+
+    /**
+     * Checks whether an SMV model has fair paths.
+     *
+     * @param rep - the reporter
+     * @param smvfile - the SMV model to be checked
+     * @param bound - the BMC bound of the search
+     * @param timeout - the deadline in milliseconds, non-positive for none
+     * @param cache - whether verdicts are cached
+     * @return the verdict
+     */
+    Verdict check(A4Reporter rep, File smvfile, int bound, long timeout, boolean cache) throws IOException, InterruptedException {
+        String key = cache ? key(Files.readAllBytes(smvfile.toPath()), bound) : null;
+        Verdict verdict = cache ? cached(key) : null;
+        if (verdict != null) {
+            rep.debug("reusing fair-state verdict " + verdict + " for " + smvfile.getName());
+            return verdict;
+        }
+
+        File nx = NativeCode.platform.getExecutable("nuXmv").orElse(null);
+        if (nx == null)
+            throw new RuntimeException("Can't find nuxmv");
+        // the script is piped through an interactive session on the run's own
+        // SMV file, so nothing is written to the CWD
+        ProcessBuilder builder = new ProcessBuilder(nx.getAbsolutePath(), "-int", smvfile.getAbsolutePath());
+        builder.redirectErrorStream(true);
+        PhaseTimer phase = PhaseTimer.start("nuxmv precheck");
+        Process process = builder.start();
+        phase.watch(process);
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture< ? > deadline = timeout > 0 ? timer.schedule(() -> {
+            expired.set(true);
+            process.destroyForcibly();
+        }, timeout, TimeUnit.MILLISECONDS) : null;
+        StringBuilder output = new StringBuilder();
+        int exitCode;
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()))) {
+                writer.write("set on_failure_script_quits\ngo_bmc\ncheck_ltlspec_bmc_inc -k " + bound + " -l * -p \"F FALSE\"\nquit\n");
+            } catch (IOException e) {
+                // nuXmv quit before reading the script, its output tells why
+            }
+            verdict = parse(new BufferedReader(new InputStreamReader(process.getInputStream())), bound, output);
+            exitCode = verdict == Verdict.UNKNOWN ? process.waitFor() : 0;
+        } finally {
+            if (deadline != null)
+                deadline.cancel(false);
+            process.destroyForcibly();
+            phase.stop();
+            rep.phase(phase.name(), phase.millis(), phase.peakRss());
+        }
+
+        // an inconclusive verdict depends on the deadline or the failure and
+        // is never cached
+        if (verdict == Verdict.UNKNOWN && expired.get())
+            rep.warning(new ErrorWarning("The fair-state check of " + smvfile.getName() + " was inconclusive within " + timeout + "ms, the trace model is assumed to have fair states."));
+        else if (verdict == Verdict.UNKNOWN)
+            rep.warning(new ErrorWarning("The fair-state check of " + smvfile.getName() + " failed, nuXmv exited with code " + exitCode + " without a verdict, the trace model is assumed to have fair states:\n" + output.toString().trim()));
+        else if (cache)
+            store(key, verdict);
+        return verdict;
+    }
+
+    /**
+     * Reads the verdict of the precheck from the output of nuXmv, stopping at the
+     * first verdict line.
+     *
+     * @param reader - the output of nuXmv
+     * @param bound - the BMC bound of the search
+     * @return the verdict, unknown if the output ends without one
+     */
+    static Verdict parse(BufferedReader reader, int bound) throws IOException {
+        return parse(reader, bound, new StringBuilder());
+    }
+
+    /**
+     * Reads the verdict of the precheck from the output of nuXmv, stopping at the
+     * first verdict line, and keeping the last lines read.
+     *
+     * @param reader - the output of nuXmv
+     * @param bound - the BMC bound of the search
+     * @param output - where the last {@value #OUTPUT_LINES} lines are kept
+     * @return the verdict, unknown if the output ends without one
+     */
+    static Verdict parse(BufferedReader reader, int bound, StringBuilder output) throws IOException {
+        Deque<String> last = new ArrayDeque<String>();
+        String line;
+        try {
+            while ((line = reader.readLine()) != null) {
+                last.addLast(line);
+                if (last.size() > OUTPUT_LINES)
+                    last.removeFirst();
+                // the whole bound, as bound 1 is a prefix of bound 10
+                if (line.trim().endsWith("no counterexample found with bound " + bound))
+                    return Verdict.UNFAIR;
+                // the counterexample itself is not needed
+                if (line.contains("is false"))
+                    return Verdict.FAIR;
+            }
+            return Verdict.UNKNOWN;
+        } finally {
+            for (String l : last)
+                output.append(l).append('\n');
+        }
+    }
+
+    /**
+     * Computes the key of a precheck.
+     *
+     * @param smv - the contents of the SMV model
+     * @param bound - the BMC bound of the search
+     * @return the key
+     */
+    static String key(byte[] smv, int bound) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(smv))
+                sb.append(String.format("%02x", b));
+            return sb.append('-').append(bound).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Verdict cached(String key) {
+        Verdict verdict = verdicts.get(key);
+        if (verdict == null) {
+            File f = new File(root, key);
+            try {
+                if (f.isFile()) {
+                    verdicts.put(key, verdict = Verdict.valueOf(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim()));
+                    f.setLastModified(System.currentTimeMillis());
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // treated as a miss
+            }
+        }
+        return verdict;
+    }
+
+    void store(String key, Verdict verdict) {
+        if (verdict == Verdict.UNKNOWN)
+            return;
+        verdicts.put(key, verdict);
+        if (!root.isDirectory() && !root.mkdirs())
+            return;
+        try {
+            File tmp = File.createTempFile(key, ".tmp", root);
+            Files.write(tmp.toPath(), verdict.name().getBytes(StandardCharsets.UTF_8));
+            if (!tmp.renameTo(new File(root, key)))
+                tmp.delete();
+        } catch (IOException e) {
+            // caching is best effort
+            return;
+        }
+        evict();
+    }
+
+    private synchronized void evict() {
+        File[] entries = root.listFiles((File d, String name) -> !name.endsWith(".tmp"));
+        if (entries == null)
+            return;
+        long size = 0;
+        for (File f : entries)
+            size += f.length();
+        if (size <= limit)
+            return;
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length && size > limit; i++) {
+            size -= entries[i].length();
+            entries[i].delete();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package edu.mit.csail.sdg.translator;
+
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.ErrorWarning;
+import edu.mit.csail.sdg.ast.Sig;
+import edu.mit.csail.sdg.ast.Sig.PrimSig;
+import kodkod.ast.Formula;
+import kodkod.engine.hol.HOLTranslation;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+
+/**
+ * Forwards every message to another reporter, one at a time, so that a reporter
+ * that is not thread-safe can be shared by the threads solving the trace models
+ * of a hyperproperty.
+ */
+final class SynchronizedReporter extends A4Reporter {
+
+    SynchronizedReporter(A4Reporter reporter) {
+        super(reporter);
+    }
+
+    @Override
+    public synchronized void debug(String msg) {
+        super.debug(msg);
+    }
+
+    @Override
+    public synchronized void parse(String msg) {
+        super.parse(msg);
+    }
+
+    @Override
+    public synchronized void typecheck(String msg) {
+        super.typecheck(msg);
+    }
+
+    @Override
+    public synchronized void warning(ErrorWarning msg) {
+        super.warning(msg);
+    }
+
+    @Override
+    public synchronized void scope(String msg) {
+        super.scope(msg);
+    }
+
+    @Override
+    public synchronized void bound(String msg) {
+        super.bound(msg);
+    }
+
+    @Override
+    public synchronized void generatingSolution(Formula fgoal, Bounds bounds) {
+        super.generatingSolution(fgoal, bounds);
+    }
+
+    @Override
+    public synchronized void translate(String solver, int bitwidth, int maxseq, int mintrace, int maxtrace, int skolemDepth, int symmetry, String strat) {
+        super.translate(solver, bitwidth, maxseq, mintrace, maxtrace, skolemDepth, symmetry, strat);
+    }
+
+    @Override
+    public synchronized void solve(int plength, int primaryVars, int totalVars, int clauses) {
+        super.solve(plength, primaryVars, totalVars, clauses);
+    }
+
+    @Override
+    public synchronized void resultCNF(String filename) {
+        super.resultCNF(filename);
+    }
+
+    @Override
+    public synchronized void resultSAT(Object command, long solvingTime, Object solution) {
+        super.resultSAT(command, solvingTime, solution);
+    }
+
+    @Override
+    public synchronized void minimizing(Object command, int before) {
+        super.minimizing(command, before);
+    }
+
+    @Override
+    public synchronized void minimized(Object command, int before, int after) {
+        super.minimized(command, before, after);
+    }
+
+    @Override
+    public synchronized void resultUNSAT(Object command, long solvingTime, Object solution) {
+        super.resultUNSAT(command, solvingTime, solution);
+    }
+
+    @Override
+    public synchronized void phase(String phase, long millis, long peakRss) {
+        super.phase(phase, millis, peakRss);
+    }
+
+    @Override
+    public synchronized void metrics(String json) {
+        super.metrics(json);
+    }
+
+    @Override
+    public synchronized void write(Object expr) {
+        super.write(expr);
+    }
+
+    @Override
+    public synchronized void actualScopes(Iterable<Sig> sigs, Map<PrimSig,Integer> sig2scope, Set<Sig> set) {
+        super.actualScopes(sigs, sig2scope, set);
+    }
+
+    @Override
+    public synchronized void holLoopStart(HOLTranslation tr, Formula formula, Bounds bounds) {
+        super.holLoopStart(tr, formula, bounds);
+    }
+
+    @Override
+    public synchronized void holCandidateFound(HOLTranslation tr, Instance candidate) {
+        super.holCandidateFound(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holVerifyingCandidate(HOLTranslation tr, Instance candidate, Formula checkFormula, Bounds bounds) {
+        super.holVerifyingCandidate(tr, candidate, checkFormula, bounds);
+    }
+
+    @Override
+    public synchronized void holCandidateVerified(HOLTranslation tr, Instance candidate) {
+        super.holCandidateVerified(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holCandidateNotVerified(HOLTranslation tr, Instance candidate, Instance cex) {
+        super.holCandidateNotVerified(tr, candidate, cex);
+    }
+
+    @Override
+    public synchronized void holFindingNextCandidate(HOLTranslation tr, Formula inc) {
+        super.holFindingNextCandidate(tr, inc);
+    }
+
+    @Override
+    public synchronized void holFindingNextCandidate(HOLTranslation tr, Instance inc) {
+        super.holFindingNextCandidate(tr, inc);
+    }
+
+    @Override
+    public synchronized void holSplitStart(HOLTranslation tr, Formula formula) {
+        super.holSplitStart(tr, formula);
+    }
+
+    @Override
+    public synchronized void holSplitChoice(HOLTranslation tr, Formula formula, Bounds bounds) {
+        super.holSplitChoice(tr, formula, bounds);
+    }
+
+    @Override
+    public synchronized void holSplitChoiceSAT(HOLTranslation tr, Instance inst) {
+        super.holSplitChoiceSAT(tr, inst);
+    }
+
+    @Override
+    public synchronized void holSplitChoiceUNSAT(HOLTranslation tr) {
+        super.holSplitChoiceUNSAT(tr);
+    }
+
+    @Override
+    public synchronized void holFixpointStart(HOLTranslation tr, Formula formula, Bounds bounds) {
+        super.holFixpointStart(tr, formula, bounds);
+    }
+
+    @Override
+    public synchronized void holFixpointNoSolution(HOLTranslation tr) {
+        super.holFixpointNoSolution(tr);
+    }
+
+    @Override
+    public synchronized void holFixpointFirstSolution(HOLTranslation tr, Instance candidate) {
+        super.holFixpointFirstSolution(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holFixpointIncrementing(HOLTranslation tr, Formula inc) {
+        super.holFixpointIncrementing(tr, inc);
+    }
+
+    @Override
+    public synchronized void holFixpointIncrementingOutcome(HOLTranslation tr, Instance next) {
+        super.holFixpointIncrementingOutcome(tr, next);
+    }
+
+    @Override
+    public synchronized void holCandidateFound(HOLTranslation tr, A4Solution candidate) {
+        super.holCandidateFound(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holVerifyingCandidate(HOLTranslation tr, A4Solution c, Formula cf, Bounds b) {
+        super.holVerifyingCandidate(tr, c, cf, b);
+    }
+
+    @Override
+    public synchronized void holCandidateVerified(HOLTranslation tr, A4Solution candidate) {
+        super.holCandidateVerified(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holCandidateNotVerified(HOLTranslation tr, A4Solution candidate, A4Solution cex) {
+        super.holCandidateNotVerified(tr, candidate, cex);
+    }
+
+    @Override
+    public synchronized void holSplitChoiceSAT(HOLTranslation tr, A4Solution inst) {
+        super.holSplitChoiceSAT(tr, inst);
+    }
+
+    @Override
+    public synchronized void holFixpointFirstSolution(HOLTranslation tr, A4Solution candidate) {
+        super.holFixpointFirstSolution(tr, candidate);
+    }
+
+    @Override
+    public synchronized void holFixpointIncrementingOutcome(HOLTranslation tr, A4Solution next) {
+        super.holFixpointIncrementingOutcome(tr, next);
+    }
+}
@@ -2,6 +2,7 @@ package edu.mit.csail.sdg.translator;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,6 +36,7 @@ import edu.mit.csail.sdg.ast.Sig.PrimSig;
 import edu.mit.csail.sdg.ast.VisitQuery;
 import edu.mit.csail.sdg.ast.VisitReturn;
 import edu.mit.csail.sdg.parser.Macro;
+import kodkod.solvers.api.PhaseTimer;
 
 public class TraceModels {
 
@@ -46,6 +48,7 @@ public class TraceModels {
 
     public TraceModels(A4Reporter rep, Iterable<Sig> sigs, Command cmd, A4Options opt) throws Err, IOException, InterruptedException {
         TranslateAlloyToKodkod tr = new TranslateAlloyToKodkod(rep, opt, sigs, cmd, false);
+        Map<ExprHasName,TranslateAlloyToKodkod> models = new HashMap<ExprHasName,TranslateAlloyToKodkod>();
 
         opt.skolemDepth = 3;
         opt.unrolls = 3;
@@ -65,10 +68,22 @@ public class TraceModels {
             state_var2sig.put(state_var, state_sig);
         }
 
-        Map<ExprHasName,String> state_var2smv = new HashMap<ExprHasName,String>();
         Replacer replacer = new Replacer(state_var2sig, mc_quants);
-
+        // under self-composition several trace variables usually range over the
+        // same sig with the same local facts, these share a single model
+        Map<ExprHasName,Expr> state_var2formula = new HashMap<ExprHasName,Expr>();
+        Map<List<Object>,List<ExprHasName>> shared = new LinkedHashMap<List<Object>,List<ExprHasName>>();
         for (ExprHasName state_var : tdf.vars) {
+            List<Expr> state_formulas_var = state_var_formulas.get(state_var);
+            state_formulas_var.add(ExprConstant.TRUE.eventually()); // needed in case electrod moves everything to TS
+            Expr state_formula_sig = ExprList.make(null, null, ExprList.Op.AND, state_formulas_var).accept(replacer);
+            state_var2formula.put(state_var, state_formula_sig);
+            List<Object> key = Arrays.asList(state_var2sig.get(state_var), state_formula_sig.accept(new StructuralKey()));
+            shared.computeIfAbsent(key, k -> new ArrayList<ExprHasName>()).add(state_var);
+        }
+
+        for (List<ExprHasName> group : shared.values()) {
+            ExprHasName state_var = group.get(0);
             List<Sig> no_trace_sigs = new ArrayList<Sig>();
             no_trace_sigs.add((Sig) state_var2sig.get(state_var));
             sigs.forEach(sig -> {
@@ -76,18 +91,23 @@ public class TraceModels {
                     no_trace_sigs.add(sig);
             });
 
-            List<Expr> state_formulas_var = state_var_formulas.get(state_var);
-            state_formulas_var.add(ExprConstant.TRUE.eventually()); // needed in case electrod moves everything to TS
-            Expr state_formula_sig = ExprList.make(null, null, ExprList.Op.AND, state_formulas_var).accept(replacer);
-
+            // symmetries are only broken for the outermost trace, and only if
+            // its model is not shared with inner ones
             A4Options opt_clone = opt.dup();
-            if (!trans.isEmpty())
+            if (group.size() > 1 || state_var != tdf.vars.get(0))
                 opt_clone.symmetry = 0;
 
+            PhaseTimer phase = PhaseTimer.start("translation " + state_var.label);
             tr = new TranslateAlloyToKodkod(rep, opt_clone, no_trace_sigs, cmd, false);
-            tr.makeFacts(state_formula_sig, false);
-            trans.put(state_var, tr);
+            tr.makeFacts(state_var2formula.get(state_var), false);
+            phase.stop();
+            rep.phase(phase.name(), phase.millis(), phase.peakRss());
+            for (ExprHasName v : group)
+                models.put(v, tr);
         }
+        // in the order of the trace variables
+        for (ExprHasName state_var : tdf.vars)
+            trans.put(state_var, models.get(state_var));
 
         List<Sig> sigs_state_sigs = new ArrayList<Sig>();
         sigs.forEach(sig -> {
@@ -114,6 +134,10 @@ public class TraceModels {
 
     }
 
+    /**
+     * The model of a trace variable. Trace variables whose models are
+     * structurally equal share the same instance.
+     */
     TranslateAlloyToKodkod getModel(ExprHasName state_var) {
         return trans.get(state_var);
     }
@@ -134,6 +158,102 @@ public class TraceModels {
         return mc_quants.toString();
     }
 
+    /**
+     * Builds a key of a formula that is equal for formulas that only differ in
+     * the names of their quantified variables. Sigs and fields are compared by
+     * identity, so homonymous fields of different sigs are told apart. Only
+     * covers the formulas produced by the {@link Replacer}.
+     */
+    static class StructuralKey extends VisitReturn<Object> {
+
+        private final Map<ExprHasName,Integer> bound = new HashMap<ExprHasName,Integer>();
+
+        @Override
+        public Object visit(ExprBinary x) throws Err {
+            return Arrays.asList(x.op, x.left.accept(this), x.right.accept(this));
+        }
+
+        @Override
+        public Object visit(ExprList x) throws Err {
+            List<Object> key = new ArrayList<Object>();
+            key.add(x.op);
+            for (Expr e : x.args)
+                key.add(e.accept(this));
+            return key;
+        }
+
+        @Override
+        public Object visit(ExprConstant x) throws Err {
+            return Arrays.asList(x.op, x.num, x.string);
+        }
+
+        @Override
+        public Object visit(ExprQt x) throws Err {
+            List<Object> key = new ArrayList<Object>();
+            key.add(x.op);
+            for (Decl d : x.decls) {
+                key.add(Arrays.asList(d.disjoint != null, d.isVar != null, d.names.size(), d.expr.accept(this)));
+                for (ExprHasName v : d.names)
+                    bound.put(v, bound.size());
+            }
+            key.add(x.sub.accept(this));
+            return key;
+        }
+
+        @Override
+        public Object visit(ExprUnary x) throws Err {
+            if (x.op == ExprUnary.Op.NOOP)
+                return x.sub.accept(this);
+            return Arrays.asList(x.op, x.sub.accept(this));
+        }
+
+        @Override
+        public Object visit(ExprVar x) throws Err {
+            Integer i = bound.get(x);
+            return i == null ? x : i;
+        }
+
+        @Override
+        public Object visit(Sig x) throws Err {
+            return x;
+        }
+
+        @Override
+        public Object visit(Field x) throws Err {
+            return x;
+        }
+
+        @Override
+        public Object visit(ExprCall x) throws Err {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Object visit(ExprITE x) throws Err {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Object visit(ExprLet x) throws Err {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Object visit(Func x) throws Err {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Object visit(Assert x) throws Err {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Object visit(Macro macro) throws Err {
+            throw new RuntimeException();
+        }
+    }
+
     class Replacer extends VisitReturn<Expr> {
 
         private Map<Expr,Expr> state_var2sig;
@@ -18,21 +18,21 @@ package edu.mit.csail.sdg.translator;
 import static edu.mit.csail.sdg.alloy4.Util.tail;
 import static edu.mit.csail.sdg.ast.Sig.UNIV;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import aQute.bnd.exceptions.Exceptions;
 import edu.mit.csail.sdg.alloy4.A4Reporter;
@@ -97,7 +97,6 @@ import kodkod.instance.PardinusBounds;
 import kodkod.instance.Tuple;
 import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
-import kodkod.solvers.api.NativeCode;
 import kodkod.util.ints.IntVector;
 
 /**
@@ -670,101 +669,42 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
                 return execute_greedyCommand(rep, sigs, cmd, opt);
 
             Expr frm = cmd.formula;
-            A4Solution outer_sol = null;
 
             if (opt.solver.trace() > 0) {
-
-                String stem = cmd.label.replace(' ', '_').replace('$', '-');
-
-                TraceModels trace = new TraceModels(rep, sigs, cmd, opt);
-
-                List<Object> last = new ArrayList<Object>();
-                last.add(trace.quants());
-
-                for (ExprHasName state_var : trace.getStateVars()) {
-                    tr = trace.getModel(state_var);
-                    A4Solution sol = tr.frame.solve(rep, cmd, new Simplifier(), true);
-                    File smvfile = sol.output.get();
-                    if (last.size() == 1) {
-                        last.add(smvfile.getParentFile().getAbsolutePath());
-                        last.add(tr.frame.bounds);
-                        outer_sol = sol;
-                    }
-                    File localfile = new File(stem + "-" + trace.getId(state_var) + ".smv");
-                    Files.copy(smvfile.toPath(), localfile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    last.add("--input=" + smvfile.getAbsolutePath());
-
-                    try (BufferedWriter writer = new BufferedWriter(new FileWriter("source.scr"))) {
-                        writer.write("set on_failure_script_quits\ngo_bmc\ncheck_ltlspec_bmc_inc -k 99 -l * -p \"F FALSE\"\nquit");
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
-                    File nx = NativeCode.platform.getExecutable("nuXmv").orElse(null);
-                    if (nx == null)
-                        throw new RuntimeException("Can't find nuxmv");
-                    ProcessBuilder builder = new ProcessBuilder(nx.getAbsolutePath(), "-source", "source.scr", localfile.toPath().toString());
-                    Process process = builder.start();
-                    builder.redirectErrorStream(true);
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        if (line.contains("no counterexample found with bound 99"))
-                            throw new ErrorFatal("FSM without fair states, cannot convert into outer-most formula.");
-                    }
-                    int exitCode = process.waitFor();
-
-                }
-
-                A4Solution tr_spec = trace.getSpec().frame;
-                Expr outermostTrace = trace.state_var2sig.get(trace.getStateVars().get(0));
-                Expression kOuExpression = tr_spec.a2k(outermostTrace);
-                last.add(2, kOuExpression);
-
-                // propagate tighter bounds to outermost problem
-                Map<Relation,TupleSet> tsets_u = new HashMap<Relation,TupleSet>();
-                Map<Relation,TupleSet> tsets_l = new HashMap<Relation,TupleSet>();
-                for (ExprHasName state_var : trace.getStateVars()) {
-                    PardinusBounds bnds = (PardinusBounds) trace.getModel(state_var).frame.getFinalBounds();
-                    for (Relation r : tr_spec.getBounds().relations()) {
-                        for (Relation r2 : bnds.relations())
-                            if (r.name().equals(r2.name())) {
-                                kodkod.util.collections.Pair<TupleSet,TupleSet> ts = bnds.evalMult(r2);
-                                TupleSet ts_l = TemporalBoundsExpander.convertToUniv(ts.a, tr_spec.getBounds().universe());
-                                TupleSet ts_u = TemporalBoundsExpander.convertToUniv(ts.b, tr_spec.getBounds().universe());
-                                if (r.arity() > r2.arity()) {
-                                    Relation rel = (Relation) tr_spec.a2k(trace.state_var2sig.get(state_var));
-                                    ts_l = (tr_spec.getBounds().upperBound(rel)).product(ts_l);
-                                    ts_u = (tr_spec.getBounds().upperBound(rel)).product(ts_u);
-                                }
-                                TupleSet exist = tsets_l.computeIfAbsent(r, x -> tr_spec.getFactory().noneOf(r.arity()));
-                                exist.addAll(ts_l);
-                                exist = tsets_u.computeIfAbsent(r, x -> tr_spec.getFactory().noneOf(r.arity()));
-                                exist.addAll(ts_u);
-                            }
-
+                int max = cmd.maxprefix < 1 ? 10 : cmd.maxprefix;
+                if (!opt.iterativeBounds || max == Integer.MAX_VALUE)
+                    return execute_traceCommand(rep, sigs, cmd, opt);
+                // [HASLab] iterative deepening, the trace models are generated
+                // again for trace lengths 1, 2, 4, ... up to the maximum, and
+                // the search stops at the first witness; as the bounds are
+                // under-approximations, only the last bound is conclusive
+                // when no witness is found
+                for (int bound = Math.max(1, cmd.minprefix);; bound = Math.min(2 * bound, max)) {
+                    Command bounded = new Command(cmd.pos, cmd.nameExpr, cmd.label, cmd.check, cmd.overall, cmd.bitwidth, cmd.maxseq, cmd.minprefix, bound, cmd.expects, cmd.scope, cmd.additionalExactScopes, cmd.commandKeyword, cmd.formula, cmd.parent);
+                    rep.debug("Solving " + cmd.label + " up to " + bound + " steps\n");
+                    A4Solution sol = execute_traceCommand(rep, sigs, bounded, opt.dup());
+                    if (sol.satisfiable() || bound >= max) {
+                        rep.debug("Stopped " + cmd.label + " at " + bound + " steps\n");
+                        return sol;
                     }
                 }
-
-                for (Relation r : tsets_l.keySet())
-                    tr_spec.bounds.bound(r, tsets_l.get(r), tsets_u.get(r));
-
-                A4Solution sol = tr_spec.solve(rep, cmd, new Simplifier(), true, last);
-
-                try {
-                    outer_sol.resolve(rep, cmd, sol.debugExtractKInstance());
-                    return outer_sol;
-                } catch (ErrorAPI e) {
-                    return sol;
-                }
-
             } else {
                 tr = new TranslateAlloyToKodkod(rep, opt, sigs, cmd, false);
                 frm = frm.accept(new ExpandTraceToAlloy());
                 tr.makeFacts(frm, false);
 
-                return tr.frame.solve(rep, cmd, new Simplifier(), true);
+                // unchanged commands are answered from the verdict cache, if
+                // enabled
+                String key = VerdictCache.INSTANCE.key(cmd, opt, Arrays.asList(tr.frame));
+                if (key != null) {
+                    A4Solution cached = VerdictCache.INSTANCE.restore(rep, key, sigs, cmd, tr.frame);
+                    if (cached != null)
+                        return cached;
+                }
+                A4Solution sol = tr.frame.solve(rep, cmd, new Simplifier(), true);
+                if (key != null)
+                    VerdictCache.INSTANCE.store(key, sol);
+                return sol;
             }
 
         } catch (UnsatisfiedLinkError ex) {
@@ -779,6 +719,157 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
         }
     }
 
+    /**
+     * Solves a hyperproperty, by solving its trace models into SMV files and
+     * the outermost formula over them.
+     *
+     * @param rep - the reporter
+     * @param sigs - the list of sigs; this list must be complete
+     * @param cmd - the command to execute
+     * @param opt - the options guiding the execution, modified by the
+     *            generation of the trace models
+     * @return the solution, or the cached one
+     */
+    private static A4Solution execute_traceCommand(A4Reporter rep, Iterable<Sig> sigs, Command cmd, A4Options opt) throws Exception {
+        TraceModels trace = new TraceModels(rep, sigs, cmd, opt);
+        A4Solution outer_sol = null;
+
+        // unchanged commands are answered from the verdict cache, if
+        // enabled, keyed by the distinct trace models and the spec
+        String key = null;
+        if (VerdictCache.INSTANCE.applies(cmd, opt)) {
+            List<A4Solution> frames = new ArrayList<A4Solution>();
+            StringBuilder ids = new StringBuilder();
+            for (ExprHasName state_var : trace.getStateVars()) {
+                if (!frames.contains(trace.getModel(state_var).frame))
+                    frames.add(trace.getModel(state_var).frame);
+                ids.append(trace.getId(state_var)).append(frames.indexOf(trace.getModel(state_var).frame));
+            }
+            frames.add(trace.getSpec().frame);
+            key = VerdictCache.INSTANCE.key(cmd, opt, frames, trace.quants(), ids);
+            A4Solution cached = VerdictCache.INSTANCE.restore(rep, key, sigs, cmd, trace.getSpec().frame);
+            if (cached != null)
+                return cached;
+        }
+
+        String stem = cmd.label.replace(' ', '_').replace('$', '-');
+        // the per-trace SMV files of each run are kept apart, so that
+        // concurrent runs do not overwrite each other's
+        File smvdir = Files.createTempDirectory("hyper").toFile();
+        rep.debug("Trace models of " + cmd.label + " written to " + smvdir.getAbsolutePath() + "\n");
+
+        List<Object> last = new ArrayList<Object>();
+        last.add(trace.quants());
+
+        // the per-trace models are independent, so they are solved to
+        // SMV and checked for fair states concurrently; trace variables
+        // sharing a model are solved once and feed the same SMV file
+        // to hypersmv
+        List<ExprHasName> state_vars = trace.getStateVars();
+        Map<TranslateAlloyToKodkod,List<File>> models = new IdentityHashMap<TranslateAlloyToKodkod,List<File>>();
+        for (ExprHasName state_var : state_vars)
+            models.computeIfAbsent(trace.getModel(state_var), x -> new ArrayList<File>()).add(new File(smvdir, stem + "-" + trace.getId(state_var) + ".smv"));
+        Map<TranslateAlloyToKodkod,Future<A4Solution>> pending = new IdentityHashMap<TranslateAlloyToKodkod,Future<A4Solution>>();
+        // the reporter is shared by the threads solving the trace models
+        final A4Reporter shared = new SynchronizedReporter(rep);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(opt.trace_threads, models.size())));
+        try {
+            for (ExprHasName state_var : state_vars) {
+                TranslateAlloyToKodkod model = trace.getModel(state_var);
+                if (pending.containsKey(model))
+                    continue;
+                List<File> localfiles = models.get(model);
+                final Command c = cmd;
+                pending.put(model, pool.submit(() -> solveTraceModel(shared, c, opt, model, localfiles)));
+            }
+            for (ExprHasName state_var : state_vars) {
+                TranslateAlloyToKodkod tr = trace.getModel(state_var);
+                A4Solution sol;
+                try {
+                    sol = pending.get(tr).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw new ErrorFatal("Solving the trace model of " + state_var.label + " (" + trace.getId(state_var) + ") failed: " + (cause instanceof Err ? ((Err) cause).msg : cause.toString()), cause);
+                }
+                File smvfile = sol.output.get();
+                if (last.size() == 1) {
+                    last.add(smvfile.getParentFile().getAbsolutePath());
+                    last.add(tr.frame.bounds);
+                    outer_sol = sol;
+                }
+                last.add("--input=" + smvfile.getAbsolutePath());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        A4Solution tr_spec = trace.getSpec().frame;
+        Expr outermostTrace = trace.state_var2sig.get(trace.getStateVars().get(0));
+        Expression kOuExpression = tr_spec.a2k(outermostTrace);
+        last.add(2, kOuExpression);
+
+        // propagate tighter bounds to outermost problem
+        Map<Relation,TupleSet> tsets_u = new HashMap<Relation,TupleSet>();
+        Map<Relation,TupleSet> tsets_l = new HashMap<Relation,TupleSet>();
+        for (ExprHasName state_var : trace.getStateVars()) {
+            PardinusBounds bnds = (PardinusBounds) trace.getModel(state_var).frame.getFinalBounds();
+            for (Relation r : tr_spec.getBounds().relations()) {
+                for (Relation r2 : bnds.relations())
+                    if (r.name().equals(r2.name())) {
+                        kodkod.util.collections.Pair<TupleSet,TupleSet> ts = bnds.evalMult(r2);
+                        TupleSet ts_l = TemporalBoundsExpander.convertToUniv(ts.a, tr_spec.getBounds().universe());
+                        TupleSet ts_u = TemporalBoundsExpander.convertToUniv(ts.b, tr_spec.getBounds().universe());
+                        if (r.arity() > r2.arity()) {
+                            Relation rel = (Relation) tr_spec.a2k(trace.state_var2sig.get(state_var));
+                            ts_l = (tr_spec.getBounds().upperBound(rel)).product(ts_l);
+                            ts_u = (tr_spec.getBounds().upperBound(rel)).product(ts_u);
+                        }
+                        TupleSet exist = tsets_l.computeIfAbsent(r, x -> tr_spec.getFactory().noneOf(r.arity()));
+                        exist.addAll(ts_l);
+                        exist = tsets_u.computeIfAbsent(r, x -> tr_spec.getFactory().noneOf(r.arity()));
+                        exist.addAll(ts_u);
+                    }
+
+            }
+        }
+
+        for (Relation r : tsets_l.keySet())
+            tr_spec.bounds.bound(r, tsets_l.get(r), tsets_u.get(r));
+
+        A4Solution sol = tr_spec.solve(rep, cmd, new Simplifier(), true, last);
+
+        try {
+            outer_sol.resolve(rep, cmd, sol.debugExtractKInstance());
+            sol = outer_sol;
+        } catch (ErrorAPI e) {}
+        if (key != null)
+            VerdictCache.INSTANCE.store(key, sol);
+        return sol;
+    }
+
+    /**
+     * Solves a single trace model into an SMV file, copies it to the local files,
+     * and checks that the resulting FSM has fair states. Safe to run
+     * concurrently for the different trace models of a hyperproperty.
+     *
+     * @param rep - the reporter
+     * @param cmd - the command being executed
+     * @param opt - the options guiding the fair-state check
+     * @param tr - the translated trace model
+     * @param localfiles - where to copy the generated SMV file, one for each
+     *            trace variable of the model
+     * @return the (dry) solution pointing to the generated SMV file
+     */
+    private static A4Solution solveTraceModel(A4Reporter rep, Command cmd, A4Options opt, TranslateAlloyToKodkod tr, List<File> localfiles) throws Exception {
+        A4Solution sol = tr.frame.solve(rep, cmd, new Simplifier(), true);
+        File smvfile = sol.output.get();
+        for (File localfile : localfiles)
+            Files.copy(smvfile.toPath(), localfile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        if (opt.fairStatesBound > 0 && FairStatesCheck.INSTANCE.check(rep, smvfile, opt.fairStatesBound, opt.fairStatesTimeout, opt.fairStatesCache) == FairStatesCheck.Verdict.UNFAIR)
+            throw new ErrorFatal("FSM without fair states, cannot convert into outer-most formula.");
+        return sol;
+    }
+
     /**
      * Translate the Alloy expression into an equivalent Kodkod Expression or
      * IntExpression or Formula object.
@@ -0,0 +1,194 @@
+package edu.mit.csail.sdg.translator;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.XMLNode;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.ast.Func;
+import edu.mit.csail.sdg.ast.Sig;
+
+/**
+ * A persistent cache of the verdicts of commands, so that unchanged commands
+ * are not solved again, which is particularly expensive for hyperproperties
+ * and temporal problems with long traces. Entries are keyed by a hash of the
+ * Kodkod formulas and bounds the command is translated into, the solver and
+ * the options that affect the outcome; only the solving is saved on a hit. Satisfiable verdicts store the first witness as an
+ * XML instance, unsatisfiable ones a marker; witnesses restored from the cache
+ * are not incremental.
+ * <p>
+ * The cache is opt-in: it lives in the directory given by the system property
+ * {@code alloy.verdict.cache} and is disabled when that is not set. Entries are
+ * evicted least-recently-used first once the cache exceeds
+ * {@code alloy.verdict.cache.mb} megabytes (by default 64).
+ */
+final class VerdictCache {
+
+    static final VerdictCache INSTANCE = new VerdictCache(System.getProperty("alloy.verdict.cache"), Long.getLong("alloy.verdict.cache.mb", 64));
+
+    private static final String UNSAT = "UNSAT";
+
+    private static final Pattern VARIABLE = Pattern.compile("Variable\\.(unary|nary)\\(\"(?:[^\"\\\\]|\\\\.)*\"");
+
+    private final File          root;
+    private final long          limit;
+
+    VerdictCache(String dir, long mb) {
+        File r = dir != null ? new File(dir) : null;
+        if (r != null && !r.isDirectory() && !r.mkdirs())
+            r = null;
+        this.root = r;
+        this.limit = mb * 1024 * 1024;
+    }
+
+    /**
+     * Whether the verdict of a command may be cached at all.
+     *
+     * @param cmd - the command to be executed
+     * @param opt - the options guiding the execution
+     */
+    boolean applies(Command cmd, A4Options opt) {
+        // file-producing solvers and unsat cores are not cached
+        return root != null && !opt.noVerdictCache && !opt.solver.prover() && !(opt.solver instanceof KKTransformer) && !(opt.solver instanceof CNFTransformer) && cmd.parent == null && cmd.getGrowableSigs().isEmpty();
+    }
+
+    /**
+     * Computes the key of a command from the Kodkod problems it was translated
+     * into, or null if the cache does not apply to it. The translated formulas
+     * and bounds reflect everything in the model that affects the verdict, such
+     * as the scopes, the field declarations and the bodies of called functions.
+     *
+     * @param cmd - the command to be executed
+     * @param opt - the options guiding the execution
+     * @param frames - the problems the command was translated into, unsolved
+     * @param extra - anything else relating the problems to each other
+     * @return the hexadecimal key, or null
+     */
+    String key(Command cmd, A4Options opt, List<A4Solution> frames, Object... extra) {
+        if (!applies(cmd, opt))
+            return null;
+        StringBuilder sb = new StringBuilder();
+        sb.append(opt.solver.id()).append(' ').append(opt.noSelfCompose).append(' ').append(opt.fairStatesBound).append('\0');
+        for (A4Solution frame : frames) {
+            // the options of each problem, which may differ from those given
+            A4Options o = frame.getOriginalOptions();
+            sb.append(o.symmetry).append(' ').append(o.skolemDepth).append(' ').append(o.noOverflow).append(' ');
+            sb.append(o.noMultBounds).append(' ').append(o.tempSymmetries).append(' ').append(o.inferPartialInstance).append(' ');
+            sb.append(o.decompose_mode).append(' ').append(o.higherOrderSolver).append(' ').append(o.holFullIncrements).append(' ');
+            sb.append(o.holMaxIter).append('\0');
+            sb.append(problem(frame)).append('\0');
+        }
+        for (Object x : extra)
+            sb.append(x).append('\0');
+        return hash(sb.toString());
+    }
+
+    /**
+     * Restores the verdict of a command.
+     *
+     * @param rep - the reporter
+     * @param key - the key of the command
+     * @param sigs - the list of sigs; this list must be complete
+     * @param cmd - the command
+     * @param frame - the unsolved problem reported unsatisfiable on a hit
+     * @return the cached solution, or null if not cached
+     */
+    A4Solution restore(A4Reporter rep, String key, Iterable<Sig> sigs, Command cmd, A4Solution frame) {
+        File entry = new File(root, key);
+        if (!entry.isFile())
+            return null;
+        try {
+            A4Solution sol;
+            if (UNSAT.equals(new String(Files.readAllBytes(entry.toPath()), StandardCharsets.UTF_8)))
+                sol = frame.unsatisfiable();
+            else
+                sol = A4SolutionReader.read(sigs, new XMLNode(entry));
+            entry.setLastModified(System.currentTimeMillis());
+            rep.debug("reusing cached verdict " + key + " for " + cmd);
+            if (sol.satisfiable())
+                rep.resultSAT(cmd, 0, sol);
+            else
+                rep.resultUNSAT(cmd, 0, sol);
+            return sol;
+        } catch (Exception e) {
+            // treated as a miss, the entry is replaced once solved
+            return null;
+        }
+    }
+
+    /**
+     * Stores the verdict of a command, evicting the least recently used entries if
+     * the cache grows beyond its limit.
+     *
+     * @param key - the key of the command
+     * @param sol - the solution found
+     */
+    void store(String key, A4Solution sol) {
+        if (sol == null || (sol.output != null && sol.output.isPresent()))
+            return;
+        File tmp = new File(root, key + ".tmp");
+        try {
+            tmp = File.createTempFile(key, ".tmp", root);
+            if (sol.satisfiable())
+                sol.writeXML(tmp.getAbsolutePath(), Collections.<Func> emptyList(), Collections.<String,String> emptyMap());
+            else
+                Files.write(tmp.toPath(), UNSAT.getBytes(StandardCharsets.UTF_8));
+            File entry = new File(root, key);
+            entry.delete();
+            if (!tmp.renameTo(entry))
+                tmp.delete();
+        } catch (Exception e) {
+            // caching is best effort
+            tmp.delete();
+            return;
+        }
+        evict();
+    }
+
+    private synchronized void evict() {
+        File[] entries = root.listFiles((File d, String name) -> !name.endsWith(".tmp"));
+        if (entries == null)
+            return;
+        long size = 0;
+        for (File f : entries)
+            size += f.length();
+        if (size <= limit)
+            return;
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length && size > limit; i++) {
+            size -= entries[i].length();
+            entries[i].delete();
+        }
+    }
+
+    /**
+     * The Kodkod problem of a frame as Java code, without the names of the
+     * quantified variables, which the translation numbers across commands.
+     */
+    private static String problem(A4Solution frame) {
+        String code = frame.debugExtractKInput();
+        // the leading comment prints the formula, including the names
+        code = code.substring(Math.max(0, code.indexOf("public final class")));
+        return VARIABLE.matcher(code).replaceAll("Variable.$1(\"\"");
+    }
+
+    private static String hash(String content) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)))
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
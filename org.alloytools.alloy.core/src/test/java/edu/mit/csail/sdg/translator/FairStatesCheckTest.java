@@ -0,0 +1,127 @@
+package edu.mit.csail.sdg.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.mit.csail.sdg.translator.FairStatesCheck.Verdict;
+
+public class FairStatesCheckTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final String K = key("k"), A = key("a"), B = key("b"), C = key("c");
+
+    private static final String BANNER = "*** This is nuXmv 2.0.0 (compiled on Mon Oct 14 17:45:38 2019)\n" + "*** Copyright (c) 2014-2019, Fondazione Bruno Kessler\n\n";
+
+    @Test
+    public void testParseUnfair() throws Exception {
+        String out = BANNER + "-- no counterexample found with bound 0\n" + "-- no counterexample found with bound 1\n" + "-- no counterexample found with bound 10\n";
+        assertThat(FairStatesCheck.parse(reader(out), 10)).isEqualTo(Verdict.UNFAIR);
+        // a shorter bound is not conclusive
+        assertThat(FairStatesCheck.parse(reader(out), 11)).isEqualTo(Verdict.UNKNOWN);
+        assertThat(FairStatesCheck.parse(reader(out), 1)).isEqualTo(Verdict.UNFAIR);
+        assertThat(FairStatesCheck.parse(reader(BANNER + "-- no counterexample found with bound 10\n"), 1)).isEqualTo(Verdict.UNKNOWN);
+    }
+
+    @Test
+    public void testParseFair() throws Exception {
+        String out = BANNER + "-- no counterexample found with bound 0\n" + "-- LTL specification  F FALSE  is false\n" + "-- as demonstrated by the following execution sequence\n" + "Trace Description: BMC Counterexample \n";
+        assertThat(FairStatesCheck.parse(reader(out), 99)).isEqualTo(Verdict.FAIR);
+    }
+
+    @Test
+    public void testParseUnknown() throws Exception {
+        // killed by the deadline before a verdict
+        assertThat(FairStatesCheck.parse(reader(BANNER + "-- no counterexample found with bound 3\n"), 99)).isEqualTo(Verdict.UNKNOWN);
+        assertThat(FairStatesCheck.parse(reader(""), 99)).isEqualTo(Verdict.UNKNOWN);
+    }
+
+    @Test
+    public void testKey() {
+        byte[] smv = "MODULE main".getBytes(StandardCharsets.UTF_8);
+        assertThat(FairStatesCheck.key(smv, 10)).isEqualTo(FairStatesCheck.key("MODULE main".getBytes(StandardCharsets.UTF_8), 10));
+        assertThat(FairStatesCheck.key(smv, 10)).isNotEqualTo(FairStatesCheck.key(smv, 11));
+        assertThat(FairStatesCheck.key(smv, 10)).isNotEqualTo(FairStatesCheck.key("MODULE main ".getBytes(StandardCharsets.UTF_8), 10));
+    }
+
+    @Test
+    public void testParseOutput() throws Exception {
+        StringBuilder out = new StringBuilder();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 2 * FairStatesCheck.OUTPUT_LINES; i++)
+            lines.append("line ").append(i).append('\n');
+        assertThat(FairStatesCheck.parse(reader(lines + "ERROR: syntax error\n"), 10, out)).isEqualTo(Verdict.UNKNOWN);
+        // the last lines are kept to report the failure
+        assertThat(out.toString()).endsWith("ERROR: syntax error\n").doesNotContain("line 0\n");
+        assertThat(out.toString().split("\n")).hasSize(FairStatesCheck.OUTPUT_LINES);
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File root = new File(tmp.getRoot(), "cache");
+        FairStatesCheck check = new FairStatesCheck(root.getPath(), Long.MAX_VALUE);
+        assertThat(check.cached(K)).isNull();
+        // the directory is only created once a verdict is stored
+        assertThat(root).doesNotExist();
+        check.store(K, Verdict.UNFAIR);
+        assertThat(check.cached(K)).isEqualTo(Verdict.UNFAIR);
+        assertThat(new FairStatesCheck(root.getPath(), Long.MAX_VALUE).cached(K)).isEqualTo(Verdict.UNFAIR);
+        // only complete entries are visible
+        assertThat(root.list()).containsExactly(K);
+    }
+
+    @Test
+    public void testMemoryBounded() throws Exception {
+        File root = new File(tmp.getRoot(), "cache");
+        FairStatesCheck check = new FairStatesCheck(root.getPath(), Long.MAX_VALUE);
+        for (int i = 0; i <= FairStatesCheck.MEMORY_ENTRIES; i++)
+            check.store(key("m" + i), Verdict.FAIR);
+        // the oldest verdict only survives on disk
+        new File(root, key("m0")).delete();
+        assertThat(check.cached(key("m0"))).isNull();
+        assertThat(check.cached(key("m1"))).isEqualTo(Verdict.FAIR);
+    }
+
+    @Test
+    public void testUnknownNeverCached() throws Exception {
+        File root = new File(tmp.getRoot(), "cache");
+        FairStatesCheck check = new FairStatesCheck(root.getPath(), Long.MAX_VALUE);
+        check.store(K, Verdict.UNKNOWN);
+        assertThat(check.cached(K)).isNull();
+        assertThat(root).doesNotExist();
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File root = tmp.newFolder("cache");
+        // room for two verdicts of 4 bytes
+        FairStatesCheck check = new FairStatesCheck(root.getPath(), 10);
+        check.store(A, Verdict.FAIR);
+        new File(root, A).setLastModified(1000);
+        check.store(B, Verdict.FAIR);
+        new File(root, B).setLastModified(2000);
+        // reading the oldest entry from disk makes it the most recent one
+        assertThat(new FairStatesCheck(root.getPath(), 10).cached(A)).isEqualTo(Verdict.FAIR);
+        check.store(C, Verdict.FAIR);
+        assertThat(root.list()).containsExactlyInAnyOrder(A, C);
+        assertThat(new String(Files.readAllBytes(new File(root, C).toPath()), StandardCharsets.UTF_8)).isEqualTo("FAIR");
+    }
+
+    private static String key(String smv) {
+        return FairStatesCheck.key(smv.getBytes(StandardCharsets.UTF_8), 10);
+    }
+
+    private static BufferedReader reader(String out) {
+        return new BufferedReader(new StringReader(out));
+    }
+}
@@ -0,0 +1,78 @@
+package edu.mit.csail.sdg.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.ErrorFatal;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+import kodkod.engine.satlab.SATFactory;
+
+public class IterativeBoundsTest {
+
+    private static final String MODEL = "sig A {}\n" + "trace sig T { var x: set A }\n" + "run { all t1, t2: T | (always some t1.x) implies eventually t1.x = t2.x } for 3 but 1..8 steps\n";
+
+    /**
+     * A trace-model solver that is not available, so that the search stops at the
+     * first bound attempted.
+     */
+    private static final SATFactory HYPER = new SATFactory() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String id() {
+            return "hyper";
+        }
+
+        @Override
+        public String type() {
+            return "external";
+        }
+
+        @Override
+        public int trace() {
+            return 2;
+        }
+    };
+
+    private static List<String> attempts(boolean iterative) {
+        CompModule world = CompUtil.parseEverything_fromString(A4Reporter.NOP, MODEL);
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        opt.solver = HYPER;
+        opt.iterativeBounds = iterative;
+        List<String> debug = new ArrayList<String>();
+        A4Reporter rep = new A4Reporter() {
+
+            @Override
+            public void debug(String msg) {
+                if (msg.startsWith("Solving"))
+                    debug.add(msg.trim());
+            }
+        };
+        Throwable e = catchThrowable(() -> TranslateAlloyToKodkod.execute_commandFromBook(rep, world.getAllReachableSigs(), cmd, opt));
+        assertThat(e).isInstanceOf(ErrorFatal.class);
+        // the options given are not changed by the generation of trace models
+        if (iterative)
+            assertThat(opt.symmetry).isEqualTo(new A4Options().symmetry);
+        return debug;
+    }
+
+    @Test
+    public void testFirstBound() {
+        assertThat(attempts(true)).containsExactly("Solving run$1 up to 1 steps");
+    }
+
+    @Test
+    public void testDisabled() {
+        assertThat(attempts(false)).isEmpty();
+    }
+}
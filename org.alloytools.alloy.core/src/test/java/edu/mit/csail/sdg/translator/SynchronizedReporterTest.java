@@ -0,0 +1,98 @@
+package edu.mit.csail.sdg.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.ErrorFatal;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+import kodkod.engine.satlab.SATFactory;
+
+public class SynchronizedReporterTest {
+
+    private static final int THREADS = 8, MESSAGES = 10000;
+
+    /** Counts messages without any synchronization of its own. */
+    private static final class Counter extends A4Reporter {
+
+        int debug, phases;
+
+        @Override
+        public void debug(String msg) {
+            int n = debug;
+            Thread.yield();
+            debug = n + 1;
+        }
+
+        @Override
+        public void phase(String phase, long time, long memory) {
+            phases++;
+        }
+    }
+
+    @Test
+    public void testForwardsOneAtATime() throws Exception {
+        Counter counter = new Counter();
+        A4Reporter shared = new SynchronizedReporter(counter);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future< ? >> tasks = new ArrayList<Future< ? >>();
+            for (int i = 0; i < THREADS; i++)
+                tasks.add(pool.submit(() -> {
+                    for (int j = 0; j < MESSAGES / THREADS; j++) {
+                        shared.debug("");
+                        shared.phase("", 0, 0);
+                    }
+                }));
+            for (Future< ? > task : tasks)
+                task.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(counter.debug).isEqualTo(MESSAGES);
+        assertThat(counter.phases).isEqualTo(MESSAGES);
+    }
+
+    @Test
+    public void testTraceModelFailure() throws Exception {
+        CompModule world = CompUtil.parseEverything_fromString(A4Reporter.NOP, "sig A {}\n" + "trace sig T { var x: set A }\n" + "run { all t1, t2: T | (always some t1.x) implies eventually t1.x = t2.x } for 3 but 1..5 steps\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        opt.solver = new SATFactory() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String id() {
+                return "hyper";
+            }
+
+            @Override
+            public String type() {
+                return "external";
+            }
+
+            @Override
+            public int trace() {
+                return 2;
+            }
+        };
+        String[] before = new File(".").list();
+        Throwable e = catchThrowable(() -> TranslateAlloyToKodkod.execute_commandFromBook(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt));
+        // the failure names the trace model being solved
+        assertThat(e).isInstanceOf(ErrorFatal.class).hasMessageStartingWith("Solving the trace model of");
+        // and nothing is left in the working directory
+        assertThat(new File(".").list()).containsExactlyInAnyOrder(before);
+    }
+}
@@ -0,0 +1,71 @@
+package edu.mit.csail.sdg.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.ast.ExprHasName;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+import kodkod.engine.satlab.SATFactory;
+
+public class TraceModelsTest {
+
+    private static final String MODEL = "sig A {}\n" + "trace sig T { var x, y: set A }\n";
+
+    /**
+     * Each distinct trace model is solved once by Electrod, so the number of
+     * models is the number of Electrod invocations for the trace models.
+     */
+    private static int electrodRuns(String run) throws Exception {
+        CompModule world = CompUtil.parseEverything_fromString(A4Reporter.NOP, MODEL + run + " for 3 but 1..5 steps\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        opt.noSelfCompose = true;
+        opt.solver = new SATFactory() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String id() {
+                return "hyper";
+            }
+
+            @Override
+            public String type() {
+                return "external";
+            }
+
+            @Override
+            public int trace() {
+                return 2;
+            }
+        };
+        TraceModels trace = new TraceModels(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt);
+        Set<TranslateAlloyToKodkod> models = Collections.newSetFromMap(new IdentityHashMap<TranslateAlloyToKodkod,Boolean>());
+        for (ExprHasName v : trace.getStateVars())
+            models.add(trace.getModel(v));
+        return models.size();
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        assertThat(electrodRuns("run { all t1, t2: T | ((always some t1.x) and (always some t2.x)) implies eventually t1.x = t2.x }")).isEqualTo(1);
+        assertThat(electrodRuns("run { some t1, t2: T | (always some t1.x) and (always some t2.x) and eventually t1.x = t2.x }")).isEqualTo(1);
+        // only differ in the names of bound variables
+        assertThat(electrodRuns("run { all t1, t2: T | ((always some a: A | a in t1.x) and (always some b: A | b in t2.x)) implies eventually t1.x = t2.x }")).isEqualTo(1);
+    }
+
+    @Test
+    public void testNotShared() throws Exception {
+        assertThat(electrodRuns("run { all t1, t2: T | ((always some t1.x) and (always lone t2.x)) implies eventually t1.x = t2.x }")).isEqualTo(2);
+        // homonymous fields of different sigs are not confused
+        assertThat(electrodRuns("run { all t1, t2: T | ((always some t1.x) and (always some t2.y)) implies eventually t1.x = t2.x }")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,183 @@
+package edu.mit.csail.sdg.translator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.ast.Sig;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+
+public class VerdictCacheTest {
+
+    @Rule
+    public TemporaryFolder     tmp   = new TemporaryFolder();
+
+    private static final String MODEL = "sig A { r: set A }\n" + "fun reach[a: A]: set A { a.^r }\n";
+
+    private File                root;
+    private VerdictCache        cache;
+
+    @Before
+    public void setup() throws Exception {
+        root = tmp.newFolder("cache");
+        cache = new VerdictCache(root.getPath(), 64);
+    }
+
+    @Test
+    public void testMissThenHit() throws Exception {
+        CompModule world = parse(MODEL + "run { some a: A | a in reach[a] } for 3\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        String key = key(world, cmd, opt);
+        assertThat(key).isNotNull();
+        assertThat(cache.restore(A4Reporter.NOP, key, world.getAllReachableSigs(), cmd, frame(world, cmd, opt))).isNull();
+
+        A4Solution sol = TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt);
+        assertThat(sol.satisfiable()).isTrue();
+        cache.store(key, sol);
+
+        A4Solution cached = cache.restore(A4Reporter.NOP, key, world.getAllReachableSigs(), cmd, frame(world, cmd, opt));
+        assertThat(cached).isNotNull();
+        assertThat(cached.satisfiable()).isTrue();
+        // the cached witness is the one found
+        Sig a = world.getAllReachableUserDefinedSigs().get(0);
+        assertThat(cached.eval(a).toString()).isEqualTo(sol.eval(a).toString());
+        assertThat(cached.eval(a.getFields().get(0)).toString()).isEqualTo(sol.eval(a.getFields().get(0)).toString());
+    }
+
+    @Test
+    public void testUnsatHit() throws Exception {
+        CompModule world = parse(MODEL + "run { some a: A | a in reach[a] and no a.r } for 3\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        String key = key(world, cmd, opt);
+        A4Solution sol = TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt);
+        assertThat(sol.satisfiable()).isFalse();
+        cache.store(key, sol);
+
+        A4Solution cached = cache.restore(A4Reporter.NOP, key, world.getAllReachableSigs(), cmd, frame(world, cmd, opt));
+        assertThat(cached).isNotNull();
+        assertThat(cached.satisfiable()).isFalse();
+    }
+
+    @Test
+    public void testKeyStable() throws Exception {
+        String model = MODEL + "run { some a: A | a in reach[a] } for 3\n";
+        assertThat(key(model, new A4Options())).isEqualTo(key(model, new A4Options()));
+    }
+
+    @Test
+    public void testOptionsChangeKey() throws Exception {
+        String model = MODEL + "run { some a: A | a in reach[a] } for 3\n";
+        String key = key(model, new A4Options());
+        A4Options opt = new A4Options();
+        opt.symmetry = 0;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        opt = new A4Options();
+        opt.skolemDepth = 2;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        opt = new A4Options();
+        opt.noOverflow = !opt.noOverflow;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        opt = new A4Options();
+        opt.higherOrderSolver = true;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        opt = new A4Options();
+        opt.holFullIncrements = true;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        opt = new A4Options();
+        opt.holMaxIter = 10;
+        assertThat(key(model, opt)).isNotEqualTo(key);
+        // unrolling only changes recursive models
+        opt = new A4Options();
+        opt.unrolls = 3;
+        assertThat(key(model, opt)).isEqualTo(key);
+    }
+
+    @Test
+    public void testModelChangesKey() throws Exception {
+        String key = key(MODEL + "run { some a: A | a in reach[a] } for 3\n", new A4Options());
+        // command formula
+        assertThat(key(MODEL + "run { all a: A | a in reach[a] } for 3\n", new A4Options())).isNotEqualTo(key);
+        // scope
+        assertThat(key(MODEL + "run { some a: A | a in reach[a] } for 4\n", new A4Options())).isNotEqualTo(key);
+        // body of a called function, not part of the command text
+        assertThat(key("sig A { r: set A }\n" + "fun reach[a: A]: set A { a.*r }\n" + "run { some a: A | a in reach[a] } for 3\n", new A4Options())).isNotEqualTo(key);
+        // field declaration
+        assertThat(key("sig A { r: lone A }\n" + "fun reach[a: A]: set A { a.^r }\n" + "run { some a: A | a in reach[a] } for 3\n", new A4Options())).isNotEqualTo(key);
+        // sig fact
+        assertThat(key("sig A { r: set A } { some r }\n" + "fun reach[a: A]: set A { a.^r }\n" + "run { some a: A | a in reach[a] } for 3\n", new A4Options())).isNotEqualTo(key);
+        // exact scopes
+        assertThat(key(MODEL + "run { some a: A | a in reach[a] } for exactly 3 A\n", new A4Options())).isNotEqualTo(key(MODEL + "run { some a: A | a in reach[a] } for 3 A\n", new A4Options()));
+        // string scope
+        String strings = "sig A { r: set A, s: set String }\n" + "run { some a: A | some a.s } for 3 ";
+        assertThat(key(strings + "but exactly 2 String\n", new A4Options())).isNotEqualTo(key(strings + "but exactly 3 String\n", new A4Options()));
+        // homonymous fields of different sigs
+        String homonyms = "sig A { r: set A }\n" + "sig B { r: set A }\n";
+        assertThat(key(homonyms + "run { some A.r } for 3\n", new A4Options())).isNotEqualTo(key(homonyms + "run { some B.r } for 3\n", new A4Options()));
+        // unrelated comments and layout do not matter
+        assertThat(key("-- a comment\nsig A {\n r: set A\n}\n" + "fun reach[a: A]: set A { a.^r }\n" + "run { some a: A | a in reach[a] } for 3\n", new A4Options())).isEqualTo(key);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        CompModule world = parse(MODEL + "run { some a: A | a in reach[a] } for 3\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        String key = key(world, cmd, opt);
+        cache.store(key, TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt));
+
+        // an edited model misses
+        CompModule edited = parse(MODEL + "run { some a: A | a in reach[a] and no a.r } for 3\n");
+        Command ecmd = edited.getAllCommands().get(0);
+        String ekey = key(edited, ecmd, opt);
+        assertThat(cache.restore(A4Reporter.NOP, ekey, edited.getAllReachableSigs(), ecmd, frame(edited, ecmd, opt))).isNull();
+
+        // a corrupt entry is a miss, replaced once solved again
+        Files.write(new File(root, key).toPath(), "<alloy".getBytes(StandardCharsets.UTF_8));
+        assertThat(cache.restore(A4Reporter.NOP, key, world.getAllReachableSigs(), cmd, frame(world, cmd, opt))).isNull();
+        cache.store(key, TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, world.getAllReachableSigs(), cmd, opt));
+        assertThat(cache.restore(A4Reporter.NOP, key, world.getAllReachableSigs(), cmd, frame(world, cmd, opt))).isNotNull();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        CompModule world = parse(MODEL + "run { some a: A | a in reach[a] } for 3\n");
+        Command cmd = world.getAllCommands().get(0);
+        A4Options opt = new A4Options();
+        assertThat(new VerdictCache(null, 64).key(cmd, opt, Arrays.asList(frame(world, cmd, opt)))).isNull();
+        opt.noVerdictCache = true;
+        assertThat(key(world, cmd, opt)).isNull();
+    }
+
+    private String key(String model, A4Options opt) throws Exception {
+        CompModule world = parse(model);
+        return key(world, world.getAllCommands().get(0), opt);
+    }
+
+    private String key(CompModule world, Command cmd, A4Options opt) throws Exception {
+        return cache.key(cmd, opt, Arrays.asList(frame(world, cmd, opt)));
+    }
+
+    /** The problem a command is translated into, before solving. */
+    private static A4Solution frame(CompModule world, Command cmd, A4Options opt) throws Exception {
+        TranslateAlloyToKodkod tr = new TranslateAlloyToKodkod(A4Reporter.NOP, opt, world.getAllReachableSigs(), cmd, false);
+        tr.makeFacts(cmd.formula, false);
+        return tr.frame;
+    }
+
+    private static CompModule parse(String model) {
+        return CompUtil.parseEverything_fromString(A4Reporter.NOP, model);
+    }
+}
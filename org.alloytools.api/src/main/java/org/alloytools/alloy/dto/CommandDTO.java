@@ -59,5 +59,9 @@ public class CommandDTO {
      */
     public int               skolemDepth;
 
+    /**
+     * The phases of the analysis of this command, in the order they finished.
+     */
+    public List<PhaseDTO>    phases   = new ArrayList<>();
 
 }
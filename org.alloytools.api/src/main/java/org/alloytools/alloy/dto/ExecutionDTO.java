@@ -11,6 +11,7 @@ public class ExecutionDTO {
     public boolean                noMultBounds;
     public boolean                tempSymmetries;
     public boolean                noSelfCompose;
+    public boolean                iterativeBounds;
     public int                    symmetry;
     public int                    unrolls;
     public int                    coreGranularity;
@@ -21,4 +22,9 @@ public class ExecutionDTO {
     public int                    repeat;
     public Map<String,CommandDTO> commands = new LinkedHashMap<>();
     public Map<String,SigDefDTO>  sigs     = new LinkedHashMap<>();
+    /**
+     * The phases of all commands by name, with their total time and the largest
+     * peak resident size.
+     */
+    public Map<String,PhaseDTO>   phases   = new LinkedHashMap<>();
 }
@@ -0,0 +1,28 @@
+package org.alloytools.alloy.dto;
+
+
+/**
+ * A Data Transfer Object (DTO) that records the cost of a phase of the
+ * analysis of a command, such as the translation of a trace model or a run of
+ * one of the external model checkers.
+ */
+public class PhaseDTO {
+
+    /**
+     * The name of the phase, e.g. "electrod smv", "nuxmv precheck" or
+     * "hypersmv".
+     */
+    public String name;
+
+    /**
+     * The wall-clock time spent in the phase, in milliseconds. Phases that ran
+     * concurrently overlap.
+     */
+    public long   millis;
+
+    /**
+     * The peak resident set size sampled during the phase, in kilobytes, or -1
+     * if it could not be sampled on this platform.
+     */
+    public long   peakRss = -1;
+}
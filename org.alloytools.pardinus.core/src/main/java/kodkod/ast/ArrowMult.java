@@ -26,9 +26,11 @@ public class ArrowMult extends Multiplicities {
 	}
 	
 	@Override
-	public void replace(Expression e1, Expression e2) {
-		left.replace(e1, e2);
-		right.replace(e1, e2);
+	public Multiplicities replace(Expression e1, Expression e2) {
+		Multiplicities l = left.replace(e1, e2), r = right.replace(e1, e2);
+		if (l == left && r == right)
+			return this;
+		return new ArrowMult(l, r, mult, exact);
 	}
 	
 	@Override
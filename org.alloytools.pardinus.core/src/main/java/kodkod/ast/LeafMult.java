@@ -6,7 +6,7 @@ import java.util.List;
 import kodkod.ast.operator.Multiplicity;
 
 public class LeafMult extends Multiplicities {
-	private Expression expr;
+	private final Expression expr;
 	
 	public LeafMult(Expression expr, Multiplicity mult) {
 		this(expr, mult, false);
@@ -25,9 +25,10 @@ public class LeafMult extends Multiplicities {
 	}
 
 	@Override
-	public void replace(Expression e1, Expression e2) {
-		if (expr.equals(e1))
-			expr = e2;
+	public Multiplicities replace(Expression e1, Expression e2) {
+		if (expr.equals(e1) && expr != e2)
+			return new LeafMult(e2, mult, exact);
+		return this;
 	}
 
 	@Override
@@ -25,9 +25,11 @@ public class MixedMult extends Multiplicities {
 	}
 	
 	@Override
-	public void replace(Expression e1, Expression e2) {
-		left.replace(e1, e2);
-		right.replace(e1, e2);
+	public Multiplicities replace(Expression e1, Expression e2) {
+		Multiplicities l = left.replace(e1, e2), r = right.replace(e1, e2);
+		if (l == left && r == right)
+			return this;
+		return new MixedMult(l, r);
 	}
 	
 	@Override
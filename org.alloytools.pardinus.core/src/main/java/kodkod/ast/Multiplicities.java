@@ -1,15 +1,15 @@
 package kodkod.ast;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import kodkod.ast.operator.Multiplicity;
 
 public abstract class Multiplicities {
 	
-    private static final Map<Integer, Multiplicities> empties = new HashMap<Integer,Multiplicities>();
-    private static final Map<Integer, Multiplicities> univs = new HashMap<Integer,Multiplicities>();
+    private static final Map<Integer, Multiplicities> empties = new ConcurrentHashMap<Integer,Multiplicities>();
+    private static final Map<Integer, Multiplicities> univs = new ConcurrentHashMap<Integer,Multiplicities>();
 
     private static Multiplicities power(int a, Expression e) {
     	Multiplicities m = new LeafMult(e, Multiplicity.SET);
@@ -39,7 +39,14 @@ public abstract class Multiplicities {
 		this.exact = exact;
 	}
 	protected abstract List<Expression> domains();
-	public abstract void replace(Expression e1, Expression e2);
+	/**
+	 * Replaces a domain expression. Multiplicities are shared, namely
+	 * {@link #empty(int)} and {@link #univ(int)}, so they are never modified.
+	 * 
+	 * @return these multiplicities if e1 does not occur, otherwise new ones with
+	 *         e1 replaced by e2.
+	 */
+	public abstract Multiplicities replace(Expression e1, Expression e2);
 
 	public abstract Multiplicities mergeMults(Multiplicities other);
 
@@ -654,10 +654,12 @@ public abstract class AbstractReplacer implements ReturnVisitor<Expression, Form
 			break;
 	     case MULTIPLICITY :
 	            final RelationPredicate.Multiplicityx mp = (RelationPredicate.Multiplicityx) pred;
+	            // [HASLab] multiplicities are shared, replaced rather than modified
+	            Multiplicities mults = mp.mults();
 	            for (Expression dom : mp.domains()) {
-	            	mp.mults().replace(dom, dom.accept(delegate));
+	            	mults = mults.replace(dom, dom.accept(delegate));
 	            }
-            	ret = r.mult_constraint(mp.mults());
+            	ret = r.mult_constraint(mults);
 	            break;
 		case TOTAL_ORDERING : 
 			final RelationPredicate.TotalOrdering tp = (RelationPredicate.TotalOrdering) pred;
@@ -22,14 +22,18 @@
  */
 package kodkod.engine;
 
+import java.io.IOException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
@@ -66,17 +70,32 @@ abstract public class DProblemExecutor<S extends AbstractSolver<PardinusBounds,
 	public final ExtendedSolver solver_partial;
 	public final S solver_integrated;
 
-	/**
-	 * the executor managing the launching of the threads
-	 * 
-	 * TODO: replace by new ThreadPoolExecutor(corePoolSize, maximumPoolSize,
-	 * keepAliveTime, unit, workQueue) to manage LIFO
-	 */
+	/** the work-stealing executor managing the solver threads */
 	public final ExecutorService executor;
 
 	/** a reporter that monitors the solving process */
 	public final DMonitor monitor;
 
+	/** whether integrated problems are solved incrementally, if supported */
+	// [HASLab] incremental integrated problems
+	private volatile boolean incremental;
+
+	/** the incremental integrated problem of each solver thread */
+	private final ThreadLocal<IncrementalIntegration> integrations = new ThreadLocal<IncrementalIntegration>();
+
+	/** the decomposed problem shipped to the workers, if distributed */
+	// [HASLab] distributed integrated problems
+	private volatile RemoteProtocol.Problem distributed;
+
+	/** the worker of each solver thread */
+	private final ThreadLocal<RemoteIntegration> workers = new ThreadLocal<RemoteIntegration>();
+
+	/** all the workers, to be stopped once terminated */
+	private final List<RemoteIntegration> all_workers = new ArrayList<RemoteIntegration>();
+
+	/** the number of workers assigned to hosts */
+	private final AtomicInteger hosts = new AtomicInteger();
+
 	/**
 	 * Constructs an effective decomposed problem executor for a decomposed
 	 * model finding problem and the number of desired parallel solvers.
@@ -97,7 +116,8 @@ abstract public class DProblemExecutor<S extends AbstractSolver<PardinusBounds,
 	 * @param solver2
 	 *            the solver for the integrated problem.
 	 * @param n
-	 *            the number of solver threads.
+	 *            the number of solver threads, or one per available processor
+	 *            if not positive.
 	 */
 	DProblemExecutor(DMonitor rep, Formula formula, PardinusBounds bounds, 
 			ExtendedSolver solver1, S solver2, int n) {
@@ -105,8 +125,101 @@ abstract public class DProblemExecutor<S extends AbstractSolver<PardinusBounds,
 		this.bounds = bounds;
 		this.solver_partial = solver1;
 		this.solver_integrated = solver2;
-		this.executor = Executors.newFixedThreadPool(n);
+		this.executor = new ForkJoinPool(n > 0 ? n : Runtime.getRuntime().availableProcessors()); // [HASLab] adaptive decomposed scheduling
 		this.monitor = rep;
+		this.incremental = solver2 instanceof ExtendedSolver && solver2.options().incrementalIntegration()
+				&& solver2.options().solver().assumptions() && !solver2.options().targetoriented();
+	}
+
+	/**
+	 * Solves the integrated problem of a configuration over the translation of
+	 * the calling solver thread, if integrated problems are
+	 * {@link ExtendedOptions#incrementalIntegration() solved incrementally}.
+	 * The translation is performed by the first configuration of each thread.
+	 * 
+	 * @param config
+	 *            the configuration of the integrated problem.
+	 * @return the first solution and an iterator over the remaining ones, or
+	 *         null if the integrated problem must be translated anew.
+	 */
+	// [HASLab] incremental integrated problems
+	public Entry<Solution, Iterator<Solution>> solveIncremental(Solution config) {
+		if (!incremental)
+			return null;
+		IncrementalIntegration integration = integrations.get();
+		if (integration == null) {
+			integration = IncrementalIntegration.translate(formula, bounds, solver_integrated.options());
+			if (integration == null) {
+				solver_integrated.options().reporter().debug("Integrated problems not solvable incrementally.");
+				incremental = false;
+				return null;
+			}
+			integrations.set(integration);
+		}
+		return integration.solve(config);
+	}
+
+	/**
+	 * Encodes the decomposed problem to be shipped to the workers, if
+	 * integrated problems are {@link ExtendedOptions#distributed() distributed}.
+	 * Must be called before any problem is translated, since translations
+	 * tighten the shared bounds.
+	 */
+	// [HASLab] distributed integrated problems
+	void distribute() {
+		if (!(solver_integrated instanceof ExtendedSolver) || !solver_integrated.options().distributed())
+			return;
+		distributed = RemoteProtocol.encode(formula, bounds, solver_integrated.options());
+		if (distributed == null)
+			solver_integrated.options().reporter().debug("Integrated problems not distributable.");
+	}
+
+	/**
+	 * Solves the integrated problem of a configuration in the worker of the
+	 * calling solver thread, if integrated problems are
+	 * {@link ExtendedOptions#distributed() distributed}. The worker is launched,
+	 * or connected to, by the first configuration of each thread. If a worker
+	 * fails, integrated problems are solved locally from then on.
+	 * 
+	 * @param config
+	 *            the configuration of the integrated problem.
+	 * @return the first solution and an iterator over the remaining ones, or
+	 *         null if the integrated problem must be solved locally.
+	 */
+	// [HASLab] distributed integrated problems
+	public Entry<Solution, Iterator<Solution>> solveRemote(Solution config) {
+		final RemoteProtocol.Problem problem = distributed;
+		if (problem == null)
+			return null;
+		RemoteIntegration worker = workers.get();
+		try {
+			if (worker == null) {
+				final List<String> addresses = solver_integrated.options().workerHosts();
+				if (addresses == null || addresses.isEmpty())
+					worker = RemoteIntegration.launch(problem);
+				else
+					worker = RemoteIntegration.connect(
+							addresses.get(hosts.getAndIncrement() % addresses.size()), problem);
+				synchronized (all_workers) {
+					// terminated while launching
+					if (executor.isShutdown()) {
+						worker.close();
+						return null;
+					}
+					all_workers.add(worker);
+				}
+				workers.set(worker);
+			}
+			return worker.solve(config);
+		} catch (IOException e) {
+			// workers are stopped once terminated
+			if (executor.isShutdown())
+				return null;
+			solver_integrated.options().reporter()
+					.warning("Worker failed, solving integrated problems locally: " + e.getMessage());
+			distributed = null;
+			return null;
+		}
 	}
 
 	/**
@@ -162,6 +275,12 @@ abstract public class DProblemExecutor<S extends AbstractSolver<PardinusBounds,
 			boolean timeout = executor.awaitTermination(0, TimeUnit.HOURS);
 			monitor.terminated(timeout);
 		}
+		// [HASLab] distributed integrated problems
+		synchronized (all_workers) {
+			for (RemoteIntegration worker : all_workers)
+				worker.close();
+			all_workers.clear();
+		}
 	}
 	
 	static Entry<Solution,Iterator<Solution>> poison(Solution s) {
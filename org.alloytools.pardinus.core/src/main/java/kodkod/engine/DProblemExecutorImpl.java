@@ -22,20 +22,25 @@
  */
 package kodkod.engine;
 
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import kodkod.ast.Formula;
+import kodkod.engine.config.DecomposedOptions.DOrder;
 import kodkod.engine.config.ExtendedOptions;
 import kodkod.engine.config.Reporter;
 import kodkod.engine.decomp.DMonitorImpl;
 import kodkod.engine.decomp.DProblem;
 import kodkod.engine.decomp.IProblem;
 import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleSet;
 
 /**
  * An implementation of parallel strategy decomposed problem executor designed
@@ -44,6 +49,18 @@ import kodkod.instance.PardinusBounds;
  * integrated problems or the amalgamated problem. Is UNSAT if every integrated
  * problem is UNSAT or the amalagamated problem.
  * 
+ * Configurations are enumerated by a producer thread, ahead of the solver
+ * threads, and handed to a work-stealing pool. The number of configurations
+ * enumerated ahead (the batch) adapts to the observed solving times of the
+ * integrated problems, so that fast problems do not leave the solver threads
+ * idle waiting for configurations, while slow ones do not cause configurations
+ * to be enumerated needlessly. The enumeration also pauses while found
+ * solutions are not consumed. Pending configurations are solved in the
+ * {@link ExtendedOptions#configOrder() selected order}.
+ * 
+ * The state of the scheduler is sampled by the monitor, which exports live
+ * metrics if {@link ExtendedOptions#metricsPeriod() enabled}.
+ * 
  * @param <S>
  *            The solver that will be used to handle integrated problems.
  *
@@ -53,12 +70,21 @@ import kodkod.instance.PardinusBounds;
 public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, ExtendedOptions>>
 		extends DProblemExecutor<S> {
 
+	/** the initial batch, before any integrated problem is solved */
 	final static public int BATCH_SIZE = 20;
 
+	/** the maximum batch per solver thread */
+	// [HASLab] adaptive decomposed scheduling
+	final static public int MAX_BATCH_SIZE = 50;
+
+	/** the solving time of each solver thread covered by the batch */
+	// [HASLab] adaptive decomposed scheduling
+	final static public long TARGET_MILLIS = 200;
+
 	/** a buffer for solutions, popped by the hasNext test */
 	private Entry<Solution,Iterator<Solution>> buffer;
 
-	/** the number of effectively running solvers */
+	/** the number of effectively running solvers, including pending ones */
 	private final AtomicInteger running = new AtomicInteger(0);
 
 	/** the queue of found SAT solutions (or poison) */
@@ -70,6 +96,35 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 	/** the amalgamated problem, if in hybrid mode */
 	private DProblem<S> amalgamated;
 
+	/** the configurations waiting for a solver thread */
+	// [HASLab] adaptive decomposed scheduling
+	private final BlockingQueue<Pending> pending;
+
+	/** the number of solver threads */
+	private final int threads;
+
+	/** the current batch, adapted to the average solving time */
+	private volatile int batch = BATCH_SIZE;
+
+	/** the average solving time of the integrated problems, negative if none */
+	private double avg_millis = -1;
+
+	/** whether the amalgamated problem has terminated */
+	private volatile boolean amalgamated_done = false;
+
+	/** the last unsat integrated problem */
+	private Entry<Solution,Iterator<Solution>> last_unsat;
+
+	/** whether the final solution has been issued */
+	private boolean finished = false;
+
+	/** the thread enumerating the configurations */
+	private Thread producer;
+
+	/** the number of solver threads currently solving a problem */
+	// [HASLab] decomposed metrics
+	private final AtomicInteger busy = new AtomicInteger(0);
+
 	/**
 	 * Constructs an effective decomposed problem executor for a decomposed
 	 * model finding problem and the number of desired parallel solvers.
@@ -88,16 +143,19 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 	 * @param solver2
 	 *            the solver for the integrated problem.
 	 * @param n
-	 *            the number of solver threads.
+	 *            the number of solver threads, or one per available processor
+	 *            if not positive.
 	 * @param hybrid
 	 *            whether to run in hybrid mode.
 	 */
 	public DProblemExecutorImpl(Reporter rep, Formula formula,
 			PardinusBounds bounds, ExtendedSolver solver1,
 			S solver2, int n, boolean hybrid) {
-		super(new DMonitorImpl(rep), formula, bounds, solver1, solver2, n);
-		this.solution_queue = new LinkedBlockingQueue<Entry<Solution,Iterator<Solution>>>(BATCH_SIZE+1);
+		super(new DMonitorImpl(rep, solver2.options().metricsPeriod()), formula, bounds, solver1, solver2, n);
+		this.solution_queue = new LinkedBlockingQueue<Entry<Solution,Iterator<Solution>>>();
 		this.hybrid = hybrid;
+		this.threads = ((ForkJoinPool) executor).getParallelism();
+		this.pending = new PriorityBlockingQueue<Pending>(BATCH_SIZE, order(solver2.options().configOrder()));
 	}
 
 	/**
@@ -113,7 +171,7 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 			if (!(sol instanceof IProblem)) {
 				// store the sat or unsat solution
 				solution_queue.put(sol.getSolutions());
-//				running.set(1);
+				amalgamated_done = true;
 				monitor.amalgamatedWon();
 //				 terminate the integrated problems
 				if (!executor.isTerminated())
@@ -131,32 +189,19 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 					if (hybrid && amalgamated.isAlive() && !monitor.isAmalgamated()) {
 						amalgamated.interrupt();
 					}
-
-					if (running.get() == 1 && !monitor.isAmalgamated())
-						if (monitor.isConfigsDone()) {
-							solution_queue.put(poison(null));
-						}
-					running.decrementAndGet();
-
 				}
 				// if it is unsat...
-				else {
-					running.decrementAndGet();
-					// if last running integrated...
-					if ((running.get() == 0 && !hybrid) || (running.get() == 1 && hybrid))
-						if (monitor.isConfigsDone())
-							// store the unsat solution
-							solution_queue.put(sol.getSolutions());
-						else
-							launchBatch();
-				}
+				else
+					last_unsat = sol.getSolutions();
+				running.decrementAndGet();
+				// if last running integrated...
+				if (monitor.isConfigsDone() && integratedDone())
+					finish();
+				notifyAll();
 			}
 		} catch (InterruptedException | IllegalThreadStateException e1) {
 			// was interrupted in the meantime
 //			e1.printStackTrace();
-		} catch (RejectedExecutionException e) {
-			// was shutdown in the meantime
-			e.printStackTrace();
 		}
 	}
 
@@ -165,21 +210,20 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void failed(Throwable e) {
+	synchronized public void failed(Throwable e) {
 		solver_partial.options().reporter().warning("Integrated solver failed.");
 		solver_partial.options().reporter().debug(e.getStackTrace().toString());
 		running.decrementAndGet();
 		// if last running integrated...
-		if (monitor.isConfigsDone()
-				&& (running.get() == 0 || (amalgamated != null && running
-						.get() == 1))) {
+		if (monitor.isConfigsDone() && integratedDone()) {
+			finish();
 			try {
-				solution_queue.put(poison(null));
 				terminate();
 			} catch (InterruptedException e1) {
 				// was interrupted in the meantime
 			}
 		}
+		notifyAll();
 	}
 	
 	/**
@@ -188,65 +232,155 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 	@Override
 	public void run() {
 
+		distribute(); // [HASLab] distributed integrated problems
+		monitor.started(executor, threads, pending::size, busy::get);
+
 		// if hybrid mode, launch the amalgamated problem
 		if (hybrid) {
 			DProblem<S> amalg = new DProblem<S>(this);
-			executor.execute(amalg);
 			running.incrementAndGet();
 			amalgamated = amalg;
+			executor.execute(() -> {
+				busy.incrementAndGet();
+				try {
+					amalg.run();
+				} finally {
+					busy.decrementAndGet();
+				}
+			});
 		} 
 		
-		launchBatch();
+		producer = new Thread(this::produce, "decomposed-configs");
+		producer.setDaemon(true);
+		producer.start();
 
 	}
 	Iterator<Solution> configs = solver_partial.solveAll(formula, bounds);
 
-	private boolean first_config = true;
 	private Entry<Solution,Iterator<Solution>> last_sol;
 	
-	synchronized void launchBatch() {
-		
-		BlockingQueue<DProblem<S>> problem_queue = new LinkedBlockingQueue<DProblem<S>>(BATCH_SIZE);
-		// collects a batch of configurations
+	/**
+	 * Enumerates the configurations and launches their integrated problems,
+	 * keeping at most a batch of them running or pending, including the
+	 * solutions found but not yet consumed.
+	 */
+	// [HASLab] adaptive decomposed scheduling
+	private void produce() {
 		Solution config = null;
-		while (configs.hasNext() && problem_queue.size() < BATCH_SIZE) {
-			config = configs.next();
-
-			if (config.sat()) {
+		long seq = 0;
+		try {
+			while (!executor.isShutdown() && configs.hasNext()) {
+				synchronized (this) {
+					while (!executor.isShutdown() && running.get() + solution_queue.size() >= batch)
+						wait();
+				}
+				if (executor.isShutdown())
+					return;
+				config = configs.next();
+				if (!config.sat())
+					break;
 				monitor.newConfig(config);
-
-				DProblem<S> problem = new IProblem<S>(config, this);
-				problem_queue.add(problem);
+				IProblem<S> problem = new IProblem<S>(config, this);
+				running.incrementAndGet();
+				pending.add(new Pending(problem, size(config), seq++));
+				try {
+					executor.execute(this::solvePending);
+				} catch (RejectedExecutionException e) {
+					// was shutdown in the meantime
+					return;
+				}
 			}
-			first_config = false;
+		} catch (InterruptedException e) {
+			// was terminated in the meantime
+			return;
+		} catch (RuntimeException e) {
+			solver_partial.options().reporter().warning("Configuration solver failed.");
+			solver_partial.options().reporter().debug(e.getStackTrace().toString());
 		}
-		// launches a batch of integrated problems
-		while (!problem_queue.isEmpty() && !executor.isShutdown()) {
-			DProblem<S> problem = problem_queue.remove();
-			try {
-				executor.execute(problem);
-			} catch (RejectedExecutionException e) {
-				// if it was shutdown in the meantime
-				e.printStackTrace();
-			}
-			running.incrementAndGet();
+		synchronized (this) {
+			// only an unsat configuration ends the enumeration, the last one
+			// may also be sat if the configuration solver failed or ran out
+			Solution unsat = config != null && !config.sat() ? config : null;
+			// get the stats from the unsat
+			if (unsat != null)
+				monitor.newConfig(unsat);
+			monitor.configsDone(false);
+			if (integratedDone())
+				// when there is no configuration no solver will ever
+				// callback so it must be terminated here
+				finish(unsat);
 		}
-		
-		if (!config.sat()) {
-			// when there is no configuration no solver will ever
-			// callback so it must be terminated here
-			if ((running.get() == 0 && !hybrid) || (running.get() == 1 && hybrid))
-				try {
-					// get the stats from the unsat
-					monitor.newConfig(config);
-//					terminate();
-					solution_queue.put(poison(config));
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+	}
+
+	/**
+	 * Solves the next pending integrated problem, in the configured order, and
+	 * adapts the batch to its solving time.
+	 */
+	// [HASLab] adaptive decomposed scheduling
+	private void solvePending() {
+		// busy before polling, so that a problem is never neither pending nor busy
+		busy.incrementAndGet();
+		long start = System.currentTimeMillis();
+		try {
+			Pending next = pending.poll();
+			if (next == null)
+				return;
+			next.problem.run();
+		} finally {
+			busy.decrementAndGet();
+		}
+		long millis = System.currentTimeMillis() - start;
+		synchronized (this) {
+			avg_millis = avg_millis < 0 ? millis : 0.8 * avg_millis + 0.2 * millis;
+			long b = Math.round(threads * TARGET_MILLIS / Math.max(1, avg_millis));
+			batch = (int) Math.max(threads, Math.min(b, threads * MAX_BATCH_SIZE));
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Whether all launched integrated problems have terminated, possibly except
+	 * for the amalgamated one.
+	 */
+	private boolean integratedDone() {
+		return running.get() == (hybrid && !amalgamated_done ? 1 : 0);
+	}
+
+	private void finish() {
+		finish(null);
+	}
+
+	/**
+	 * Issues the final solution, once the configurations are done and all
+	 * integrated problems have terminated.
+	 * 
+	 * @param config
+	 *            the unsat configuration, if any.
+	 */
+	private synchronized void finish(Solution config) {
+		if (finished || monitor.isAmalgamated())
+			return;
+		finished = true;
+		try {
+			if (last_unsat != null)
+				// store the unsat solution
+				solution_queue.put(last_unsat);
+			else
+				solution_queue.put(poison(config));
+		} catch (InterruptedException e) {
+			// was interrupted in the meantime
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void terminate() throws InterruptedException {
+		super.terminate();
+		synchronized (this) {
+			notifyAll();
 		}
-			
-		monitor.configsDone(configs.hasNext());
 	}
 
 	/**
@@ -257,10 +391,11 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 		if (buffer != null) {
 			last_sol = buffer;
 			buffer = null;
-		} else {
-			if (!monitor.isConfigsDone() && running.get() == 0)
-				launchBatch();
+		} else
 			last_sol = solution_queue.take();
+		// resume the enumeration of configurations
+		synchronized (this) {
+			notifyAll();
 		}
 		monitor.gotNext(false);
 		// if UNSAT, terminate execution
@@ -281,13 +416,53 @@ public class DProblemExecutorImpl<S extends AbstractSolver<PardinusBounds, Exten
 				return true;
 			if (monitor.isConfigsDone() && running.get() == 0)
 				return !solution_queue.isEmpty();
-			if (!monitor.isConfigsDone() && running.get() == 0)
-				launchBatch();
 		}
 		// if there are integrated problems still running, can't just test for
 		// emptyness must wait for the next output
 		buffer = solution_queue.take();
+		synchronized (this) {
+			notifyAll();
+		}
 		return true;
 	}
 
+	/**
+	 * The number of tuples of a configuration.
+	 */
+	private static int size(Solution config) {
+		int size = 0;
+		for (TupleSet ts : config.instance().relationTuples().values())
+			size += ts.size();
+		return size;
+	}
+
+	/**
+	 * The order of pending configurations, always falling back to their
+	 * enumeration order.
+	 */
+	private Comparator<Pending> order(DOrder order) {
+		Comparator<Pending> fifo = Comparator.comparingLong(p -> p.seq);
+		switch (order) {
+		case SMALLEST:
+			return Comparator.<Pending> comparingInt(p -> p.size).thenComparing(fifo);
+		case LARGEST:
+			return Comparator.<Pending> comparingInt(p -> -p.size).thenComparing(fifo);
+		default:
+			return fifo;
+		}
+	}
+
+	/** An integrated problem waiting for a solver thread. */
+	private final class Pending {
+		final IProblem<S> problem;
+		final int size;
+		final long seq;
+
+		Pending(IProblem<S> problem, int size, long seq) {
+			this.problem = problem;
+			this.size = size;
+			this.seq = seq;
+		}
+	}
+
 }
@@ -0,0 +1,195 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A worker that solves the integrated problems of a decomposed problem on
+ * behalf of an executor in another process. The decomposed problem is
+ * received once, and the solutions of each configuration are then sent back
+ * one at a time, as requested by the executor, until it closes the stream.
+ * 
+ * Launched without arguments, the worker serves a single executor over its
+ * standard streams, as done by executors that launch their own workers. With
+ * <code>-port n</code>, it listens for executors on port n of the loopback
+ * interface, or of the interface given by <code>-bind address</code>, so that
+ * workers may run on other hosts.
+ * 
+ * The protocol has no authentication: any peer that reaches the port may have
+ * the worker solve arbitrary problems. The port must not be exposed beyond
+ * trusted hosts; to serve executors on other hosts, bind to an interface of a
+ * private network or forward the loopback port through an SSH tunnel.
+ */
+public final class DProblemWorker {
+
+	private DProblemWorker() {}
+
+	public static void main(String[] args) throws IOException {
+		String port = null, bind = null;
+		boolean valid = args.length % 2 == 0;
+		for (int i = 0; valid && i < args.length; i += 2)
+			if (args[i].equals("-port") && port == null)
+				port = args[i + 1];
+			else if (args[i].equals("-bind") && bind == null)
+				bind = args[i + 1];
+			else
+				valid = false;
+		if (!valid || (bind != null && port == null)) {
+			System.err.println("Usage: " + DProblemWorker.class.getName() + " [-port n [-bind address]]");
+			System.exit(1);
+		} else if (port == null) {
+			// the standard output is reserved for the protocol
+			final OutputStream out = new FileOutputStream(FileDescriptor.out);
+			System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+			serve(new FileInputStream(FileDescriptor.in), out);
+		} else {
+			try (ServerSocket server = listen(bind, Integer.parseInt(port))) {
+				while (true) {
+					final Socket socket = server.accept();
+					socket.setTcpNoDelay(true);
+					final Thread t = new Thread(() -> {
+						try (Socket s = socket) {
+							serve(s.getInputStream(), s.getOutputStream());
+						} catch (IOException e) {
+							System.err.println("Executor disconnected: " + e.getMessage());
+						}
+					}, "decomposed-worker");
+					t.setDaemon(true);
+					t.start();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens the socket on which a worker listens for executors.
+	 * 
+	 * @param address
+	 *            the address of the interface to listen on, or null for the
+	 *            loopback interface.
+	 * @param port
+	 *            the port to listen on, or 0 for any free port.
+	 * @return the bound server socket.
+	 * @throws IOException
+	 *             if the address is unknown or the port unavailable.
+	 */
+	public static ServerSocket listen(String address, int port) throws IOException {
+		final InetAddress bind = address == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(address);
+		return new ServerSocket(port, 0, bind);
+	}
+
+	/**
+	 * Serves an executor until it disconnects.
+	 * 
+	 * @param input
+	 *            the stream of requests of the executor.
+	 * @param output
+	 *            the stream of replies to the executor.
+	 * @throws IOException
+	 *             if the executor is unreachable.
+	 */
+	public static void serve(InputStream input, OutputStream output) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+		RemoteProtocol.Problem problem = null;
+		ExtendedSolver solver = null;
+		final Map<Integer, Iterator<Solution>> solutions = new HashMap<Integer, Iterator<Solution>>();
+		try {
+			while (true) {
+				final byte request = in.readByte();
+				try {
+					switch (request) {
+					case RemoteProtocol.PROBLEM:
+						problem = RemoteProtocol.decode(in);
+						solver = new ExtendedSolver(problem.options);
+						out.writeByte(RemoteProtocol.READY);
+						break;
+					case RemoteProtocol.SOLVE: {
+						final int id = in.readInt();
+						final Solution config = RemoteProtocol.readConfig(in, problem);
+						final Iterator<Solution> it = solver.solveAll(problem.formula, problem.bounds.integrated(config));
+						solutions.put(id, it);
+						reply(out, problem, id, it, solutions);
+						break;
+					}
+					case RemoteProtocol.NEXT: {
+						final int id = in.readInt();
+						final Iterator<Solution> it = solutions.get(id);
+						if (it == null)
+							throw new IllegalStateException("Unknown configuration " + id + ".");
+						reply(out, problem, id, it, solutions);
+						break;
+					}
+					default:
+						throw new IOException("Unknown request " + request + ".");
+					}
+				} catch (IOException e) {
+					throw e;
+				} catch (Exception e) {
+					out.writeByte(RemoteProtocol.FAILURE);
+					out.writeUTF(String.valueOf(e));
+				}
+				out.flush();
+			}
+		} catch (EOFException e) {
+			// the executor is gone
+		} finally {
+			if (solver != null)
+				solver.free();
+		}
+	}
+
+	/**
+	 * Replies with the next solution of a configuration, discarding its
+	 * iterator once exhausted.
+	 */
+	private static void reply(DataOutputStream out, RemoteProtocol.Problem problem, int id, Iterator<Solution> it,
+			Map<Integer, Iterator<Solution>> solutions) throws IOException {
+		final Solution sol = it.next();
+		final boolean more = it.hasNext();
+		if (!more)
+			solutions.remove(id);
+		out.writeByte(RemoteProtocol.SOLUTION);
+		out.writeBoolean(more);
+		RemoteProtocol.writeSolution(out, problem, sol);
+	}
+
+}
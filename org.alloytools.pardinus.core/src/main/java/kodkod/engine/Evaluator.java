@@ -151,7 +151,7 @@ public final class Evaluator {
 			tmp = new TemporalInstance(tempss,tmp.loop, dp);
 		}
 		// temporal instances are evaluated using the static expansion
-		formula = LTL2FOLTranslator.translate(formula, instant, tmp.contains(TemporalTranslator.UNROLL_MAP), new HashMap<Formula,Formula>());
+		formula = LTL2FOLTranslator.translate(formula, instant, tmp.unrolls, new HashMap<Formula,Formula>());
 		return (Translator.evaluate(formula, tmp, options)).booleanValue();
 	}
 	
@@ -212,7 +212,7 @@ public final class Evaluator {
 			tmp = new TemporalInstance(tempss,tmp.loop, dp);
 		}
 		// temporal instances are always evaluated using the static expansion
-		Expression e1 = LTL2FOLTranslator.translate(expression, instant, tmp.contains(TemporalTranslator.UNROLL_MAP)); 
+		Expression e1 = LTL2FOLTranslator.translate(expression, instant, tmp.unrolls); 
 		final BooleanMatrix sol = Translator.evaluate(e1,tmp,options);
 		TupleSet exttuple = tmp.universe().factory().setOf(e1.arity(), sol.denseIndices());
 		// convert back into static universe, if available; will fail for initializing temporal instances
@@ -0,0 +1,229 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.fol2sat.Translation;
+import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+/**
+ * The integrated problems of a decomposed problem solved incrementally over a
+ * single SAT solver. The integrated problem is translated once, with the
+ * relations of the partial problem left at their amalgamated bounds, and each
+ * configuration is then solved by assuming the values of the primary variables
+ * of those relations. The clauses learned are thus kept across configurations.
+ * Not thread-safe beyond the iteration of the solutions of a configuration,
+ * each solver thread is expected to have its own.
+ * 
+ * Symmetry breaking predicates are not generated, since the symmetries of the
+ * amalgamated bounds are not those of the integrated problems. If bounds are
+ * still tightened by symmetries (of total orders and acyclic relations), the
+ * translation is rejected.
+ */
+final class IncrementalIntegration {
+
+	private final Translation.Whole translation;
+	private final AssumptionSATSolver cnf;
+	/** the bounds of the partial problem */
+	private final PardinusBounds bounds;
+	/** the translation time, to be reported by the first solution */
+	private long translTime;
+
+	private IncrementalIntegration(Translation.Whole translation, PardinusBounds bounds, long translTime) {
+		this.translation = translation;
+		this.cnf = (AssumptionSATSolver) translation.cnf();
+		this.bounds = bounds;
+		this.translTime = translTime;
+	}
+
+	/**
+	 * Translates the integrated problem of a decomposed problem with the
+	 * relations of the partial problem left unfixed.
+	 * 
+	 * @param formula
+	 *            the decomposed problem formula.
+	 * @param bounds
+	 *            the decomposed problem bounds.
+	 * @param options
+	 *            the options of the integrated solver.
+	 * @return the incremental integrated problem, or null if not applicable.
+	 */
+	static IncrementalIntegration translate(Formula formula, PardinusBounds bounds, ExtendedOptions options) {
+		final ExtendedOptions opt = options.clone();
+		opt.setSymmetryBreaking(0);
+		final PardinusBounds open = bounds.integratedOpen();
+		final long startTransl = System.currentTimeMillis();
+		final Translation.Whole transl = Translator.translate(formula, open, opt);
+		final long translTime = System.currentTimeMillis() - startTransl;
+		if (transl.trivial() || !(transl.cnf() instanceof AssumptionSATSolver)) {
+			transl.cnf().free();
+			return null;
+		}
+		final Bounds tbounds = transl.bounds();
+		for (Relation r : open.relations())
+			if (tbounds.upperBound(r) != null && (!tbounds.upperBound(r).equals(open.upperBound(r))
+					|| !tbounds.lowerBound(r).equals(open.lowerBound(r)))) {
+				transl.cnf().free();
+				return null;
+			}
+		return new IncrementalIntegration(transl, bounds, translTime);
+	}
+
+	/**
+	 * Solves the integrated problem of a configuration.
+	 * 
+	 * @param config
+	 *            the configuration.
+	 * @return the first solution and an iterator over the remaining ones.
+	 */
+	Entry<Solution, Iterator<Solution>> solve(Solution config) {
+		final ConfigIterator it = new ConfigIterator(config.instance());
+		return new AbstractMap.SimpleEntry<Solution, Iterator<Solution>>(it.next(), it);
+	}
+
+	/**
+	 * Calculates the literals that fix the partial relations to a configuration.
+	 * 
+	 * @return the assumptions, or null if the configuration is outside the bounds.
+	 */
+	private int[] assumptions(Instance config) {
+		final Bounds tbounds = translation.bounds();
+		final int[] lits = new int[translation.numPrimaryVariables()];
+		int n = 0;
+		for (Relation r : bounds.relations()) {
+			final TupleSet tuples = PardinusBounds.configuration(r, config);
+			if (tuples == null)
+				continue;
+			final TupleSet lower = tbounds.lowerBound(r), upper = tbounds.upperBound(r);
+			if (!upper.containsAll(tuples) || !tuples.containsAll(lower))
+				return null;
+			final IntSet vars = translation.primaryVariables(r);
+			// relations not constrained by the integrated formula have no variables
+			if (vars.isEmpty())
+				continue;
+			int var = vars.min();
+			for (IntIterator it = upper.indexView().iterator(); it.hasNext();) {
+				final int idx = it.next();
+				if (!lower.indexView().contains(idx))
+					lits[n++] = tuples.indexView().contains(idx) ? var++ : -var++;
+			}
+		}
+		return Arrays.copyOf(lits, n);
+	}
+
+	/**
+	 * An iterator over the solutions of the integrated problem of a
+	 * configuration. Solutions are excluded through clauses guarded by a fresh
+	 * activation literal, which is only assumed while iterating this
+	 * configuration.
+	 */
+	private final class ConfigIterator implements Iterator<Solution> {
+		private final Instance config;
+		private int[] assumptions;
+		private int[] notModel;
+		private boolean done;
+
+		ConfigIterator(Instance config) {
+			this.config = config;
+			this.assumptions = assumptions(config);
+			this.done = false;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !done;
+		}
+
+		@Override
+		public Solution next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			synchronized (IncrementalIntegration.this) {
+				try {
+					// exclude the previous solution of this configuration
+					if (notModel != null) {
+						activate();
+						cnf.addClause(notModel);
+					}
+					return nextSolution();
+				} catch (SATAbortedException sae) {
+					throw new AbortedException(sae);
+				}
+			}
+		}
+
+		/** Allocates the activation literal of this configuration, if not yet. */
+		private void activate() {
+			if (notModel[0] != 0)
+				return;
+			cnf.addVariables(1);
+			final int act = cnf.numberOfVariables();
+			assumptions = Arrays.copyOf(assumptions, assumptions.length + 1);
+			assumptions[assumptions.length - 1] = act;
+			notModel[0] = -act;
+		}
+
+		private Solution nextSolution() {
+			final int primaryVars = translation.numPrimaryVariables();
+			final long startSolve = System.currentTimeMillis();
+			final boolean isSat = assumptions != null && cnf.solve(assumptions);
+			final long solveTime = System.currentTimeMillis() - startSolve;
+			final Statistics stats = new Statistics(translation, translTime, solveTime);
+			translTime = 0;
+			if (!isSat) {
+				done = true;
+				return Solution.unsatisfiable(stats, null);
+			}
+			final Instance instance = translation.interpret();
+			// relations without variables are interpreted by their lower bound
+			for (Relation r : bounds.relations()) {
+				final TupleSet tuples = PardinusBounds.configuration(r, config);
+				if (tuples != null)
+					instance.add(r, tuples);
+			}
+			final int act = notModel == null ? 0 : notModel[0];
+			notModel = new int[primaryVars + 1];
+			notModel[0] = act;
+			for (int i = 1; i <= primaryVars; i++)
+				notModel[i] = cnf.valueOf(i) ? -i : i;
+			return Solution.satisfiable(stats, instance);
+		}
+	}
+
+}
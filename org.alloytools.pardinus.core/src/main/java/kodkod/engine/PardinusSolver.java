@@ -203,6 +203,9 @@ public class PardinusSolver implements
 		
 		if (solver instanceof IterableSolver<?,?>) {
 			Iterator<Solution> it = ((IterableSolver<PardinusBounds, ExtendedOptions>) solver).solveAll(formula, bounds);
+			// [HASLab] prefetching exploration
+			if (it instanceof PrefetchingExplorer.Rewindable && options.prefetch() > 0)
+				return new PrefetchingExplorer((PrefetchingExplorer.Rewindable) it, options.prefetch());
 			if (it instanceof Explorer)
 				return (Explorer<Solution>) it;
 			else {
@@ -0,0 +1,283 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Relation;
+
+/**
+ * An explorer that speculatively computes the next solutions of another
+ * explorer on a background thread, assuming that the last iteration operation
+ * requested will be repeated. Up to a given number of solutions are kept in a
+ * buffer. When a different operation is requested, the buffered solutions are
+ * discarded and the underlying explorer is rewound to the last solution
+ * returned, so that the solutions are exactly those that the underlying
+ * explorer would have produced alone.
+ * 
+ * Speculation stops once an operation fails or returns an unsatisfiable
+ * solution, or if the underlying explorer cannot be rewound from its current
+ * state.
+ */
+public class PrefetchingExplorer implements Explorer<Solution> {
+
+	/**
+	 * An explorer whose state can be restored to a previous point of the
+	 * exploration.
+	 */
+	public interface Rewindable extends Explorer<Solution> {
+
+		/**
+		 * Captures the current state of the exploration.
+		 * 
+		 * @return the current state, or null if it cannot be restored.
+		 */
+		public Object mark();
+
+		/**
+		 * Restores a state previously captured by {@link #mark()}, forgetting the
+		 * solutions produced since.
+		 * 
+		 * @param mark
+		 *            the state to be restored.
+		 */
+		public void rewind(Object mark);
+
+	}
+
+	private final Rewindable explorer;
+	private final int size;
+	private final ThreadPoolExecutor executor;
+	private final Deque<Future<Step>> buffer = new ArrayDeque<Future<Step>>();
+	/** The operation being speculated. */
+	private Op op;
+	/** The step of the last solution returned. */
+	private Step last;
+	/** The last step performed by the underlying explorer, only accessed by the executor. */
+	private Step head;
+
+	/**
+	 * Constructs a prefetching explorer over an explorer, which should not be
+	 * used directly afterwards.
+	 * 
+	 * @param explorer
+	 *            the underlying explorer.
+	 * @param size
+	 *            the maximum number of solutions computed ahead.
+	 */
+	public PrefetchingExplorer(Rewindable explorer, int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("size < 1: " + size);
+		this.explorer = explorer;
+		this.size = size;
+		this.executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+			Thread t = new Thread(r, "prefetching-explorer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.executor.allowCoreThreadTimeOut(true);
+		this.last = this.head = step(null, null);
+	}
+
+	@Override
+	public Solution next() {
+		return take(new Op('N', 0, 0, null));
+	}
+
+	@Override
+	public Solution nextC() {
+		return take(new Op('C', 0, 0, null));
+	}
+
+	@Override
+	public Solution nextP() {
+		return take(new Op('P', 0, 0, null));
+	}
+
+	@Override
+	public Solution nextS(int state, int delta, Set<Relation> change) {
+		return take(new Op('S', state, delta, change));
+	}
+
+	@Override
+	public synchronized boolean hasNext() {
+		return last.hasNext;
+	}
+
+	@Override
+	public synchronized boolean hasNextC() {
+		return last.hasNextC;
+	}
+
+	@Override
+	public synchronized boolean hasNextP() {
+		return last.hasNextP;
+	}
+
+	/**
+	 * Returns the outcome of an operation, either from the buffer if it repeats
+	 * the previous one, or by rewinding the underlying explorer and performing
+	 * it otherwise. The buffer is then refilled.
+	 */
+	private synchronized Solution take(Op next) {
+		Step step = null;
+		if (next.equals(op) && !buffer.isEmpty())
+			step = await(buffer.poll());
+		// the speculation stopped before this operation
+		if (step == null || step.skipped) {
+			for (Future<Step> f : buffer)
+				f.cancel(false);
+			buffer.clear();
+			final Step target = last;
+			step = await(executor.submit(() -> perform(next, target)));
+		}
+		op = next;
+		last = step;
+		while (buffer.size() < size)
+			buffer.add(executor.submit(() -> speculate(next)));
+		if (step.error != null)
+			throw step.error;
+		return step.solution;
+	}
+
+	/**
+	 * Performs an operation from the state of a given step, rewinding the
+	 * underlying explorer if it has moved beyond it.
+	 */
+	private Step perform(Op next, Step target) {
+		if (head != target)
+			explorer.rewind(target.mark);
+		Solution sol = null;
+		RuntimeException error = null;
+		try {
+			sol = next.apply(explorer);
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		head = step(sol, error);
+		return head;
+	}
+
+	/**
+	 * Performs an operation unless the exploration from the last step performed
+	 * is not to be speculated.
+	 */
+	private Step speculate(Op next) {
+		if (head.error != null || (head.solution != null && !head.solution.sat()) || head.mark == null)
+			return Step.SKIPPED;
+		return perform(next, head);
+	}
+
+	/** Captures the state of the underlying explorer after an operation. */
+	private Step step(Solution sol, RuntimeException error) {
+		return new Step(sol, error, false, explorer.mark(), explorer.hasNext(), explorer.hasNextC(), explorer.hasNextP());
+	}
+
+	private static Step await(Future<Step> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbortedException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new AbortedException(e.getCause());
+		}
+	}
+
+	/** An iteration operation and its arguments. */
+	private static final class Op {
+		private final char kind;
+		private final int state, delta;
+		private final Set<Relation> change;
+
+		private Op(char kind, int state, int delta, Set<Relation> change) {
+			this.kind = kind;
+			this.state = state;
+			this.delta = delta;
+			this.change = change == null ? null : new HashSet<Relation>(change);
+		}
+
+		private Solution apply(Explorer<Solution> explorer) {
+			switch (kind) {
+				case 'C':
+					return explorer.nextC();
+				case 'P':
+					return explorer.nextP();
+				case 'S':
+					return explorer.nextS(state, delta, change);
+				default:
+					return explorer.next();
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Op))
+				return false;
+			Op other = (Op) o;
+			return kind == other.kind && state == other.state && delta == other.delta && Objects.equals(change, other.change);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, state, delta, change);
+		}
+	}
+
+	/**
+	 * The outcome of an operation and the state of the underlying explorer
+	 * right after it.
+	 */
+	private static final class Step {
+		/** The step of an operation that was not speculated. */
+		private static final Step SKIPPED = new Step(null, null, true, null, false, false, false);
+
+		private final Solution solution;
+		private final RuntimeException error;
+		private final boolean skipped;
+		private final Object mark;
+		private final boolean hasNext, hasNextC, hasNextP;
+
+		private Step(Solution solution, RuntimeException error, boolean skipped, Object mark, boolean hasNext, boolean hasNextC, boolean hasNextP) {
+			this.solution = solution;
+			this.error = error;
+			this.skipped = skipped;
+			this.mark = mark;
+			this.hasNext = hasNext;
+			this.hasNextC = hasNextC;
+			this.hasNextP = hasNextP;
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * The integrated problems of a decomposed problem solved by a
+ * {@link DProblemWorker worker} in another process, either a JVM launched by
+ * this one or one listening on a host. The decomposed problem is shipped once,
+ * and each configuration is then shipped as the tuples of the partial
+ * relations. Solutions are requested one at a time, as the iterators are
+ * consumed, until the worker is closed. Not thread-safe beyond the iteration of the solutions of a
+ * configuration, each solver thread is expected to have its own.
+ */
+final class RemoteIntegration {
+
+	private final RemoteProtocol.Problem problem;
+	private final Process process;
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	/** the identifier of the next configuration */
+	private int configs;
+	/** whether the worker was stopped */
+	private volatile boolean closed;
+
+	private RemoteIntegration(RemoteProtocol.Problem problem, Process process, Socket socket, InputStream in,
+			OutputStream out) throws IOException {
+		this.problem = problem;
+		this.process = process;
+		this.socket = socket;
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.configs = 0;
+		try {
+			this.out.writeByte(RemoteProtocol.PROBLEM);
+			this.out.write(problem.bytes);
+			this.out.flush();
+			if (this.in.readByte() != RemoteProtocol.READY)
+				throw new IOException("Worker rejected the problem: " + this.in.readUTF());
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Launches a worker JVM with the class path of this one and ships it a
+	 * decomposed problem.
+	 * 
+	 * @param problem
+	 *            the encoded decomposed problem.
+	 * @return the integration over the launched worker.
+	 * @throws IOException
+	 *             if the worker could not be launched.
+	 */
+	static RemoteIntegration launch(RemoteProtocol.Problem problem) throws IOException {
+		final List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		if (System.getProperty("java.library.path") != null)
+			cmd.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(DProblemWorker.class.getName());
+		final Process process = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		return new RemoteIntegration(problem, process, null, process.getInputStream(), process.getOutputStream());
+	}
+
+	/**
+	 * Connects to a worker listening on a host and ships it a decomposed
+	 * problem.
+	 * 
+	 * @param address
+	 *            the address of the worker, as host:port.
+	 * @param problem
+	 *            the encoded decomposed problem.
+	 * @return the integration over the worker.
+	 * @throws IOException
+	 *             if the worker could not be reached.
+	 */
+	static RemoteIntegration connect(String address, RemoteProtocol.Problem problem) throws IOException {
+		final int i = address.lastIndexOf(':');
+		if (i < 0)
+			throw new IOException("Worker address " + address + " is not host:port.");
+		final Socket socket = new Socket(address.substring(0, i), Integer.parseInt(address.substring(i + 1)));
+		socket.setTcpNoDelay(true);
+		return new RemoteIntegration(problem, null, socket, socket.getInputStream(), socket.getOutputStream());
+	}
+
+	/**
+	 * Solves the integrated problem of a configuration.
+	 * 
+	 * @param config
+	 *            the configuration.
+	 * @return the first solution and an iterator over the remaining ones.
+	 * @throws IOException
+	 *             if the worker failed or is unreachable.
+	 */
+	synchronized Entry<Solution, Iterator<Solution>> solve(Solution config) throws IOException {
+		final int id = configs++;
+		out.writeByte(RemoteProtocol.SOLVE);
+		out.writeInt(id);
+		RemoteProtocol.writeConfig(out, problem, config);
+		out.flush();
+		final ConfigIterator it = new ConfigIterator(id);
+		return new AbstractMap.SimpleEntry<Solution, Iterator<Solution>>(it.read(), it);
+	}
+
+	/**
+	 * Reads the reply of the worker to a request.
+	 */
+	private Solution read(ConfigIterator it) throws IOException {
+		final byte reply = in.readByte();
+		if (reply == RemoteProtocol.FAILURE)
+			throw new IOException("Worker failed: " + in.readUTF());
+		if (reply != RemoteProtocol.SOLUTION)
+			throw new IOException("Unexpected reply " + reply + ".");
+		it.more = in.readBoolean();
+		return RemoteProtocol.readSolution(in, problem);
+	}
+
+	/**
+	 * Stops the worker, or disconnects from it. Requests still in progress
+	 * fail, and the remaining solutions of the configurations are dropped.
+	 */
+	void close() {
+		closed = true;
+		try {
+			if (socket != null)
+				socket.close();
+			else
+				out.close();
+		} catch (IOException e) {
+			// the worker is already gone
+		}
+		if (process != null)
+			process.destroy();
+	}
+
+	/**
+	 * An iterator over the solutions of the integrated problem of a
+	 * configuration, requested from the worker as needed.
+	 */
+	private final class ConfigIterator implements Iterator<Solution> {
+		private final int id;
+		/** whether the worker has further solutions */
+		private boolean more;
+
+		ConfigIterator(int id) {
+			this.id = id;
+		}
+
+		private Solution read() throws IOException {
+			return RemoteIntegration.this.read(this);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return more && !closed;
+		}
+
+		@Override
+		public Solution next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			synchronized (RemoteIntegration.this) {
+				try {
+					out.writeByte(RemoteProtocol.NEXT);
+					out.writeInt(id);
+					out.flush();
+					return read();
+				} catch (IOException e) {
+					more = false;
+					throw new AbortedException(e);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,973 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import kodkod.ast.ArrowMult;
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.BinaryTempFormula;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.Comprehension;
+import kodkod.ast.ConstantExpression;
+import kodkod.ast.ConstantFormula;
+import kodkod.ast.Decl;
+import kodkod.ast.Decls;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IfExpression;
+import kodkod.ast.IfIntExpression;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.LeafMult;
+import kodkod.ast.MixedMult;
+import kodkod.ast.MultiplicityFormula;
+import kodkod.ast.Multiplicities;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.NotFormula;
+import kodkod.ast.ProjectExpression;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.RelationPredicate;
+import kodkod.ast.SumExpression;
+import kodkod.ast.TempExpression;
+import kodkod.ast.UnaryExpression;
+import kodkod.ast.UnaryIntExpression;
+import kodkod.ast.UnaryTempFormula;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.ExprCastOperator;
+import kodkod.ast.operator.ExprCompOperator;
+import kodkod.ast.operator.ExprOperator;
+import kodkod.ast.operator.FormulaOperator;
+import kodkod.ast.operator.IntCastOperator;
+import kodkod.ast.operator.IntCompOperator;
+import kodkod.ast.operator.IntOperator;
+import kodkod.ast.operator.Multiplicity;
+import kodkod.ast.operator.Quantifier;
+import kodkod.ast.operator.TemporalOperator;
+import kodkod.ast.visitor.ReturnVisitor;
+import kodkod.engine.Solution.Outcome;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.config.Options.IntEncoding;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.Tuple;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import kodkod.util.ints.IntIterator;
+
+/**
+ * The wire format between a decomposed problem executor and the
+ * {@link DProblemWorker workers} solving its integrated problems in other
+ * processes. It only relies on data streams, so that workers may run on this
+ * or other hosts.
+ * 
+ * The decomposed problem is shipped once per worker. Its formula is sent as a
+ * table of nodes, children first, so that shared nodes, variables and
+ * relations are sent only once and are rebuilt through the public AST
+ * factories. Atoms are sent by name and tuples by index, so that the
+ * universe of a worker has the same indices. Configurations are sent as the
+ * tuples of the partial relations, and solutions as the tuples of every
+ * relation in their instances, including skolems. Only bounded static
+ * problems without symbolic bounds, targets or weights are supported.
+ */
+final class RemoteProtocol {
+
+	/** the version of the protocol, checked when a problem is shipped */
+	static final int VERSION = 1;
+
+	/** the requests of the executor, which closes the stream once done */
+	static final byte PROBLEM = 1, SOLVE = 2, NEXT = 3;
+
+	/** the replies of the workers */
+	static final byte READY = 0, SOLUTION = 1, FAILURE = 2;
+
+	private static final byte END = 0, RELATION = 1, VARIABLE = 2, CONSTANT_EXPR = 3, UNARY_EXPR = 4,
+			BINARY_EXPR = 5, NARY_EXPR = 6, COMPREHENSION = 7, IF_EXPR = 8, PROJECT = 9, INT_TO_EXPR = 10,
+			TEMP_EXPR = 11, INT_CONSTANT = 12, IF_INT = 13, EXPR_TO_INT = 14, NARY_INT = 15, BINARY_INT = 16,
+			UNARY_INT = 17, SUM = 18, INT_COMPARISON = 19, QUANTIFIED = 20, NARY_FORMULA = 21,
+			BINARY_FORMULA = 22, NOT = 23, CONSTANT_FORMULA = 24, COMPARISON = 25, MULTIPLICITY = 26,
+			ACYCLIC = 27, TOTAL_ORDER = 28, MULTIPLICITIES = 29, UNARY_TEMP = 30, BINARY_TEMP = 31, DECL = 32,
+			DECLS = 33;
+
+	private static final byte LEAF = 0, ARROW = 1, MIXED = 2;
+
+	private static final Expression[] CONSTANTS = { Expression.UNIV, Expression.IDEN, Expression.NONE,
+			Expression.INTS };
+
+	private RemoteProtocol() {}
+
+	/**
+	 * A decomposed problem as shipped to the workers, and the identifiers of its
+	 * relations.
+	 */
+	static final class Problem {
+		final Formula formula;
+		final PardinusBounds bounds;
+		final ExtendedOptions options;
+		/** the encoded problem, if built by the executor */
+		final byte[] bytes;
+		/** the nodes by identifier */
+		private final List<Object> nodes;
+		/** the identifiers of the relations */
+		private final Map<Relation, Integer> ids = new HashMap<Relation, Integer>();
+		/** the relations not shipped, such as skolems, by name */
+		private final Map<String, Relation> others = new HashMap<String, Relation>();
+
+		private Problem(Formula formula, PardinusBounds bounds, ExtendedOptions options, byte[] bytes,
+				List<Object> nodes) {
+			this.formula = formula;
+			this.bounds = bounds;
+			this.options = options;
+			this.bytes = bytes;
+			this.nodes = nodes;
+			for (int i = 0; i < nodes.size(); i++)
+				if (nodes.get(i) instanceof Relation)
+					ids.put((Relation) nodes.get(i), i);
+		}
+
+		private void writeRelation(DataOutputStream out, Relation r) throws IOException {
+			final Integer id = ids.get(r);
+			out.writeInt(id == null ? -1 : id);
+			if (id == null) {
+				out.writeUTF(r.name());
+				out.writeInt(r.arity());
+			}
+		}
+
+		private synchronized Relation readRelation(DataInputStream in) throws IOException {
+			final int id = in.readInt();
+			if (id >= 0)
+				return (Relation) nodes.get(id);
+			final String name = in.readUTF();
+			final int arity = in.readInt();
+			Relation r = others.get(name);
+			if (r == null || r.arity() != arity)
+				others.put(name, r = Relation.nary(name, arity));
+			return r;
+		}
+	}
+
+	/**
+	 * Encodes a decomposed problem to be shipped to the workers.
+	 * 
+	 * @param formula
+	 *            the decomposed problem formula.
+	 * @param bounds
+	 *            the decomposed problem bounds.
+	 * @param options
+	 *            the options of the integrated solver.
+	 * @return the encoded problem, or null if not supported.
+	 */
+	static Problem encode(Formula formula, PardinusBounds bounds, ExtendedOptions options) {
+		final PardinusBounds amalg = bounds.amalgamated();
+		if (options.temporal() || options.unbounded() || options.targetoriented() || options.isAllowHOL()
+				|| amalg == null || !SATFactory.find(options.solver().id()).isPresent())
+			return null;
+		for (PardinusBounds b : new PardinusBounds[] { bounds, amalg })
+			if (!b.lowerSymbBounds().isEmpty() || !b.upperSymbBounds().isEmpty() || !b.targets().isEmpty()
+					|| !b.weights().isEmpty())
+				return null;
+		final Universe universe = bounds.universe();
+		final Set<String> names = new HashSet<String>();
+		for (int i = 0; i < universe.size(); i++)
+			if (!names.add(universe.atom(i).toString()))
+				return null;
+
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(VERSION);
+			out.writeUTF(options.solver().id());
+			out.writeInt(options.bitwidth());
+			out.writeByte(options.intEncoding().ordinal());
+			out.writeInt(options.sharing());
+			out.writeInt(options.symmetryBreaking());
+			out.writeInt(options.skolemDepth());
+			out.writeBoolean(options.noOverflow());
+			out.writeBoolean(options.noMultBounds());
+			out.writeInt(universe.size());
+			for (int i = 0; i < universe.size(); i++)
+				out.writeUTF(universe.atom(i).toString());
+
+			final NodeWriter writer = new NodeWriter(out);
+			final int root = formula.accept(writer);
+			for (Relation r : bounds.relations())
+				r.accept(writer);
+			for (Relation r : amalg.relations())
+				r.accept(writer);
+			out.writeByte(END);
+			out.writeInt(root);
+			writeBounds(out, bounds, writer.ids);
+			writeBounds(out, amalg, writer.ids);
+			out.flush();
+
+			final List<Object> nodes = new ArrayList<Object>(writer.ids.size());
+			for (int i = 0; i < writer.ids.size(); i++)
+				nodes.add(null);
+			for (Map.Entry<Node, Integer> e : writer.ids.entrySet())
+				nodes.set(e.getValue(), e.getKey());
+			return new Problem(formula, bounds, options, bytes.toByteArray(), nodes);
+		} catch (UnsupportedOperationException e) {
+			options.reporter().debug("Integrated problems not distributable: " + e.getMessage());
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Decodes a decomposed problem shipped by an executor.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * @return the decoded problem.
+	 * @throws IOException
+	 *             if the problem is malformed or of another version.
+	 */
+	static Problem decode(DataInputStream in) throws IOException {
+		final int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported protocol version " + version + ".");
+		final ExtendedOptions options = new ExtendedOptions();
+		options.setSolver(SATFactory.get(in.readUTF()));
+		options.setBitwidth(in.readInt());
+		options.setIntEncoding(IntEncoding.values()[in.readByte()]);
+		options.setSharing(in.readInt());
+		options.setSymmetryBreaking(in.readInt());
+		options.setSkolemDepth(in.readInt());
+		options.setNoOverflow(in.readBoolean());
+		options.setNoMultBounds(in.readBoolean());
+		options.setRunTemporal(false);
+		options.setRunUnbounded(false);
+		options.setRunDecomposed(true);
+		final List<String> atoms = new ArrayList<String>();
+		for (int i = in.readInt(); i > 0; i--)
+			atoms.add(in.readUTF());
+		final Universe universe = new Universe(atoms);
+
+		final List<Object> nodes = readNodes(in);
+		final Formula formula = (Formula) nodes.get(in.readInt());
+		final PardinusBounds partial = new PardinusBounds(universe);
+		readBounds(in, partial, nodes);
+		final Bounds remainder = new Bounds(universe);
+		readBounds(in, remainder, nodes);
+		final PardinusBounds bounds = new PardinusBounds(partial, remainder);
+		for (IntIterator it = remainder.ints().iterator(); it.hasNext();) {
+			final int i = it.next();
+			bounds.amalgamated().boundExactly(i, remainder.exactBound(i));
+		}
+		return new Problem(formula, bounds, options, null, nodes);
+	}
+
+	/**
+	 * Writes the tuples of the partial relations in a configuration.
+	 */
+	static void writeConfig(DataOutputStream out, Problem problem, Solution config) throws IOException {
+		final List<Relation> rels = new ArrayList<Relation>();
+		for (Relation r : problem.bounds.relations())
+			if (PardinusBounds.configuration(r, config.instance()) != null)
+				rels.add(r);
+		out.writeInt(config.stats().primaryVariables());
+		out.writeInt(rels.size());
+		for (Relation r : rels) {
+			problem.writeRelation(out, r);
+			writeTuples(out, PardinusBounds.configuration(r, config.instance()));
+		}
+	}
+
+	/**
+	 * Reads a configuration, as a solution of the partial problem.
+	 */
+	static Solution readConfig(DataInputStream in, Problem problem) throws IOException {
+		final Statistics stats = new Statistics(in.readInt(), 0, 0, 0, 0);
+		final Instance instance = new Instance(problem.bounds.universe());
+		for (int n = in.readInt(); n > 0; n--) {
+			final Relation r = problem.readRelation(in);
+			instance.add(r, readTuples(in, problem.bounds.universe().factory()));
+		}
+		return Solution.satisfiable(stats, instance);
+	}
+
+	/**
+	 * Writes a solution of an integrated problem.
+	 */
+	static void writeSolution(DataOutputStream out, Problem problem, Solution sol) throws IOException {
+		out.writeByte(sol.outcome().ordinal());
+		out.writeInt(sol.stats().primaryVariables());
+		out.writeInt(sol.stats().variables());
+		out.writeInt(sol.stats().clauses());
+		out.writeLong(sol.stats().translationTime());
+		out.writeLong(sol.stats().solvingTime());
+		if (sol.instance() == null)
+			return;
+		final Map<Relation, TupleSet> tuples = sol.instance().relationTuples();
+		out.writeInt(tuples.size());
+		for (Map.Entry<Relation, TupleSet> e : tuples.entrySet()) {
+			problem.writeRelation(out, e.getKey());
+			writeTuples(out, e.getValue());
+		}
+		out.writeInt(sol.instance().ints().size());
+		for (IntIterator it = sol.instance().ints().iterator(); it.hasNext();) {
+			final int i = it.next();
+			out.writeInt(i);
+			writeTuples(out, sol.instance().tuples(i));
+		}
+	}
+
+	/**
+	 * Reads a solution of an integrated problem.
+	 */
+	static Solution readSolution(DataInputStream in, Problem problem) throws IOException {
+		final Outcome outcome = Outcome.values()[in.readByte()];
+		final Statistics stats = new Statistics(in.readInt(), in.readInt(), in.readInt(), in.readLong(),
+				in.readLong());
+		switch (outcome) {
+		case UNSATISFIABLE:
+			return Solution.unsatisfiable(stats, null);
+		case TRIVIALLY_UNSATISFIABLE:
+			return Solution.triviallyUnsatisfiable(stats, null);
+		default:
+			final Universe universe = problem.bounds.universe();
+			final Instance instance = new Instance(universe);
+			for (int n = in.readInt(); n > 0; n--) {
+				final Relation r = problem.readRelation(in);
+				instance.add(r, readTuples(in, universe.factory()));
+			}
+			for (int n = in.readInt(); n > 0; n--) {
+				final int i = in.readInt();
+				instance.add(i, readTuples(in, universe.factory()));
+			}
+			return outcome == Outcome.SATISFIABLE ? Solution.satisfiable(stats, instance)
+					: Solution.triviallySatisfiable(stats, instance);
+		}
+	}
+
+	private static void writeBounds(DataOutputStream out, Bounds bounds, Map<Node, Integer> ids)
+			throws IOException {
+		out.writeInt(bounds.relations().size());
+		for (Relation r : bounds.relations()) {
+			out.writeInt(ids.get(r));
+			writeTuples(out, bounds.lowerBound(r));
+			writeTuples(out, bounds.upperBound(r));
+		}
+		out.writeInt(bounds.ints().size());
+		for (IntIterator it = bounds.ints().iterator(); it.hasNext();) {
+			final int i = it.next();
+			out.writeInt(i);
+			writeTuples(out, bounds.exactBound(i));
+		}
+	}
+
+	private static void readBounds(DataInputStream in, Bounds bounds, List<Object> nodes) throws IOException {
+		final TupleFactory factory = bounds.universe().factory();
+		for (int n = in.readInt(); n > 0; n--) {
+			final Relation r = (Relation) nodes.get(in.readInt());
+			final TupleSet lower = readTuples(in, factory);
+			bounds.bound(r, lower, readTuples(in, factory));
+		}
+		for (int n = in.readInt(); n > 0; n--) {
+			final int i = in.readInt();
+			bounds.boundExactly(i, readTuples(in, factory));
+		}
+	}
+
+	private static void writeTuples(DataOutputStream out, TupleSet tuples) throws IOException {
+		out.writeInt(tuples.arity());
+		out.writeInt(tuples.size());
+		for (Tuple t : tuples)
+			out.writeInt(t.index());
+	}
+
+	private static TupleSet readTuples(DataInputStream in, TupleFactory factory) throws IOException {
+		final int arity = in.readInt();
+		final TupleSet tuples = factory.noneOf(arity);
+		for (int n = in.readInt(); n > 0; n--)
+			tuples.add(factory.tuple(arity, in.readInt()));
+		return tuples;
+	}
+
+	/**
+	 * Writes the nodes of a formula, children first, returning their identifiers.
+	 * Nodes are written only once.
+	 */
+	private static final class NodeWriter implements ReturnVisitor<Integer, Integer, Integer, Integer> {
+
+		private final DataOutputStream out;
+		private final Map<Node, Integer> ids = new IdentityHashMap<Node, Integer>();
+
+		NodeWriter(DataOutputStream out) {
+			this.out = out;
+		}
+
+		/** Writes the record of a node whose children were already written. */
+		private int write(Node node, int tag, int... fields) {
+			try {
+				out.writeByte(tag);
+				for (int f : fields)
+					out.writeInt(f);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			final int id = ids.size();
+			ids.put(node, id);
+			return id;
+		}
+
+		private int[] children(int op, Iterator<? extends Node> it, int size) {
+			final int[] fields = new int[size + 2];
+			fields[0] = op;
+			fields[1] = size;
+			for (int i = 2; it.hasNext(); i++)
+				fields[i] = (Integer) it.next().accept(this);
+			return fields;
+		}
+
+		private int[] mults(Multiplicities m, List<Integer> fields) {
+			if (m instanceof LeafMult) {
+				final int e = m.expr().accept(this);
+				fields.add((int) LEAF);
+				fields.add(e);
+				fields.add(m.mult.ordinal());
+				fields.add(m.exact ? 1 : 0);
+			} else if (m instanceof ArrowMult) {
+				fields.add((int) ARROW);
+				mults(((ArrowMult) m).left, fields);
+				mults(((ArrowMult) m).right, fields);
+				fields.add(m.mult.ordinal());
+				fields.add(m.exact ? 1 : 0);
+			} else if (m instanceof MixedMult) {
+				fields.add((int) MIXED);
+				mults(((MixedMult) m).left, fields);
+				mults(((MixedMult) m).right, fields);
+			} else
+				throw new UnsupportedOperationException(m.toString());
+			final int[] res = new int[fields.size()];
+			for (int i = 0; i < res.length; i++)
+				res[i] = fields.get(i);
+			return res;
+		}
+
+		/** Writes the record of a relation or variable, identified by its name. */
+		private int leaf(Expression leaf, int tag, int kind) {
+			try {
+				out.writeByte(tag);
+				out.writeByte(kind);
+				out.writeUTF(leaf.toString());
+				out.writeInt(leaf.arity());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			final int id = ids.size();
+			ids.put(leaf, id);
+			return id;
+		}
+
+		public Integer visit(Decls decls) {
+			final Integer id = ids.get(decls);
+			return id != null ? id : write(decls, DECLS, children(0, decls.iterator(), decls.size()));
+		}
+
+		public Integer visit(Decl decl) {
+			Integer id = ids.get(decl);
+			if (id != null)
+				return id;
+			final int v = decl.variable().accept(this), e = decl.expression().accept(this);
+			return write(decl, DECL, v, decl.multiplicity().ordinal(), e);
+		}
+
+		public Integer visit(Relation relation) {
+			final Integer id = ids.get(relation);
+			if (id != null)
+				return id;
+			if (relation.isSkolem())
+				throw new UnsupportedOperationException("skolem " + relation);
+			return leaf(relation, RELATION, relation.isVariable() ? 1 : relation.isAtom() ? 2 : 0);
+		}
+
+		public Integer visit(Variable variable) {
+			final Integer id = ids.get(variable);
+			if (id != null)
+				return id;
+			return leaf(variable, VARIABLE, variable.isVariable() ? 1 : 0);
+		}
+
+		public Integer visit(ConstantExpression constExpr) {
+			final Integer id = ids.get(constExpr);
+			if (id != null)
+				return id;
+			for (int i = 0; i < CONSTANTS.length; i++)
+				if (CONSTANTS[i] == constExpr)
+					return write(constExpr, CONSTANT_EXPR, i);
+			throw new UnsupportedOperationException("constant " + constExpr);
+		}
+
+		public Integer visit(UnaryExpression unaryExpr) {
+			final Integer id = ids.get(unaryExpr);
+			return id != null ? id
+					: write(unaryExpr, UNARY_EXPR, unaryExpr.op().ordinal(), unaryExpr.expression().accept(this));
+		}
+
+		public Integer visit(BinaryExpression binExpr) {
+			final Integer id = ids.get(binExpr);
+			if (id != null)
+				return id;
+			final int l = binExpr.left().accept(this), r = binExpr.right().accept(this);
+			return write(binExpr, BINARY_EXPR, binExpr.op().ordinal(), l, r);
+		}
+
+		public Integer visit(NaryExpression expr) {
+			final Integer id = ids.get(expr);
+			return id != null ? id : write(expr, NARY_EXPR, children(expr.op().ordinal(), expr.iterator(), expr.size()));
+		}
+
+		public Integer visit(Comprehension comprehension) {
+			final Integer id = ids.get(comprehension);
+			if (id != null)
+				return id;
+			final int d = comprehension.decls().accept(this), f = comprehension.formula().accept(this);
+			return write(comprehension, COMPREHENSION, d, f);
+		}
+
+		public Integer visit(IfExpression ifExpr) {
+			final Integer id = ids.get(ifExpr);
+			if (id != null)
+				return id;
+			final int c = ifExpr.condition().accept(this), t = ifExpr.thenExpr().accept(this),
+					e = ifExpr.elseExpr().accept(this);
+			return write(ifExpr, IF_EXPR, c, t, e);
+		}
+
+		public Integer visit(ProjectExpression project) {
+			final Integer id = ids.get(project);
+			if (id != null)
+				return id;
+			final int e = project.expression().accept(this);
+			final int[] fields = children(e, project.columns(), project.arity());
+			return write(project, PROJECT, fields);
+		}
+
+		public Integer visit(IntToExprCast castExpr) {
+			final Integer id = ids.get(castExpr);
+			return id != null ? id
+					: write(castExpr, INT_TO_EXPR, castExpr.op().ordinal(), castExpr.intExpr().accept(this));
+		}
+
+		public Integer visit(IntConstant intConst) {
+			final Integer id = ids.get(intConst);
+			return id != null ? id : write(intConst, INT_CONSTANT, intConst.value());
+		}
+
+		public Integer visit(IfIntExpression intExpr) {
+			final Integer id = ids.get(intExpr);
+			if (id != null)
+				return id;
+			final int c = intExpr.condition().accept(this), t = intExpr.thenExpr().accept(this),
+					e = intExpr.elseExpr().accept(this);
+			return write(intExpr, IF_INT, c, t, e);
+		}
+
+		public Integer visit(ExprToIntCast intExpr) {
+			final Integer id = ids.get(intExpr);
+			return id != null ? id
+					: write(intExpr, EXPR_TO_INT, intExpr.op().ordinal(), intExpr.expression().accept(this));
+		}
+
+		public Integer visit(NaryIntExpression intExpr) {
+			final Integer id = ids.get(intExpr);
+			return id != null ? id
+					: write(intExpr, NARY_INT, children(intExpr.op().ordinal(), intExpr.iterator(), intExpr.size()));
+		}
+
+		public Integer visit(BinaryIntExpression intExpr) {
+			final Integer id = ids.get(intExpr);
+			if (id != null)
+				return id;
+			final int l = intExpr.left().accept(this), r = intExpr.right().accept(this);
+			return write(intExpr, BINARY_INT, intExpr.op().ordinal(), l, r);
+		}
+
+		public Integer visit(UnaryIntExpression intExpr) {
+			final Integer id = ids.get(intExpr);
+			return id != null ? id
+					: write(intExpr, UNARY_INT, intExpr.op().ordinal(), intExpr.intExpr().accept(this));
+		}
+
+		public Integer visit(SumExpression intExpr) {
+			final Integer id = ids.get(intExpr);
+			if (id != null)
+				return id;
+			final int d = intExpr.decls().accept(this), e = intExpr.intExpr().accept(this);
+			return write(intExpr, SUM, d, e);
+		}
+
+		public Integer visit(IntComparisonFormula intComp) {
+			final Integer id = ids.get(intComp);
+			if (id != null)
+				return id;
+			final int l = intComp.left().accept(this), r = intComp.right().accept(this);
+			return write(intComp, INT_COMPARISON, intComp.op().ordinal(), l, r);
+		}
+
+		public Integer visit(QuantifiedFormula quantFormula) {
+			final Integer id = ids.get(quantFormula);
+			if (id != null)
+				return id;
+			final int d = quantFormula.decls().accept(this), dom = quantFormula.domain().accept(this),
+					b = quantFormula.body().accept(this);
+			return write(quantFormula, QUANTIFIED, quantFormula.quantifier().ordinal(), d, dom, b);
+		}
+
+		public Integer visit(NaryFormula formula) {
+			final Integer id = ids.get(formula);
+			return id != null ? id
+					: write(formula, NARY_FORMULA, children(formula.op().ordinal(), formula.iterator(), formula.size()));
+		}
+
+		public Integer visit(BinaryFormula binFormula) {
+			final Integer id = ids.get(binFormula);
+			if (id != null)
+				return id;
+			final int l = binFormula.left().accept(this), r = binFormula.right().accept(this);
+			return write(binFormula, BINARY_FORMULA, binFormula.op().ordinal(), l, r);
+		}
+
+		public Integer visit(NotFormula not) {
+			final Integer id = ids.get(not);
+			return id != null ? id : write(not, NOT, not.formula().accept(this));
+		}
+
+		public Integer visit(ConstantFormula constant) {
+			final Integer id = ids.get(constant);
+			return id != null ? id : write(constant, CONSTANT_FORMULA, constant.booleanValue() ? 1 : 0);
+		}
+
+		public Integer visit(ComparisonFormula compFormula) {
+			final Integer id = ids.get(compFormula);
+			if (id != null)
+				return id;
+			final int l = compFormula.left().accept(this), r = compFormula.right().accept(this);
+			return write(compFormula, COMPARISON, compFormula.op().ordinal(), l, r);
+		}
+
+		public Integer visit(MultiplicityFormula multFormula) {
+			final Integer id = ids.get(multFormula);
+			return id != null ? id
+					: write(multFormula, MULTIPLICITY, multFormula.multiplicity().ordinal(),
+							multFormula.expression().accept(this));
+		}
+
+		public Integer visit(RelationPredicate predicate) {
+			final Integer id = ids.get(predicate);
+			if (id != null)
+				return id;
+			final int r = predicate.relation().accept(this);
+			switch (predicate.name()) {
+			case ACYCLIC:
+				return write(predicate, ACYCLIC, r);
+			case TOTAL_ORDERING:
+				final RelationPredicate.TotalOrdering ord = (RelationPredicate.TotalOrdering) predicate;
+				final int o = ord.ordered().accept(this), f = ord.first().accept(this), l = ord.last().accept(this);
+				return write(predicate, TOTAL_ORDER, r, o, f, l);
+			case MULTIPLICITY:
+				final List<Integer> fields = new ArrayList<Integer>();
+				fields.add(r);
+				return write(predicate, MULTIPLICITIES,
+						mults(((RelationPredicate.Multiplicityx) predicate).mults(), fields));
+			default:
+				throw new UnsupportedOperationException("predicate " + predicate);
+			}
+		}
+
+		public Integer visit(UnaryTempFormula temporalFormula) {
+			final Integer id = ids.get(temporalFormula);
+			return id != null ? id
+					: write(temporalFormula, UNARY_TEMP, temporalFormula.op().ordinal(),
+							temporalFormula.formula().accept(this));
+		}
+
+		public Integer visit(BinaryTempFormula temporalFormula) {
+			final Integer id = ids.get(temporalFormula);
+			if (id != null)
+				return id;
+			final int l = temporalFormula.left().accept(this), r = temporalFormula.right().accept(this);
+			return write(temporalFormula, BINARY_TEMP, temporalFormula.op().ordinal(), l, r);
+		}
+
+		public Integer visit(TempExpression temporalExpr) {
+			final Integer id = ids.get(temporalExpr);
+			return id != null ? id
+					: write(temporalExpr, TEMP_EXPR, temporalExpr.op().ordinal(),
+							temporalExpr.expression().accept(this));
+		}
+	}
+
+	/**
+	 * Reads the table of nodes of a formula, rebuilding each node from its
+	 * already read children.
+	 */
+	private static List<Object> readNodes(DataInputStream in) throws IOException {
+		final List<Object> nodes = new ArrayList<Object>();
+		for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+			final Object node;
+			switch (tag) {
+			case RELATION: {
+				final int kind = in.readByte();
+				final String name = in.readUTF();
+				final int arity = in.readInt();
+				node = kind == 1 ? Relation.variable(name, arity)
+						: kind == 2 ? Relation.atom(name) : Relation.nary(name, arity);
+				break;
+			}
+			case VARIABLE: {
+				final int kind = in.readByte();
+				final String name = in.readUTF();
+				final int arity = in.readInt();
+				node = kind == 1 ? Variable.variable(name, arity) : Variable.nary(name, arity);
+				break;
+			}
+			case CONSTANT_EXPR:
+				node = CONSTANTS[in.readInt()];
+				break;
+			case UNARY_EXPR: {
+				final ExprOperator op = ExprOperator.values()[in.readInt()];
+				node = expr(nodes, in).apply(op);
+				break;
+			}
+			case BINARY_EXPR: {
+				final ExprOperator op = ExprOperator.values()[in.readInt()];
+				node = expr(nodes, in).compose(op, expr(nodes, in));
+				break;
+			}
+			case NARY_EXPR: {
+				final ExprOperator op = ExprOperator.values()[in.readInt()];
+				final Expression[] children = new Expression[in.readInt()];
+				for (int i = 0; i < children.length; i++)
+					children[i] = expr(nodes, in);
+				node = Expression.compose(op, children);
+				break;
+			}
+			case COMPREHENSION: {
+				final Decls decls = (Decls) nodes.get(in.readInt());
+				node = formula(nodes, in).comprehension(decls);
+				break;
+			}
+			case IF_EXPR:
+				node = formula(nodes, in).thenElse(expr(nodes, in), expr(nodes, in));
+				break;
+			case PROJECT: {
+				final Expression expr = expr(nodes, in);
+				final IntExpression[] columns = new IntExpression[in.readInt()];
+				for (int i = 0; i < columns.length; i++)
+					columns[i] = intExpr(nodes, in);
+				node = expr.project(columns);
+				break;
+			}
+			case INT_TO_EXPR: {
+				final IntCastOperator op = IntCastOperator.values()[in.readInt()];
+				node = intExpr(nodes, in).cast(op);
+				break;
+			}
+			case TEMP_EXPR: {
+				final TemporalOperator op = TemporalOperator.values()[in.readInt()];
+				node = expr(nodes, in).apply(op);
+				break;
+			}
+			case INT_CONSTANT:
+				node = IntConstant.constant(in.readInt());
+				break;
+			case IF_INT:
+				node = formula(nodes, in).thenElse(intExpr(nodes, in), intExpr(nodes, in));
+				break;
+			case EXPR_TO_INT: {
+				final ExprCastOperator op = ExprCastOperator.values()[in.readInt()];
+				node = expr(nodes, in).apply(op);
+				break;
+			}
+			case NARY_INT: {
+				final IntOperator op = IntOperator.values()[in.readInt()];
+				final IntExpression[] children = new IntExpression[in.readInt()];
+				for (int i = 0; i < children.length; i++)
+					children[i] = intExpr(nodes, in);
+				node = IntExpression.compose(op, children);
+				break;
+			}
+			case BINARY_INT: {
+				final IntOperator op = IntOperator.values()[in.readInt()];
+				node = intExpr(nodes, in).compose(op, intExpr(nodes, in));
+				break;
+			}
+			case UNARY_INT: {
+				final IntOperator op = IntOperator.values()[in.readInt()];
+				node = intExpr(nodes, in).apply(op);
+				break;
+			}
+			case SUM: {
+				final Decls decls = (Decls) nodes.get(in.readInt());
+				node = intExpr(nodes, in).sum(decls);
+				break;
+			}
+			case INT_COMPARISON: {
+				final IntCompOperator op = IntCompOperator.values()[in.readInt()];
+				node = intExpr(nodes, in).compare(op, intExpr(nodes, in));
+				break;
+			}
+			case QUANTIFIED: {
+				final Quantifier q = Quantifier.values()[in.readInt()];
+				final Decls decls = (Decls) nodes.get(in.readInt());
+				final Formula domain = formula(nodes, in);
+				node = formula(nodes, in).quantify(q, decls, domain);
+				break;
+			}
+			case NARY_FORMULA: {
+				final FormulaOperator op = FormulaOperator.values()[in.readInt()];
+				final Formula[] children = new Formula[in.readInt()];
+				for (int i = 0; i < children.length; i++)
+					children[i] = formula(nodes, in);
+				node = Formula.compose(op, children);
+				break;
+			}
+			case BINARY_FORMULA: {
+				final FormulaOperator op = FormulaOperator.values()[in.readInt()];
+				node = formula(nodes, in).compose(op, formula(nodes, in));
+				break;
+			}
+			case NOT:
+				node = formula(nodes, in).not();
+				break;
+			case CONSTANT_FORMULA:
+				node = Formula.constant(in.readInt() != 0);
+				break;
+			case COMPARISON: {
+				final ExprCompOperator op = ExprCompOperator.values()[in.readInt()];
+				node = expr(nodes, in).compare(op, expr(nodes, in));
+				break;
+			}
+			case MULTIPLICITY: {
+				final Multiplicity mult = Multiplicity.values()[in.readInt()];
+				node = expr(nodes, in).apply(mult);
+				break;
+			}
+			case ACYCLIC:
+				node = ((Relation) nodes.get(in.readInt())).acyclic();
+				break;
+			case TOTAL_ORDER: {
+				final Relation r = (Relation) nodes.get(in.readInt());
+				final Relation ordered = (Relation) nodes.get(in.readInt()), first = (Relation) nodes.get(in.readInt());
+				node = r.totalOrder(ordered, first, (Relation) nodes.get(in.readInt()));
+				break;
+			}
+			case MULTIPLICITIES: {
+				final Relation r = (Relation) nodes.get(in.readInt());
+				node = r.mult_constraint(mults(nodes, in));
+				break;
+			}
+			case UNARY_TEMP: {
+				final TemporalOperator op = TemporalOperator.values()[in.readInt()];
+				node = formula(nodes, in).apply(op);
+				break;
+			}
+			case BINARY_TEMP: {
+				final TemporalOperator op = TemporalOperator.values()[in.readInt()];
+				node = formula(nodes, in).compose(op, formula(nodes, in));
+				break;
+			}
+			case DECL: {
+				final Variable v = (Variable) nodes.get(in.readInt());
+				final Multiplicity mult = Multiplicity.values()[in.readInt()];
+				node = v.declare(mult, expr(nodes, in));
+				break;
+			}
+			case DECLS: {
+				in.readInt();
+				final int size = in.readInt();
+				Decls decls = (Decls) nodes.get(in.readInt());
+				for (int n = size - 1; n > 0; n--)
+					decls = decls.and((Decls) nodes.get(in.readInt()));
+				node = decls;
+				break;
+			}
+			default:
+				throw new IOException("Unknown node " + tag + ".");
+			}
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	private static Multiplicities mults(List<Object> nodes, DataInputStream in) throws IOException {
+		final int tag = in.readInt();
+		switch (tag) {
+		case LEAF: {
+			final Expression e = expr(nodes, in);
+			return new LeafMult(e, Multiplicity.values()[in.readInt()], in.readInt() != 0);
+		}
+		case ARROW: {
+			final Multiplicities l = mults(nodes, in), r = mults(nodes, in);
+			return new ArrowMult(l, r, Multiplicity.values()[in.readInt()], in.readInt() != 0);
+		}
+		case MIXED: {
+			final Multiplicities l = mults(nodes, in);
+			return new MixedMult(l, mults(nodes, in));
+		}
+		default:
+			throw new IOException("Unknown multiplicity " + tag + ".");
+		}
+	}
+
+	private static Expression expr(List<Object> nodes, DataInputStream in) throws IOException {
+		return (Expression) nodes.get(in.readInt());
+	}
+
+	private static IntExpression intExpr(List<Object> nodes, DataInputStream in) throws IOException {
+		return (IntExpression) nodes.get(in.readInt());
+	}
+
+	private static Formula formula(List<Object> nodes, DataInputStream in) throws IOException {
+		return (Formula) nodes.get(in.readInt());
+	}
+
+}
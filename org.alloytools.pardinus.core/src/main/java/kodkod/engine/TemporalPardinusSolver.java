@@ -35,12 +35,19 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
 import kodkod.engine.config.ExtendedOptions;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.TemporalOptions.TraceStrategy;
 import kodkod.engine.config.TargetOptions.TMode;
 import kodkod.engine.fol2sat.HigherOrderDeclException;
 import kodkod.engine.fol2sat.Translation;
@@ -51,12 +58,14 @@ import kodkod.engine.ltl2fol.TemporalBoundsExpander;
 import kodkod.engine.ltl2fol.TemporalTranslation;
 import kodkod.engine.ltl2fol.TemporalTranslator;
 import kodkod.engine.ltl2fol.TemporalTranslator.IterationStep;
+import kodkod.engine.satlab.AssumptionSATSolver;
 import kodkod.engine.satlab.SATAbortedException;
 import kodkod.engine.satlab.SATProver;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.engine.satlab.TargetSATSolver;
 import kodkod.engine.satlab.WTargetSATSolver;
 import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
 import kodkod.instance.PardinusBounds;
 import kodkod.instance.TemporalInstance;
 import kodkod.instance.TupleSet;
@@ -126,6 +135,13 @@ public final class TemporalPardinusSolver
 			UnboundLeafException, AbortedException {
 		assert !options.unbounded();
 		try {
+			if (options.incrementalUnrolling() && options.solver().assumptions() && !options.decomposed()
+					&& !options.targetoriented()) {
+				Solution sol = solveUnrolling(formula, bounds);
+				if (sol != null)
+					return sol;
+			}
+
 			boolean isSat = false;
 
 			long startTransl = System.currentTimeMillis();
@@ -134,9 +150,13 @@ public final class TemporalPardinusSolver
 			long transTime = endTransl - startTransl;
 
 			long solveTime = 0;
-			if (tmptrans.trivial() && tmptrans.traceLength() == options.maxTraceLength())
+			// only trivially true prefix translations stop before the max length
+			if (tmptrans.trivial())
 				return trivial(tmptrans, endTransl - startTransl);
 
+			if (options.traceLengthWindow() > 1 && tmptrans.traceLength() < options.maxTraceLength())
+				return solveWindow(tmptrans, transTime, bounds);
+
 			SATSolver cnf = tmptrans.cnf();
 
 			options.reporter().solvingCNF(tmptrans.traceLength(), tmptrans.numPrimaryVariables(), cnf.numberOfVariables(),
@@ -147,9 +167,14 @@ public final class TemporalPardinusSolver
 			solveTime = endSolve - startSolve;
 			final Statistics stats = new Statistics(tmptrans, transTime, solveTime);
 
+			int unsatLength = tmptrans.traceLength() - 1;
 			while (!isSat && tmptrans.traceLength() < options.maxTraceLength()) {
+				unsatLength = tmptrans.traceLength();
 				startTransl = System.currentTimeMillis();
-				tmptrans = TemporalTranslator.nextStep(tmptrans);
+				if (options.traceStrategy() == TraceStrategy.LINEAR)
+					tmptrans = TemporalTranslator.nextStep(tmptrans);
+				else
+					tmptrans = TemporalTranslator.translateLength(tmptrans, nextLength(tmptrans.traceLength()));
 				endTransl = System.currentTimeMillis();
 				transTime = endTransl - startTransl;
 
@@ -164,12 +189,267 @@ public final class TemporalPardinusSolver
 
 				stats.update(tmptrans, transTime, solveTime);
 			}
+
+			// [HASLab] binary search back down for the minimal witness
+			while (isSat && options.traceStrategy() == TraceStrategy.BISECTION
+					&& tmptrans.traceLength() - unsatLength > 1) {
+				startTransl = System.currentTimeMillis();
+				TemporalTranslation probe = TemporalTranslator.translateLength(tmptrans,
+						(unsatLength + tmptrans.traceLength()) / 2);
+				endTransl = System.currentTimeMillis();
+				transTime = endTransl - startTransl;
+
+				cnf = probe.cnf();
+
+				options.reporter().solvingCNF(probe.traceLength(), probe.numPrimaryVariables(), cnf.numberOfVariables(),
+						cnf.numberOfClauses());
+				startSolve = System.currentTimeMillis();
+				boolean probeSat = cnf.solve();
+				endSolve = System.currentTimeMillis();
+				solveTime = endSolve - startSolve;
+
+				stats.update(probe, transTime, solveTime);
+				if (probeSat) {
+					tmptrans.cnf().free();
+					tmptrans = probe;
+				} else {
+					cnf.free();
+					unsatLength = probe.traceLength();
+				}
+			}
 			return isSat ? sat(tmptrans, stats, bounds) : unsat(tmptrans, stats);
 		} catch (SATAbortedException sae) {
 			throw new AbortedException(sae);
 		}
 	}
 
+	/**
+	 * Solves a temporal problem by increasing the trace length over a single SAT
+	 * solver, through assumptions on the last state, rather than translating each
+	 * trace length anew. Clauses learned for shorter traces are kept.
+	 * 
+	 * @return the solution, or null if the problem is not supported or its
+	 *         translation is trivial.
+	 */
+	// [HASLab] incremental unrolling
+	private Solution solveUnrolling(Formula formula, PardinusBounds bounds) {
+		long startTransl = System.currentTimeMillis();
+		TemporalTranslation tmptrans = TemporalTranslator.translateUnrolling(formula, bounds, options);
+		long transTime = System.currentTimeMillis() - startTransl;
+		if (tmptrans == null)
+			return null;
+		if (tmptrans.trivial() || !(tmptrans.cnf() instanceof AssumptionSATSolver)) {
+			tmptrans.cnf().free();
+			return null;
+		}
+
+		final AssumptionSATSolver cnf = (AssumptionSATSolver) tmptrans.cnf();
+		Statistics stats = null;
+		// the longest unsat and the shortest sat lengths found
+		int length = tmptrans.traceLength(), unsatLength = length - 1, satLength = -1;
+		while (true) {
+			final int last = TemporalTranslator.lastStateVariable(tmptrans, length);
+			options.reporter().solvingCNF(length, tmptrans.numPrimaryVariables(), cnf.numberOfVariables(),
+					cnf.numberOfClauses());
+			long startSolve = System.currentTimeMillis();
+			boolean isSat = cnf.solve(new int[] { last });
+			long solveTime = System.currentTimeMillis() - startSolve;
+			if (stats == null)
+				stats = new Statistics(tmptrans, transTime, solveTime);
+			else
+				stats.update(tmptrans, 0, solveTime);
+			if (isSat)
+				satLength = length;
+			else {
+				// these lengths are done with, fix them
+				for (int i = unsatLength + 1; i <= length; i++)
+					cnf.addClause(new int[] { -TemporalTranslator.lastStateVariable(tmptrans, i) });
+				unsatLength = length;
+			}
+			// stop once the model of the witness is the current one
+			if (satLength == length && (options.traceStrategy() != TraceStrategy.BISECTION || satLength - unsatLength == 1))
+				break;
+			if (satLength < 0 && length >= options.maxTraceLength())
+				break;
+			if (satLength < 0)
+				length = nextLength(length);
+			else if (satLength - unsatLength > 1)
+				length = (unsatLength + satLength) / 2;
+			else
+				length = satLength;
+		}
+		return satLength > 0 ? satUnrolled(tmptrans, stats, bounds) : unsat(tmptrans, stats);
+	}
+
+	/**
+	 * Interprets the witness of a translation produced by incremental unrolling.
+	 * Since it was translated for the maximum trace length, the states after the
+	 * {@link TemporalTranslator#LAST last} one, as well as the values of
+	 * {@link TemporalTranslator#LOOP} and {@link TemporalTranslator#LAST}, are
+	 * also in the model. The instance is thus rebuilt from its states up to the
+	 * last one, so that it matches that of the selected trace length.
+	 */
+	// [HASLab] incremental unrolling
+	private static Solution satUnrolled(TemporalTranslation translation, Statistics stats, PardinusBounds originalBounds) {
+		final TemporalInstance full = new TemporalInstance(translation.interpretStatic(), originalBounds);
+		final List<Instance> states = new ArrayList<Instance>(full.prefixLength());
+		for (int i = 0; i < full.prefixLength(); i++)
+			states.add(full.state(i));
+		final Solution sol = Solution.satisfiable(stats, new TemporalInstance(states, full.loop, full.unrolls));
+		translation.cnf().free();
+		return sol;
+	}
+
+	/**
+	 * The trace length to be explored after an unsatisfiable one, according to the
+	 * {@link ExtendedOptions#traceStrategy() strategy}.
+	 */
+	// [HASLab] trace length strategies
+	private int nextLength(int traceLength) {
+		if (options.traceStrategy() == TraceStrategy.LINEAR)
+			return traceLength + 1;
+		return Math.min(options.maxTraceLength(), 2 * traceLength);
+	}
+
+	/**
+	 * Solves a temporal problem by checking a window of consecutive trace lengths
+	 * concurrently, each with its own translation and SAT solver, starting from
+	 * an initial translation. Whenever a length is unsatisfiable, the next
+	 * unscheduled one is started. Once a length is satisfiable, longer ones are
+	 * aborted, and its solution is returned as soon as all shorter lengths are
+	 * known to be unsatisfiable.
+	 */
+	// [HASLab] trace length portfolio
+	private Solution solveWindow(TemporalTranslation first, long firstTransTime, PardinusBounds bounds) {
+		final int min = first.traceLength(), max = options.maxTraceLength();
+		final LengthRun[] runs = new LengthRun[max - min + 1];
+		final ExecutorService executor = Executors.newFixedThreadPool(options.traceLengthWindow(), r -> {
+			Thread t = new Thread(r, "trace-length-portfolio");
+			t.setDaemon(true);
+			return t;
+		});
+		final CompletionService<LengthRun> completion = new ExecutorCompletionService<LengthRun>(executor);
+		final boolean[] unsat = new boolean[runs.length];
+		int next = 0, running = 0, best = runs.length, decided = 0;
+		LengthRun result = null;
+		try {
+			for (; next < runs.length && next < options.traceLengthWindow(); next++, running++)
+				completion.submit(runs[next] = new LengthRun(first, min + next, next == 0 ? firstTransTime : -1));
+			// until all lengths below the best one are known to be unsat
+			while (decided < best && running > 0) {
+				LengthRun run = completion.take().get();
+				running--;
+				if (run.discarded)
+					continue;
+				if (run.sat) {
+					best = run.length - min;
+					for (int i = best + 1; i < next; i++)
+						runs[i].discard();
+				} else {
+					unsat[run.length - min] = true;
+					if (next < best && next < runs.length) {
+						completion.submit(runs[next] = new LengthRun(first, min + next, -1));
+						next++;
+						running++;
+					}
+				}
+				while (decided < best && unsat[decided])
+					decided++;
+			}
+
+			result = runs[Math.min(best, runs.length - 1)];
+			Statistics stats = new Statistics(runs[0].translation, runs[0].transTime, runs[0].solveTime);
+			for (int i = 1; i < Math.min(best + 1, runs.length); i++)
+				stats.update(runs[i].translation, runs[i].transTime, runs[i].solveTime);
+			return best < runs.length ? sat(result.translation, stats, bounds) : unsat(result.translation, stats);
+		} catch (InterruptedException e) {
+			throw new AbortedException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SATAbortedException)
+				throw new AbortedException(e.getCause());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (LengthRun run : runs)
+				if (run != null && run != result)
+					run.discard();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The translation and solving of a problem for a single trace length of a
+	 * {@link #solveWindow(TemporalTranslation, long, PardinusBounds) window}. The
+	 * solver of a discarded run is aborted if still running, and freed once it
+	 * stops.
+	 */
+	// [HASLab] trace length portfolio
+	private final class LengthRun implements Callable<LengthRun> {
+		private final TemporalTranslation previous;
+		private final int length;
+		private TemporalTranslation translation;
+		private long transTime, solveTime;
+		private boolean sat, done;
+		private volatile boolean discarded;
+
+		LengthRun(TemporalTranslation previous, int length, long transTime) {
+			this.previous = previous;
+			this.length = length;
+			this.transTime = transTime;
+			if (previous.traceLength() == length)
+				translation = previous;
+		}
+
+		@Override
+		public LengthRun call() {
+			try {
+				if (translation == null) {
+					long startTransl = System.currentTimeMillis();
+					TemporalTranslation t = TemporalTranslator.translateLength(previous, length);
+					transTime = System.currentTimeMillis() - startTransl;
+					synchronized (this) {
+						translation = t;
+						if (discarded)
+							return this;
+					}
+				}
+				final SATSolver cnf = translation.cnf();
+				synchronized (options.reporter()) {
+					options.reporter().solvingCNF(length, translation.numPrimaryVariables(), cnf.numberOfVariables(),
+							cnf.numberOfClauses());
+				}
+				long startSolve = System.currentTimeMillis();
+				sat = cnf.solve();
+				solveTime = System.currentTimeMillis() - startSolve;
+				return this;
+			} catch (RuntimeException e) {
+				// aborted or interrupted once discarded
+				if (discarded)
+					return this;
+				throw e;
+			} finally {
+				synchronized (this) {
+					done = true;
+					if (discarded && translation != null)
+						translation.cnf().free();
+				}
+			}
+		}
+
+		synchronized void discard() {
+			if (discarded)
+				return;
+			discarded = true;
+			if (translation != null) {
+				if (done)
+					translation.cnf().free();
+				else
+					translation.cnf().abort();
+			}
+		}
+	}
+
 	public Explorer<Solution> solveAll(Formula formula, PardinusBounds bounds) throws HigherOrderDeclException,
 			UnboundLeafException, AbortedException {
 		if (Options.isDebug())
@@ -179,10 +459,17 @@ public final class TemporalPardinusSolver
 		if (!options.solver().incremental())
 			throw new IllegalArgumentException("cannot enumerate solutions without an incremental solver.");
 
-		if (options instanceof ExtendedOptions && options.targetoriented())
-			return new TSolutionIterator(formula, bounds, options); // [HASLab]
+		// [HASLab] prefix traces fix the loop, which iteration must be free to change
+		ExtendedOptions opts = options;
+		if (options.prefixTraces()) {
+			opts = options.clone();
+			opts.setPrefixTraces(false);
+		}
+
+		if (opts instanceof ExtendedOptions && opts.targetoriented())
+			return new TSolutionIterator(formula, bounds, opts); // [HASLab]
 		else
-			return new SolutionIterator(formula, bounds, options);
+			return new SolutionIterator(formula, bounds, opts);
 	}
 
 	// [AM]
@@ -259,7 +546,7 @@ public final class TemporalPardinusSolver
 		final Statistics stats = new Statistics(0, 0, 0, translTime, 0);
 		final Solution sol;
 		if (translation.cnf().solve()) {
-			sol = Solution.triviallySatisfiable(stats, new TemporalInstance(translation.interpret(),translation.extBounds()));
+			sol = Solution.triviallySatisfiable(stats, new TemporalInstance(translation.interpretStatic(),translation.extBounds()));
 		} else {
 			sol = Solution.triviallyUnsatisfiable(stats, trivialProof(translation.log()));
 		}
@@ -284,7 +571,7 @@ public final class TemporalPardinusSolver
 	 *
 	 * @author Nuno Macedo // [HASLab] temporal model finding
 	 */
-	private final static class SolutionIterator implements Explorer<Solution> {
+	private final static class SolutionIterator implements PrefetchingExplorer.Rewindable {
 		private long translTime;
 		private int trivial;
 		private final ExtendedOptions opt; // [HASLab] temporal
@@ -426,6 +713,33 @@ public final class TemporalPardinusSolver
 			throw new UnsupportedOperationException();
 		}
 
+		/**
+		 * {@inheritDoc} Trivial translations are updated in place and cannot be
+		 * restored.
+		 */
+		// [HASLab] prefetching exploration
+		public Object mark() {
+			if (tmptrans.trivial())
+				return null;
+			return new Mark(previousSol, tmptrans.seenSols(), tmptrans.traceLength(), iteration_stage, last_segment);
+		}
+
+		/**
+		 * {@inheritDoc} The blocked solutions cannot be removed from the SAT solver,
+		 * so the problem is translated again with those seen at that point, which
+		 * the formula-based iteration does anyway at each step.
+		 */
+		// [HASLab] prefetching exploration
+		public void rewind(Object mark) {
+			Mark m = (Mark) mark;
+			previousSol = m.previousSol;
+			iteration_stage = m.iteration_stage;
+			last_segment = m.last_segment;
+			tmptrans.rewind(m.seen, m.traceLength);
+			if (SATOPTITERATION)
+				tmptrans = TemporalTranslator.translateNext(tmptrans);
+		}
+
 		/**
 		 * Solves {@code translation.cnf} and adds the negation of the found model to
 		 * the set of clauses. The latter has the effect of forcing the solver to come
@@ -669,6 +983,22 @@ public final class TemporalPardinusSolver
 
 	}
 
+	/** The state of a {@link SolutionIterator} to which it can be rewound. */
+	// [HASLab] prefetching exploration
+	private static final class Mark {
+		private final TemporalInstance previousSol;
+		private final List<IterationStep> seen;
+		private final int traceLength, iteration_stage, last_segment;
+
+		private Mark(TemporalInstance previousSol, List<IterationStep> seen, int traceLength, int iteration_stage, int last_segment) {
+			this.previousSol = previousSol;
+			this.seen = new ArrayList<IterationStep>(seen);
+			this.traceLength = traceLength;
+			this.iteration_stage = iteration_stage;
+			this.last_segment = last_segment;
+		}
+	}
+
 	/**
 	 * A target-oriented iterator over all solutions of a model, adapted from {@link SolutionIterator}.
 	 * @author Tiago Guimarães, Nuno Macedo // [HASLab] target-oriented, temporal model finding
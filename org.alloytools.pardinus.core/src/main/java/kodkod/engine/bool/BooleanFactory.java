@@ -50,7 +50,7 @@ public abstract class BooleanFactory {
 	/**
 	 * IMPLEMENTATION NOTE:  BooleanFactory is the facade and a mediator for this package.
 	 */
-	private static CBCFactory CONSTANT_FACTORY; // [AM]
+	private static final CBCFactory CONSTANT_FACTORY = new CBCFactory(0, 1); // [AM]
 
 	/**
 	 * A circuit factory used internally to assemble circuits.
@@ -80,8 +80,6 @@ public abstract class BooleanFactory {
 	 // [AM]
 	private BooleanFactory(int numVars, int comparisonDepth, int bitwidth, boolean noOverflow) {
 		if (numVars==0) {
-			if (CONSTANT_FACTORY==null)
-				CONSTANT_FACTORY = new CBCFactory(0, 1);
 			this.circuits = CONSTANT_FACTORY;
 		} else {
 			this.circuits = new CBCFactory(numVars, 1<<comparisonDepth);
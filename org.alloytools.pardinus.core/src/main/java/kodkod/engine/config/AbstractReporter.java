@@ -118,6 +118,18 @@ public abstract class AbstractReporter implements Reporter {
 	// [HASLab]
 	public void reportConfigs(int configs, int primaryVars, int vars, int clauses){}
 
+	/**
+	 * @see kodkod.engine.config.Reporter#phase(String, long, long)
+	 */
+	// [HASLab]
+	public void phase(String phase, long millis, long peakRss){}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#reportMetrics(String)
+	 */
+	// [HASLab]
+	public void reportMetrics(String json){}
+
     public void convertingToNNF() {}
 
 	public void holLoopStart(HOLTranslation tr, Formula formula, Bounds bounds) {}
@@ -139,6 +139,22 @@ public final class ConsoleReporter implements Reporter {
 	public void reportConfigs(int configs, int vars, int pvars, int clauses) {
 		System.out.println("found at least "+configs+" configs...");
 	}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#phase(String, long, long)
+	 */
+	// [HASLab]
+	public void phase(String phase, long millis, long peakRss) {
+		System.out.println(phase + " took " + millis + "ms" + (peakRss < 0 ? "" : ", peak rss " + peakRss + "kB"));
+	}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#reportMetrics(String)
+	 */
+	// [HASLab]
+	public void reportMetrics(String json) {
+		System.out.println("metrics " + json);
+	}
 	
 	/**
 	 * @see java.lang.Object#toString()
@@ -73,7 +73,8 @@ public interface DecomposedOptions extends PardinusOptions {
 	/**
 	 * The number of threads that will be used to solve the integrated problems.
 	 * If in hybrid mode, one of the threads will be used by the batch problem.
-	 * If 1, then will solve the problems sequentially.
+	 * If 1, then will solve the problems sequentially. If not positive, one
+	 * thread per available processor is used.
 	 * 
 	 * @return the number of threads for solving integrated problems.
 	 */
@@ -88,6 +89,55 @@ public interface DecomposedOptions extends PardinusOptions {
 	 */
 	public void setThreads(int threads);
 
+	/**
+	 * The order in which the pending configurations are solved. Configurations
+	 * are enumerated ahead of the solver threads, and the order only applies to
+	 * those already enumerated and still waiting for a thread.
+	 * 
+	 * @return the order of the configurations.
+	 */
+	// [HASLab] adaptive decomposed scheduling
+	public DOrder configOrder();
+
+	/**
+	 * Sets the order in which pending configurations are solved.
+	 * 
+	 * @param order
+	 *            the order of the configurations.
+	 */
+	// [HASLab] adaptive decomposed scheduling
+	public void setConfigOrder(DOrder order);
+
+	/**
+	 * The period, in milliseconds, at which the live metrics of a decomposed
+	 * run are reported as JSON snapshots through the
+	 * {@link Reporter#reportMetrics(String) reporter}. While positive, the
+	 * metrics are also exported as a JMX MBean for the duration of the run.
+	 * If not positive, metrics are neither exported nor reported.
+	 * 
+	 * @return the period of the metrics snapshots.
+	 */
+	// [HASLab] decomposed metrics
+	public long metricsPeriod();
+
+	/**
+	 * Sets the period of the live metrics of a decomposed run.
+	 * 
+	 * @param period
+	 *            the period of the metrics snapshots, not positive to disable.
+	 */
+	// [HASLab] decomposed metrics
+	public void setMetricsPeriod(long period);
+
+	public enum DOrder {
+		/** In the order they are enumerated. */
+		FIFO,
+		/** Configurations with fewer tuples first. */
+		SMALLEST,
+		/** Configurations with more tuples first. */
+		LARGEST;
+	}
+
 	/**
 	 * The specific options to the partial (configuration) solver. Unless
 	 * {@link #setConfigOptions(ExtendedOptions)} is called, a clone of
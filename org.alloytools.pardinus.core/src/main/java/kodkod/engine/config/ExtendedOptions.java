@@ -59,13 +59,25 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.threads = options.threads;
 		this.target_mode = options.target_mode;
 		this.decomp_mode = options.decomp_mode;
+		this.config_order = options.config_order;
+		this.metrics_period = options.metrics_period;
 		this.config_options = options.config_options!=null?options.config_options.clone():null;
+		this.incrementalIntegration = options.incrementalIntegration;
+		this.distributed = options.distributed;
+		this.worker_hosts = options.worker_hosts;
 		this.trace_length = options.trace_length;
 		this.min_trace_length = options.min_trace_length;
+		this.trace_strategy = options.trace_strategy;
+		this.prefix_traces = options.prefix_traces;
 		this.name = options.name;
 		this.retargeter = options.retargeter;
 		this.tempSymmetries = options.tempSymmetries;
 		this.noMultBounds = options.noMultBounds;
+		this.hyperSMVConfig = options.hyperSMVConfig;
+		this.smvCache = options.smvCache;
+		this.incrementalUnrolling = options.incrementalUnrolling;
+		this.traceLengthWindow = options.traceLengthWindow;
+		this.prefetch = options.prefetch;
 	}
 
 	// target-oriented solving
@@ -129,8 +141,10 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 	// decomposed solving
 	
 	private boolean run_decomposed = false;
-	private int threads = 4;
+	private int threads = 0;
 	private DMode decomp_mode = DMode.PARALLEL;
+	private DOrder config_order = DOrder.FIFO;
+	private long metrics_period = 0;
 	private ExtendedOptions config_options = null;
 	
 	/**
@@ -166,6 +180,34 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.decomp_mode = mode;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public DOrder configOrder() {
+		return config_order;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setConfigOrder(DOrder order) {
+		this.config_order = order;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long metricsPeriod() {
+		return metrics_period;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setMetricsPeriod(long period) {
+		this.metrics_period = period;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -194,6 +236,73 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		config_options = opt;
 	}
 
+	// [HASLab] incremental integrated problems
+	private boolean incrementalIntegration = false;
+
+	/**
+	 * Whether the integrated problems of a decomposed run should be solved
+	 * incrementally. Each solver thread then translates the integrated problem
+	 * once, with the relations of the partial problem left free, and solves each
+	 * configuration on the same SAT solver by assuming its tuples, rather than
+	 * translating each configuration anew. Only applies to bounded static
+	 * integrated problems whose SAT solver
+	 * {@link kodkod.engine.satlab.SATFactory#assumptions() accepts assumptions};
+	 * otherwise, and if the translation depends on the symmetries of the
+	 * unfixed partial relations, configurations are translated one by one.
+	 * 
+	 * @return whether to solve integrated problems incrementally.
+	 */
+	public boolean incrementalIntegration() {
+		return incrementalIntegration;
+	}
+
+	public void setIncrementalIntegration(boolean incrementalIntegration) {
+		this.incrementalIntegration = incrementalIntegration;
+	}
+
+	// [HASLab] distributed integrated problems
+	private boolean distributed = false;
+	private List<String> worker_hosts = null;
+
+	/**
+	 * Whether the integrated problems of a decomposed run should be solved by
+	 * worker processes rather than by the solver threads themselves. Each
+	 * solver thread then ships the decomposed problem once to its own
+	 * {@link kodkod.engine.DProblemWorker worker}, and each configuration as
+	 * the tuples of the partial relations, receiving the solutions back as they
+	 * are requested. Workers are JVMs launched with the class path of this one,
+	 * unless {@link #workerHosts() worker hosts} are given. Only applies to
+	 * bounded static integrated problems without symbolic bounds, targets or
+	 * skolem relations; otherwise, and if a worker fails, configurations are
+	 * solved locally.
+	 * 
+	 * @return whether to solve integrated problems in worker processes.
+	 */
+	public boolean distributed() {
+		return distributed;
+	}
+
+	public void setRunDistributed(boolean distributed) {
+		this.distributed = distributed;
+	}
+
+	/**
+	 * The addresses, as host:port, of the workers already listening for
+	 * distributed integrated problems, assigned to the solver threads in turn.
+	 * If null or empty, a worker is launched for each solver thread. Listening
+	 * workers are unauthenticated and bind to the loopback interface unless
+	 * told otherwise, see {@link kodkod.engine.DProblemWorker}.
+	 * 
+	 * @return the addresses of the workers.
+	 */
+	public List<String> workerHosts() {
+		return worker_hosts;
+	}
+
+	public void setWorkerHosts(List<String> hosts) {
+		this.worker_hosts = hosts;
+	}
+
 	// temporal solving
 	
 	private boolean run_temporal = false;
@@ -243,6 +352,42 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.min_trace_length = trace_length;
 	}
 
+	// [HASLab] trace length strategies
+	private TraceStrategy trace_strategy = TraceStrategy.LINEAR;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public TraceStrategy traceStrategy() {
+		return trace_strategy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setTraceStrategy(TraceStrategy strategy) {
+		if (strategy == null)
+			throw new NullPointerException();
+		this.trace_strategy = strategy;
+	}
+
+	// [HASLab] prefix traces
+	private boolean prefix_traces = false;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean prefixTraces() {
+		return prefix_traces;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setPrefixTraces(boolean prefix) {
+		this.prefix_traces = prefix;
+	}
+
 
 	// unbounded solving
 	private boolean run_unbounded = false;
@@ -287,9 +432,16 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		c.run_target = run_target;
 		c.setThreads(threads);
 		c.setDecomposedMode(decomp_mode);
+		c.setConfigOrder(config_order);
+		c.setMetricsPeriod(metrics_period);
 		c.setConfigOptions(config_options);
+		c.setIncrementalIntegration(incrementalIntegration);
+		c.setRunDistributed(distributed);
+		c.setWorkerHosts(worker_hosts);
 		c.setMaxTraceLength(trace_length);
 		c.setMinTraceLength(min_trace_length);
+		c.setTraceStrategy(trace_strategy);
+		c.setPrefixTraces(prefix_traces);
 		c.name = name;
 		c.setRetargeter(retargeter);
 		c.setAllowHOL(isAllowHOL());
@@ -297,6 +449,11 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		c.setHolSome4AllMaxIter(getHolSome4AllMaxIter());
 		c.setNoMultBounds(noMultBounds);
 		c.setTempSymmetries(tempSymmetries);
+		c.setHyperSMVConfig(hyperSMVConfig);
+		c.setSMVCache(smvCache);
+		c.setIncrementalUnrolling(incrementalUnrolling);
+		c.setTraceLengthWindow(traceLengthWindow);
+		c.setPrefetch(prefetch);
 		return c;
 	}
 
@@ -316,18 +473,42 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		b.append(decomp_mode);
 		b.append("\n threads: ");
 		b.append(threads);
+		b.append("\n configuration order: ");
+		b.append(config_order);
+		b.append("\n metrics period: ");
+		b.append(metrics_period);
+		b.append("\n incremental integration: ");
+		b.append(incrementalIntegration);
+		b.append("\n distributed: ");
+		b.append(distributed);
+		b.append("\n worker hosts: ");
+		b.append(worker_hosts);
 		b.append("\n run temporal: ");
 		b.append(run_temporal);
 		b.append("\n min trace length: ");
 		b.append(min_trace_length);
 		b.append("\n max trace length: ");
 		b.append(trace_length);
+		b.append("\n trace length strategy: ");
+		b.append(trace_strategy);
+		b.append("\n prefix traces: ");
+		b.append(prefix_traces);
 		b.append("\n run unbounded: ");
 		b.append(run_unbounded);
 		b.append("\n temporal symmetries: ");
 		b.append(tempSymmetries);
 		b.append("\n no multiplicity bounds: ");
 		b.append(noMultBounds);
+		b.append("\n hypersmv config: ");
+		b.append(hyperSMVConfig);
+		b.append("\n smv cache: ");
+		b.append(smvCache);
+		b.append("\n incremental unrolling: ");
+		b.append(incrementalUnrolling);
+		b.append("\n trace length window: ");
+		b.append(traceLengthWindow);
+		b.append("\n prefetch: ");
+		b.append(prefetch);
 		b.append("\n custom retargeter?: ");
 		b.append(retargeter != null);
 		return b.toString();
@@ -371,6 +552,15 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.noMultBounds = noMultBounds;
 	}
 
+	/**
+	 * Whether symmetries along the time dimension are broken. Electrod generates
+	 * its full temporal symmetries, while the bounded temporal model finder only
+	 * considers lassos whose loop does not repeat a shorter segment, since the
+	 * same trace is otherwise represented by several lassos of the same length.
+	 * 
+	 * @return whether to break temporal symmetries.
+	 */
+	// [HASLab] temporal symmetry breaking
 	public boolean tempSymmetries() {
 		return tempSymmetries;
 	}
@@ -379,6 +569,116 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.tempSymmetries = tempSymmetries;
 	}
 
+	private String hyperSMVConfig = null;
+
+	/**
+	 * A file whose first line holds additional arguments for the hyperproperty
+	 * model checker, or null if none.
+	 * 
+	 * @return the configuration file of the hyperproperty model checker.
+	 */
+	public String hyperSMVConfig() {
+		return hyperSMVConfig;
+	}
+
+	public void setHyperSMVConfig(String hyperSMVConfig) {
+		this.hyperSMVConfig = hyperSMVConfig;
+	}
+
+	private boolean smvCache = false;
+
+	/**
+	 * Whether external model checkers may reuse the models they generated for
+	 * previous problems, which are kept in a persistent cache.
+	 * 
+	 * @return whether to cache generated models.
+	 */
+	public boolean smvCache() {
+		return smvCache;
+	}
+
+	public void setSMVCache(boolean smvCache) {
+		this.smvCache = smvCache;
+	}
+
+	private boolean incrementalUnrolling = false;
+
+	/**
+	 * Whether the bounded temporal solver should translate the problem once for
+	 * the maximum trace length and search increasing trace lengths on a single
+	 * SAT solver, selecting the last state through assumptions, rather than
+	 * translating and solving each trace length from scratch. Only applies if the
+	 * SAT solver {@link kodkod.engine.satlab.SATFactory#assumptions() accepts
+	 * assumptions}, the problem has no past operators and no solutions are being
+	 * enumerated.
+	 * 
+	 * @return whether to unroll traces incrementally.
+	 */
+	public boolean incrementalUnrolling() {
+		return incrementalUnrolling;
+	}
+
+	public void setIncrementalUnrolling(boolean incrementalUnrolling) {
+		this.incrementalUnrolling = incrementalUnrolling;
+	}
+
+	private int traceLengthWindow = 1;
+
+	/**
+	 * The number of trace lengths that the bounded temporal solver checks
+	 * concurrently, each with its own translation and SAT solver. The smallest
+	 * satisfiable length is returned once all shorter ones are known to be
+	 * unsatisfiable, and longer ones still running are aborted. If 1, trace
+	 * lengths are checked one at a time. Windows always advance linearly,
+	 * regardless of the {@link #traceStrategy() trace strategy}.
+	 * {@link #incrementalUnrolling() Incremental unrolling}, where applicable,
+	 * takes precedence.
+	 * 
+	 * @return the number of trace lengths checked concurrently.
+	 */
+	public int traceLengthWindow() {
+		return traceLengthWindow;
+	}
+
+	/**
+	 * Sets the number of trace lengths checked concurrently.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             window < 1
+	 */
+	public void setTraceLengthWindow(int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("window < 1: " + window);
+		this.traceLengthWindow = window;
+	}
+
+	// [HASLab] prefetching exploration
+	private int prefetch = 0;
+
+	/**
+	 * The number of solutions that the bounded temporal solver computes ahead on
+	 * a background thread when iterating, assuming the last iteration operation
+	 * is repeated. If 0, each solution is only computed when requested. See
+	 * {@link kodkod.engine.PrefetchingExplorer}.
+	 * 
+	 * @return the number of solutions computed ahead.
+	 */
+	public int prefetch() {
+		return prefetch;
+	}
+
+	/**
+	 * Sets the number of solutions computed ahead when iterating.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             prefetch < 0
+	 */
+	public void setPrefetch(int prefetch) {
+		if (prefetch < 0)
+			throw new IllegalArgumentException("prefetch < 0: " + prefetch);
+		this.prefetch = prefetch;
+	}
+
 	
 
 
@@ -139,6 +139,22 @@ public final class FileReporter implements Reporter {
 	 */
 	// [HASLab]
 	public void reportConfigs(int permuted, int vars, int pvars, int clauses) {}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#phase(String, long, long)
+	 */
+	// [HASLab]
+	public void phase(String phase, long millis, long peakRss) {
+		writer.println(phase + " took " + millis + "ms" + (peakRss < 0 ? "" : ", peak rss " + peakRss + "kB"));
+	}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#reportMetrics(String)
+	 */
+	// [HASLab]
+	public void reportMetrics(String json) {
+		writer.println("metrics " + json);
+	}
 	
 	/**
 	 * @see java.lang.Object#toString()
@@ -130,6 +130,26 @@ public interface Reporter {
 	// [HASLab]
 	public void reportConfigs(int configs, int primaryVars, int vars, int clauses);
 
+	/**
+	 * Reports that a phase of the analysis, possibly run by an external tool,
+	 * has finished.
+	 * 
+	 * @param phase the name of the phase.
+	 * @param millis the time spent in the phase, in milliseconds.
+	 * @param peakRss the peak resident set size sampled during the phase, in
+	 *            kilobytes, or -1 if unavailable.
+	 */
+	// [HASLab]
+	public void phase(String phase, long millis, long peakRss);
+
+	/**
+	 * Reports a periodic snapshot of the live metrics of a decomposed analysis.
+	 * 
+	 * @param json the metrics, as a JSON object.
+	 */
+	// [HASLab]
+	public void reportMetrics(String json);
+
     public void convertingToNNF();
 
 	public void holLoopStart(HOLTranslation tr, Formula formula, Bounds bounds);
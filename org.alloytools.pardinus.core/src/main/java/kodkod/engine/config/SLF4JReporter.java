@@ -152,6 +152,22 @@ public class SLF4JReporter implements Reporter {
 			debug("found at least "+configs+" configs...");
 	}
 
+	/**
+	 * @see kodkod.engine.config.Reporter#phase(String, long, long)
+	 */
+	public void phase(String phase, long millis, long peakRss) {
+		if (Options.isDebug())
+			debug(phase + " took " + millis + "ms" + (peakRss < 0 ? "" : ", peak rss " + peakRss + "kB"));
+	}
+
+	/**
+	 * @see kodkod.engine.config.Reporter#reportMetrics(String)
+	 */
+	public void reportMetrics(String json) {
+		if (Options.isDebug())
+			debug("metrics " + json);
+	}
+
 
     @Override
     public void convertingToNNF() {
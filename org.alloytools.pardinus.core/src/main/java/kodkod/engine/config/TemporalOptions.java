@@ -70,5 +70,67 @@ public interface TemporalOptions extends PardinusOptions {
 	
 	public void setMinTraceLength(int traceLength);
 
+	/**
+	 * The strategy followed by the bounded temporal model finder to select the
+	 * next trace length to be explored when the current one is unsatisfiable.
+	 * {@link UnboundedSolver unbounded temporal solvers} will ignore this value.
+	 * 
+	 * @return the trace length strategy.
+	 */
+	// [HASLab] trace length strategies
+	public TraceStrategy traceStrategy();
+
+	/**
+	 * Updates the strategy followed by the bounded temporal model finder to
+	 * select the next trace length to be explored.
+	 * 
+	 * @param strategy
+	 *            the new trace length strategy.
+	 */
+	// [HASLab] trace length strategies
+	public void setTraceStrategy(TraceStrategy strategy);
+
+	/**
+	 * Whether the bounded temporal model finder searches for finite prefixes
+	 * rather than lassos when the formula is in the safety fragment, i.e., when
+	 * every "always" (or negated "eventually") and "releases" (or negated
+	 * "until") applies to a formula without temporal operators. For such
+	 * formulas, if a trace satisfies the formula then some finite prefix of it
+	 * does, if extended by repeating its last state, so the loop can be fixed to
+	 * that state and the loop selection omitted. Formulas outside the fragment
+	 * are checked with regular lassos. {@link UnboundedSolver unbounded
+	 * temporal solvers} will ignore this value.
+	 * 
+	 * @return whether to search for finite prefixes of safety formulas.
+	 */
+	// [HASLab] prefix traces
+	public boolean prefixTraces();
+
+	/**
+	 * Updates whether the bounded temporal model finder searches for finite
+	 * prefixes rather than lassos for formulas in the safety fragment.
+	 * 
+	 * @param prefix
+	 *            whether to search for finite prefixes of safety formulas.
+	 */
+	// [HASLab] prefix traces
+	public void setPrefixTraces(boolean prefix);
+
+	/**
+	 * Strategies to select trace lengths. Since a lasso trace can always be
+	 * unrolled into a longer one, a satisfiable length guarantees that all longer
+	 * ones are also satisfiable.
+	 */
+	public enum TraceStrategy {
+		/** Increase the trace length by one, the witness found is minimal. */
+		LINEAR,
+		/** Double the trace length, the witness found may not be minimal. */
+		DOUBLING,
+		/**
+		 * Double the trace length and, once satisfiable, binary search back down for
+		 * the minimal witness.
+		 */
+		BISECTION
+	}
 
 }
@@ -22,6 +22,9 @@
  */
 package kodkod.engine.decomp;
 
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntSupplier;
+
 import kodkod.engine.Solution;
 import kodkod.engine.Statistics;
 
@@ -33,6 +36,22 @@ import kodkod.engine.Statistics;
  */
 public interface DMonitor {
 
+	/**
+	 * Reports that the solver threads have started, providing the state of the
+	 * scheduler, which live metrics sample until the executor is shut down.
+	 * 
+	 * @param executor
+	 *            the executor running the solver threads.
+	 * @param workers
+	 *            the number of solver threads.
+	 * @param pending
+	 *            the number of configurations waiting for a solver thread.
+	 * @param busy
+	 *            the number of solver threads currently solving a problem.
+	 */
+	// [HASLab] decomposed metrics
+	public void started(ExecutorService executor, int workers, IntSupplier pending, IntSupplier busy);
+
 	/**
 	 * Reports that a new partial solution (configuration) was found.
 	 * 
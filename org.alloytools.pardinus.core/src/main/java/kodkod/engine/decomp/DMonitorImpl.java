@@ -22,10 +22,22 @@
  */
 package kodkod.engine.decomp;
 
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import kodkod.engine.Solution;
 import kodkod.engine.Statistics;
@@ -35,16 +47,37 @@ import kodkod.engine.config.Reporter;
  * An implementation of a monitor that logs and reports the progress of a
  * decomposed model finding procedure using a regular Kodkod reporter.
  * 
+ * If a metrics period is set, the live metrics of the procedure are exported
+ * while it runs as an MBean named {@code kodkod.decomp:type=DMonitor,name=<n>}
+ * and reported periodically as JSON snapshots through
+ * {@link Reporter#reportMetrics(String)}, a last one being reported once the
+ * procedure terminates, finishes solving every configuration, or is garbage
+ * collected.
+ * 
  * @author Nuno Macedo // [HASLab] decomposed model finding
  */
-public class DMonitorImpl implements DMonitor {
+public class DMonitorImpl implements DMonitor, DMonitorMXBean {
+
+	/** the upper bounds of the buckets of the time histograms */
+	// [HASLab] decomposed metrics
+	private static final long[] BOUNDS = { 1, 10, 100, 1000, 10000 };
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	private static final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "decomposed-metrics");
+		t.setDaemon(true);
+		return t;
+	});
 
 	private final Reporter rep;
+	private final long period;
+	private final long start = System.currentTimeMillis();
 
 	private int configs = 0;
 	private long config_times = -1;
 	private Statistics config_stats = null;
-	private boolean configs_done = false;
+	private volatile boolean configs_done = false;
 
 	private long sats = 0;
 	private long vars = 0;
@@ -52,6 +85,17 @@ public class DMonitorImpl implements DMonitor {
 	private final List<DProblem<?>> solutions = new ArrayList<DProblem<?>>();
 	private boolean amalgamated_won = false;
 
+	// [HASLab] decomposed metrics
+	private long integrated_runs = 0;
+	private final long[] translation_hist = new long[BOUNDS.length + 1];
+	private final long[] solving_hist = new long[BOUNDS.length + 1];
+	private String winner = null;
+	private int workers = 0;
+	private IntSupplier pending = () -> 0;
+	private IntSupplier busy = () -> 0;
+	private ObjectName name;
+	private ScheduledFuture<?> snapshots;
+
 	/**
 	 * Constructs a new decomposed solving monitor that reports through a Kodkod
 	 * reporter.
@@ -60,7 +104,81 @@ public class DMonitorImpl implements DMonitor {
 	 *            the reporter.
 	 */
 	public DMonitorImpl(Reporter rep) {
+		this(rep, 0);
+	}
+
+	/**
+	 * Constructs a new decomposed solving monitor that reports through a Kodkod
+	 * reporter, and exports live metrics if the period is positive.
+	 * 
+	 * @param rep
+	 *            the reporter.
+	 * @param period
+	 *            the period of the metrics snapshots in milliseconds, not
+	 *            positive if disabled.
+	 */
+	// [HASLab] decomposed metrics
+	public DMonitorImpl(Reporter rep, long period) {
 		this.rep = rep;
+		this.period = period;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public synchronized void started(ExecutorService executor, int workers, IntSupplier pending, IntSupplier busy) {
+		this.workers = workers;
+		this.pending = pending;
+		this.busy = busy;
+		if (period <= 0 || snapshots != null)
+			return;
+		try {
+			name = new ObjectName("kodkod.decomp:type=DMonitor,name=" + ids.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		} catch (JMException | SecurityException e) {
+			rep.debug("Decomposed metrics not exported: " + e.getMessage());
+			name = null;
+		}
+		// the shared sampler must not keep an abandoned executor alive
+		final WeakReference<ExecutorService> ref = new WeakReference<ExecutorService>(executor);
+		snapshots = sampler.scheduleAtFixedRate(() -> {
+			ExecutorService ex = ref.get();
+			if (ex == null || ex.isShutdown() || finished())
+				stop();
+			else
+				rep.reportMetrics(snapshot());
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Whether all configurations were enumerated and solved, even if the
+	 * executor is not shut down because the solutions were not all consumed.
+	 */
+	// [HASLab] decomposed metrics
+	private synchronized boolean finished() {
+		return configs_done && pending.getAsInt() == 0 && busy.getAsInt() == 0;
+	}
+
+	/**
+	 * Stops the periodic snapshots, reporting a last one, and unregisters the
+	 * MBean.
+	 */
+	// [HASLab] decomposed metrics
+	private synchronized void stop() {
+		if (snapshots == null || snapshots.isCancelled())
+			return;
+		snapshots.cancel(false);
+		rep.reportMetrics(snapshot());
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				// already unregistered
+			}
+			name = null;
+		}
 	}
 
 	/**
@@ -120,7 +238,8 @@ public class DMonitorImpl implements DMonitor {
 	 */
 	@Override
 	public void configsDone(boolean next) {
-		rep.reportConfigs(configs, config_stats.primaryVariables(), config_stats.variables(), config_stats.clauses());
+		if (config_stats != null)
+			rep.reportConfigs(configs, config_stats.primaryVariables(), config_stats.variables(), config_stats.clauses());
 		if (!next) {
 			rep.debug("Config: " + "Done");
 			configs_done = true;
@@ -142,6 +261,14 @@ public class DMonitorImpl implements DMonitor {
 		vars += se.getKey().stats().primaryVariables();
 		clauses += se.getKey().stats().clauses();
 		solutions.add(sol);
+		// [HASLab] decomposed metrics
+		if (sol instanceof IProblem) {
+			integrated_runs++;
+			translation_hist[bucket(se.getKey().stats().translationTime())]++;
+			solving_hist[bucket(se.getKey().stats().solvingTime())]++;
+			if (winner == null && se.getKey().sat())
+				winner = "integrated";
+		}
 	}
 
 	/**
@@ -190,6 +317,10 @@ public class DMonitorImpl implements DMonitor {
 	public void amalgamatedWon() {
 		rep.debug("Amalgamated: " + "Done");
 		amalgamated_won = true;
+		synchronized (this) {
+			if (winner == null)
+				winner = "amalgamated";
+		}
 	}
 
 	/**
@@ -206,6 +337,147 @@ public class DMonitorImpl implements DMonitor {
 	@Override
 	public void terminated(boolean timeout) {
 		rep.debug("Solving: " + "Done");
+		stop();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public double getConfigsPerSecond() {
+		return getNumConfigs() * 1000.0 / Math.max(1, getElapsedMillis());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public int getQueueDepth() {
+		return pending.getAsInt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public int getBusyWorkers() {
+		return busy.getAsInt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public int getIdleWorkers() {
+		return Math.max(0, workers - getBusyWorkers());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public long[] getHistogramBounds() {
+		return BOUNDS.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public synchronized long[] getTranslationHistogram() {
+		return translation_hist.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public synchronized long[] getSolvingHistogram() {
+		return solving_hist.clone();
+	}
+
+	/**
+	 * {@inheritDoc} The integrated problems also win if they are all UNSAT.
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public synchronized String getWinner() {
+		if (winner != null)
+			return winner;
+		if (configs_done && integrated_runs >= configs)
+			return "integrated";
+		return "none";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	// [HASLab] decomposed metrics
+	public synchronized String snapshot() {
+		StringBuilder b = new StringBuilder("{");
+		b.append("\"elapsed\":").append(getElapsedMillis());
+		b.append(",\"configs\":").append(configs);
+		b.append(",\"configsPerSecond\":").append(Math.round(getConfigsPerSecond() * 100) / 100.0);
+		b.append(",\"configsDone\":").append(configs_done);
+		b.append(",\"queueDepth\":").append(getQueueDepth());
+		b.append(",\"workers\":").append(workers);
+		b.append(",\"busyWorkers\":").append(getBusyWorkers());
+		b.append(",\"idleWorkers\":").append(getIdleWorkers());
+		b.append(",\"runs\":").append(solutions.size());
+		b.append(",\"sats\":").append(sats);
+		b.append(",\"vars\":").append(vars);
+		b.append(",\"clauses\":").append(clauses);
+		b.append(",\"histogramBounds\":");
+		array(b, BOUNDS);
+		b.append(",\"translationHistogram\":");
+		array(b, translation_hist);
+		b.append(",\"solvingHistogram\":");
+		array(b, solving_hist);
+		b.append(",\"winner\":\"").append(getWinner()).append("\"");
+		return b.append("}").toString();
+	}
+
+	private static void array(StringBuilder b, long[] vals) {
+		b.append("[");
+		for (int i = 0; i < vals.length; i++)
+			b.append(i > 0 ? "," : "").append(vals[i]);
+		b.append("]");
+	}
+
+	/**
+	 * The histogram bucket of a time.
+	 */
+	private static int bucket(long millis) {
+		int i = 0;
+		while (i < BOUNDS.length && millis > BOUNDS[i])
+			i++;
+		return i;
 	}
 
 }
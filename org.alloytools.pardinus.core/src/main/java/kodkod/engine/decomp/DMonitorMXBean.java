@@ -0,0 +1,155 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.decomp;
+
+/**
+ * The live metrics of a decomposed model finding procedure, exported through
+ * JMX while the procedure runs. Times are in milliseconds and histograms count
+ * the integrated problems whose time falls in each of the
+ * {@link #getHistogramBounds() buckets}.
+ */
+public interface DMonitorMXBean {
+
+	/**
+	 * The time since the procedure started.
+	 * 
+	 * @return the elapsed time.
+	 */
+	public long getElapsedMillis();
+
+	/**
+	 * The number of configurations generated so far.
+	 * 
+	 * @return the number of configurations.
+	 */
+	public long getNumConfigs();
+
+	/**
+	 * The rate at which configurations have been generated.
+	 * 
+	 * @return the configurations per second.
+	 */
+	public double getConfigsPerSecond();
+
+	/**
+	 * Whether every configuration has been generated.
+	 * 
+	 * @return whether the configurations are done.
+	 */
+	public boolean isConfigsDone();
+
+	/**
+	 * The number of configurations generated but waiting for a solver thread.
+	 * 
+	 * @return the depth of the queue of configurations.
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * The number of solver threads.
+	 * 
+	 * @return the number of workers.
+	 */
+	public int getWorkers();
+
+	/**
+	 * The number of solver threads currently solving an integrated or the
+	 * amalgamated problem.
+	 * 
+	 * @return the number of busy workers.
+	 */
+	public int getBusyWorkers();
+
+	/**
+	 * The number of solver threads currently idle.
+	 * 
+	 * @return the number of idle workers.
+	 */
+	public int getIdleWorkers();
+
+	/**
+	 * The number of integrated or amalgamated problems terminated so far.
+	 * 
+	 * @return the number of runs.
+	 */
+	public long getNumRuns();
+
+	/**
+	 * The number of SAT solutions found so far.
+	 * 
+	 * @return the number of SAT solutions.
+	 */
+	public long getNumSATs();
+
+	/**
+	 * The number of SAT variables solved so far.
+	 * 
+	 * @return the number of SAT variables.
+	 */
+	public long getTotalVars();
+
+	/**
+	 * The number of SAT clauses solved so far.
+	 * 
+	 * @return the number of SAT clauses.
+	 */
+	public long getTotalClauses();
+
+	/**
+	 * The upper bounds (inclusive) of the buckets of the time histograms, the
+	 * last bucket being unbounded.
+	 * 
+	 * @return the bounds of the buckets.
+	 */
+	public long[] getHistogramBounds();
+
+	/**
+	 * The histogram of the translation times of the integrated problems.
+	 * 
+	 * @return the count of each bucket.
+	 */
+	public long[] getTranslationHistogram();
+
+	/**
+	 * The histogram of the solving times of the integrated problems.
+	 * 
+	 * @return the count of each bucket.
+	 */
+	public long[] getSolvingHistogram();
+
+	/**
+	 * Which problem decided the outcome: {@code amalgamated}, {@code integrated}
+	 * or {@code none} while undecided.
+	 * 
+	 * @return the winning problem.
+	 */
+	public String getWinner();
+
+	/**
+	 * A snapshot of every metric as a JSON object.
+	 * 
+	 * @return the JSON snapshot.
+	 */
+	public String snapshot();
+
+}
@@ -51,7 +51,7 @@ public class DProblem<S extends AbstractSolver<PardinusBounds,ExtendedOptions>>
 
 	private Iterator<Solution> solutions;
 	private Solution solution;
-	protected final PardinusBounds bounds;
+	protected PardinusBounds bounds;
 	private final Formula formula;
 	protected final DProblemExecutor<S> manager;
 
@@ -92,12 +92,12 @@ public class DProblem<S extends AbstractSolver<PardinusBounds,ExtendedOptions>>
 		try {
 			if (solver instanceof IterableSolver<?, ?>) {
 				if (solutions == null) {
-					solutions = ((IterableSolver) solver).solveAll(formula, bounds);
+					solutions = ((IterableSolver) solver).solveAll(formula, bounds());
 					solution = solutions.next();
 					solver.free();
 				}
 			} else {
-				solution = ((AbstractSolver) solver).solve(formula, bounds);
+				solution = ((AbstractSolver) solver).solve(formula, bounds());
 				solver.free();
 			}
 			manager.end(this);
@@ -106,6 +106,15 @@ public class DProblem<S extends AbstractSolver<PardinusBounds,ExtendedOptions>>
 		}
 	}
 	
+	/**
+	 * The bounds of the problem to be solved by this thread.
+	 * 
+	 * @return the bounds of the problem.
+	 */
+	protected PardinusBounds bounds() {
+		return bounds;
+	}
+
 	public Entry<Solution,Iterator<Solution>> getSolutions() {
 		return new AbstractMap.SimpleEntry(solution,solutions);
 	}
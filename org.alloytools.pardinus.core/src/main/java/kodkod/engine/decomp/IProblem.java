@@ -22,6 +22,9 @@
  */
 package kodkod.engine.decomp;
 
+import java.util.Iterator;
+import java.util.Map.Entry;
+
 import kodkod.engine.AbstractSolver;
 import kodkod.engine.DProblemExecutor;
 import kodkod.engine.Solution;
@@ -40,12 +43,16 @@ import kodkod.instance.PardinusBounds;
 public class IProblem<S extends AbstractSolver<PardinusBounds, ExtendedOptions>>
 		extends DProblem<S> {
 
-	@SuppressWarnings("unused")
 	private final Solution config;
 
+	/** the solutions, if solved incrementally */
+	// [HASLab] incremental integrated problems
+	private Entry<Solution, Iterator<Solution>> solutions;
+
 	/**
 	 * Constructs a new integrated problem thread with a given partial solution
-	 * (configuration). Retrieves the integrated problem from the manager.
+	 * (configuration). The integrated problem is only retrieved from the
+	 * manager if solved anew.
 	 * 
 	 * @param config
 	 *            the partial solution to be extended.
@@ -53,9 +60,46 @@ public class IProblem<S extends AbstractSolver<PardinusBounds, ExtendedOptions>>
 	 *            the callback manager.
 	 */
 	public IProblem(Solution config, DProblemExecutor<S> manager) {
-		super(manager, manager.formula, manager.bounds.integrated(config));
+		super(manager, manager.formula, null);
 		this.config = config;
-		assert bounds.amalgamated() != null;
+	}
+
+	/**
+	 * The integrated bounds of the configuration, built only if the problem is
+	 * solved neither remotely nor incrementally.
+	 */
+	// [HASLab] incremental integrated problems
+	@Override
+	protected PardinusBounds bounds() {
+		if (bounds == null) {
+			bounds = manager.bounds.integrated(config);
+			assert bounds.amalgamated() != null;
+		}
+		return bounds;
+	}
+
+	// [HASLab] incremental integrated problems
+	@Override
+	public void run() {
+		try {
+			solutions = manager.solveRemote(config); // [HASLab] distributed integrated problems
+			if (solutions == null)
+				solutions = manager.solveIncremental(config);
+			if (solutions != null) {
+				manager.end(this);
+				return;
+			}
+		} catch (Exception e) {
+			manager.failed(e);
+			return;
+		}
+		super.run();
+	}
+
+	// [HASLab] incremental integrated problems
+	@Override
+	public Entry<Solution, Iterator<Solution>> getSolutions() {
+		return solutions != null ? solutions : super.getSolutions();
 	}
 
 }
\ No newline at end of file
@@ -50,32 +50,109 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	/** Pre-computed information about the formula, allows optimizations. */
 	private boolean has_past;
+	/** The number of trace unrolls. */
+	private final int unrolls;
+	/** The past operator height of the temporal subformulas. */
+	private final Map<Formula,Integer> heights = new HashMap<>();
+	/** The translation of each node at each state expression. */
+	private final Map<List<Object>,Node> memo = new HashMap<>();
+	/** The structurally equal nodes built by the translation, interned. */
+	private final Map<List<Object>,Node> interned = new HashMap<>();
+
+	private static final Expression NEXT_STAR = TRACE.reflexiveClosure();
+	private static final Expression PREV = PREFIX.transpose();
+	private static final Expression PREV_STAR = PREV.reflexiveClosure();
 
 	/**
 	 * Translates an LTL temporal formula into its standard Kodkod FOL
 	 * representation, given the extension of the variable relations.
 	 *
-	 * @param has_past
-	 *            whether the formula has past operators.
-	 * @param has_loop
-	 *            whether the formula is known to force a loop.
+	 * @param unrolls
+	 *            the number of trace unrolls, more than one if the formula has
+	 *            past operators.
 	 */
-	private LTL2FOLTranslator(boolean has_past) {
+	private LTL2FOLTranslator(int unrolls) {
 		super(new HashSet<Node>());
-		this.has_past = has_past;
+		this.has_past = unrolls > 1;
+		this.unrolls = unrolls;
 		this.vars_found = new HashSet<LeafExpression>();
 	}
 
+	/**
+	 * The number of unrolls assumed when only known whether there are past
+	 * operators, in which case {@link TemporalTranslator#unrollMap(int) unroll
+	 * maps} other than {@link TemporalTranslator#UNROLL_MAP} are not used.
+	 */
+	private static int unrolls(boolean has_past) {
+		return has_past ? 2 : 1;
+	}
+
+	/**
+	 * The translation of a node depends only on the state expression at which it
+	 * is translated, so repeated occurrences at the same state, which are
+	 * frequent once temporal operators are expanded, are translated into the
+	 * same node. Structurally equal translations of distinct nodes are also
+	 * {@link #intern(Node) interned}, so that they are translated into the same
+	 * circuit.
+	 */
+	// [HASLab] hash-consed translation
+	@Override
+	@SuppressWarnings("unchecked")
+	protected <N extends Node> N lookup(N node) {
+		return (N) memo.get(Arrays.asList(node, variables.isEmpty() ? null : getVariable()));
+	}
+
 	@Override
 	protected <N extends Node> N cache(N node, N replacement) {
-		if (cached.contains(node)) {
-			cache.put(node, replacement);
-		}
+		replacement = intern(replacement);
+		memo.put(Arrays.asList(node, variables.isEmpty() ? null : getVariable()), replacement);
 		if (node instanceof Formula)
 			inv_cache.put((Formula) replacement, (Formula) node);
 		return replacement;
 	}
 
+	/**
+	 * Returns a previously built node that is structurally equal to the given
+	 * one, if any. Since children are themselves interned, they are compared by
+	 * identity. Quantified formulas are not interned, as the temporal ones
+	 * always declare fresh variables.
+	 */
+	// [HASLab] hash-consed translation
+	@SuppressWarnings("unchecked")
+	private <N extends Node> N intern(N node) {
+		final List<Object> key;
+		if (node instanceof BinaryExpression) {
+			BinaryExpression e = (BinaryExpression) node;
+			key = Arrays.asList(BinaryExpression.class, e.op(), e.left(), e.right());
+		} else if (node instanceof UnaryExpression) {
+			UnaryExpression e = (UnaryExpression) node;
+			key = Arrays.asList(UnaryExpression.class, e.op(), e.expression());
+		} else if (node instanceof ComparisonFormula) {
+			ComparisonFormula f = (ComparisonFormula) node;
+			key = Arrays.asList(ComparisonFormula.class, f.op(), f.left(), f.right());
+		} else if (node instanceof MultiplicityFormula) {
+			MultiplicityFormula f = (MultiplicityFormula) node;
+			key = Arrays.asList(MultiplicityFormula.class, f.multiplicity(), f.expression());
+		} else if (node instanceof NotFormula) {
+			key = Arrays.asList(NotFormula.class, ((NotFormula) node).formula());
+		} else if (node instanceof BinaryFormula) {
+			BinaryFormula f = (BinaryFormula) node;
+			key = Arrays.asList(BinaryFormula.class, f.op(), f.left(), f.right());
+		} else
+			return node;
+		Node n = interned.putIfAbsent(key, node);
+		return n == null ? node : (N) n;
+	}
+
+	/**
+	 * Joins two expressions, returning the same expression for the same operands,
+	 * so that the state expressions are interned.
+	 */
+	// [HASLab] hash-consed translation
+	private Expression join(Expression left, Expression right) {
+		return intern(left.join(right));
+	}
+
 	/**
 	 * Converts an LTL temporal formula into a regular Kodkod FOL formula. Uses the
 	 * visitor to convert and adds any trace constraint left at the top level to
@@ -95,8 +172,109 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 	 * @return the resulting FOL formula.
 	 */
 	public static Formula translate(Formula form, int state, boolean has_past, Map<Formula,Formula> tempTransLog) {
-		LTL2FOLTranslator translator = new LTL2FOLTranslator(has_past);
+		return translate(form, state, unrolls(has_past), tempTransLog);
+	}
 
+	/**
+	 * Converts an LTL temporal formula into a regular Kodkod FOL formula, as
+	 * {@link #translate(Formula, int, boolean, Map)}, for a given number of trace
+	 * unrolls. The states over which temporal subformulas are quantified are
+	 * restricted to the unrolls required by their own past operator height.
+	 *
+	 * @param form
+	 *            the LTL formula to be converted.
+	 * @param unrolls
+	 *            the number of trace unrolls.
+	 * @param tempTransLog
+	 * 			  map logging the translation of top-level formulas.
+	 * @return the resulting FOL formula.
+	 */
+	// [HASLab] adaptive past unrolling
+	public static Formula translate(Formula form, int state, int unrolls, Map<Formula,Formula> tempTransLog) {
+		LTL2FOLTranslator translator = new LTL2FOLTranslator(unrolls);
+
+		Formula f = order(unrolls > 1);
+
+		// log translation of formulas
+		Formula tfrm = translator.translateConjunct(form, state, tempTransLog);
+
+		return Formula.and(f,tfrm);
+	}
+
+	/**
+	 * Converts an LTL temporal formula into a regular Kodkod FOL formula, as
+	 * {@link #translate(Formula, int, boolean, Map)}. If the trace length is
+	 * variable, the {@link TemporalTranslator#LAST last} state is not fixed by
+	 * the bounds, and the structural constraints only apply to the states
+	 * reachable from the {@link TemporalTranslator#FIRST first} one, the
+	 * remainder being ignored. This is only supported without past operators.
+	 *
+	 * @param form
+	 *            the LTL formula to be converted.
+	 * @param has_past
+	 *            whether the formula has past operators.
+	 * @param variable_length
+	 *            whether the last state is selected by the solver.
+	 * @param tempTransLog
+	 * 			  map logging the translation of top-level formulas.
+	 * @return the resulting FOL formula.
+	 */
+	// [HASLab] incremental unrolling
+	public static Formula translate(Formula form, int state, boolean has_past, boolean variable_length, Map<Formula,Formula> tempTransLog) {
+		assert !(has_past && variable_length);
+		LTL2FOLTranslator translator = new LTL2FOLTranslator(unrolls(has_past));
+
+		Formula f = variable_length ? variableOrder() : order(has_past);
+
+		// log translation of formulas
+		Formula tfrm = translator.translateConjunct(form, state, tempTransLog);
+
+		return Formula.and(f,tfrm);
+	}
+
+	/**
+	 * Converts an LTL temporal formula into a regular Kodkod FOL formula, as
+	 * {@link #translate(Formula, int, boolean, Map)} but without the constraints
+	 * that define the structure of the time relation constants. Used to conjoin
+	 * additional formulas to a previous translation.
+	 *
+	 * @param form
+	 *            the LTL formula to be converted.
+	 * @param has_past
+	 *            whether the formula has past operators.
+	 * @param tempTransLog
+	 * 			  map logging the translation of top-level formulas.
+	 * @return the resulting FOL formula.
+	 */
+	// [HASLab] translation reuse
+	public static Formula translateConjunct(Formula form, int state, boolean has_past, Map<Formula,Formula> tempTransLog) {
+		return translateConjunct(form, state, unrolls(has_past), tempTransLog);
+	}
+
+	/**
+	 * Converts an LTL temporal formula into a regular Kodkod FOL formula, as
+	 * {@link #translateConjunct(Formula, int, boolean, Map)}, for a given number
+	 * of trace unrolls.
+	 */
+	// [HASLab] adaptive past unrolling
+	public static Formula translateConjunct(Formula form, int state, int unrolls, Map<Formula,Formula> tempTransLog) {
+		return new LTL2FOLTranslator(unrolls).translateConjunct(form, state, tempTransLog);
+	}
+
+	private Formula translateConjunct(Formula form, int state, Map<Formula,Formula> tempTransLog) {
+		pushLevel();
+		pushVariable(state);
+
+		Formula tfrm = form.accept(this);
+		tempTransLog.putAll(inv_cache);
+		return tfrm;
+	}
+
+	/**
+	 * The constraints that define the structure of the time relation constants
+	 * when the trace length is fixed by the bounds.
+	 */
+	private static Formula order(boolean has_past) {
 		Variable v = Variable.unary("v");
 		Formula order_unr_trace1 = v.join(PREFIX).one().forAll(v.oneOf(STATE.difference(LAST)));
 		Formula order_unr_trace2 = PREFIX.join(v).one().forAll(v.oneOf(STATE.difference(FIRST)));
@@ -111,16 +289,26 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 		Formula loopDecl_unr = LOOP.one();
 
-		Formula f = Formula.and(order_unr_trace1, order_unr_trace2, order_unr_trace3, order_unr_trace4, loopDecl_unr);
-
-		translator.pushLevel();
-		translator.pushVariable(state);
+		return Formula.and(order_unr_trace1, order_unr_trace2, order_unr_trace3, order_unr_trace4, loopDecl_unr);
+	}
 
-		// log translation of formulas
-		Formula tfrm =form.accept(translator);
-		tempTransLog.putAll(translator.inv_cache);
+	/**
+	 * The constraints that define the structure of the time relation constants
+	 * when the last state is selected by the solver, assuming the bounds of
+	 * {@link TemporalBoundsExpander#expandVariable(kodkod.instance.PardinusBounds, int)}.
+	 * The trace is the prefix of the state chain up to the last state, and the
+	 * loop must fall within it.
+	 */
+	private static Formula variableOrder() {
+		Variable v = Variable.unary("v");
+		Expression active = FIRST.join(PREFIX.reflexiveClosure());
+		Formula order_var_trace1 = v.join(PREFIX).one().forAll(v.oneOf(active.difference(LAST)));
+		Formula order_var_trace2 = LAST.join(PREFIX).no();
+		Formula order_var_trace3 = PREFIX.join(Expression.UNIV).in(active);
+		Formula lastDecl_var = LAST.one().and(LAST.in(active));
+		Formula loopDecl_var = LOOP.one().and(LOOP.in(active));
 
-		return Formula.and(f,tfrm);
+		return Formula.and(order_var_trace1, order_var_trace2, order_var_trace3, lastDecl_var, loopDecl_var);
 	}
 
 	/**
@@ -140,7 +328,17 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 	 * @return the resulting static expression.
 	 */
 	public static Expression translate(Expression expr, int state, boolean has_past) {
-		LTL2FOLTranslator translator = new LTL2FOLTranslator(has_past);
+		return translate(expr, state, unrolls(has_past));
+	}
+
+	/**
+	 * Converts an LTL temporal expression into a regular Kodkod FOL expression, as
+	 * {@link #translate(Expression, int, boolean)}, for a given number of trace
+	 * unrolls.
+	 */
+	// [HASLab] adaptive past unrolling
+	public static Expression translate(Expression expr, int state, int unrolls) {
+		LTL2FOLTranslator translator = new LTL2FOLTranslator(unrolls);
 
 		translator.pushVariable(state);
 
@@ -166,7 +364,7 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 	 * @return the resulting static expression.
 	 */
 	public static IntExpression translate(IntExpression expr, int state, boolean has_past) {
-		LTL2FOLTranslator translator = new LTL2FOLTranslator(has_past);
+		LTL2FOLTranslator translator = new LTL2FOLTranslator(unrolls(has_past));
 
 		translator.pushVariable(state);
 
@@ -177,9 +375,11 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Expression visit(ConstantExpression constant) {
+		Expression ret = lookup(constant);
+		if (ret != null) return ret;
 		Expression eu = STATE;
 		final Expression res;
-		if (has_past) eu = UNROLL_MAP.join(STATE);
+		if (has_past) eu = join(UNROLL_MAP, STATE);
 		if (constant.equals(Expression.UNIV))
 			res = constant.difference(eu);
 		else if (constant.equals(Expression.IDEN))
@@ -191,12 +391,14 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Expression visit(Relation relation) {
+		Expression ret = lookup(relation);
+		if (ret != null) return ret;
 		final Expression res;
 		if (relation.isVariable()) {
 			if (has_past)
-				res = relation.getExpansion().join(getVariable().join(UNROLL_MAP));
+				res = join(relation.getExpansion(), join(getVariable(), UNROLL_MAP));
 			else {
-				res = relation.getExpansion().join(getVariable());
+				res = join(relation.getExpansion(), getVariable());
 			}
 		} else
 			res = relation;
@@ -205,12 +407,14 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
     @Override
     public Expression visit(Variable relation) {
+	    Expression ret = lookup(relation);
+	    if (ret != null) return ret;
  	    final Expression res;
 	    if (relation.isVariable()) {
 		    if (has_past)
-		 	   res = relation.getExpansion().join(getVariable().join(UNROLL_MAP));
+		 	   res = join(relation.getExpansion(), join(getVariable(), UNROLL_MAP));
 		    else {
-			   res = relation.getExpansion().join(getVariable());
+			   res = join(relation.getExpansion(), getVariable());
 		    }
 	    } else
 		    res = relation;
@@ -245,11 +449,13 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Formula visit(UnaryTempFormula unaryTempFormula) {
+		Formula ret = lookup(unaryTempFormula);
+		if (ret != null) return ret;
 		pushOperator(unaryTempFormula.op());
 		pushLevel();
 		pushVariable();
 		Formula e = unaryTempFormula.formula().accept(this);
-		Formula rt = getQuantifier(getOperator(), e);
+		Formula rt = getQuantifier(getOperator(), e, unaryTempFormula.formula());
 		popOperator();
 		popVariable();
 		popLevel();
@@ -258,6 +464,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Formula visit(BinaryTempFormula binaryTempFormula) {
+		Formula ret = lookup(binaryTempFormula);
+		if (ret != null) return ret;
 		pushOperator(binaryTempFormula.op());
 		pushLevel();
 		pushVariable();
@@ -312,6 +520,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Expression visit(TempExpression tempExpression) {
+		Expression ret = lookup(tempExpression);
+		if (ret != null) return ret;
 		pushOperator(tempExpression.op());
 		pushVariable();
 		Expression rt = tempExpression.expression().accept(this);
@@ -320,22 +530,22 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		return cache(tempExpression,rt);
 	}
 
-	private Formula getQuantifier(TemporalOperator op, Formula e) {
+	private Formula getQuantifier(TemporalOperator op, Formula e, Formula body) {
 		Variable s1;
 		Expression s0 = getVariablePrevQuant();
 		switch (op) {
 			case ALWAYS:
 				s1 = (Variable) getVariable();
-				return e.forAll(s1.oneOf(s0.join(TRACE.reflexiveClosure())));
+				return e.forAll(s1.oneOf(project(join(s0, NEXT_STAR), body)));
 			case EVENTUALLY:
 				s1 = (Variable) getVariable();
-				return e.forSome(s1.oneOf(s0.join(TRACE.reflexiveClosure())));
+				return e.forSome(s1.oneOf(project(join(s0, NEXT_STAR), body)));
 			case HISTORICALLY:
 				s1 = (Variable) getVariable();
-				return e.forAll(s1.oneOf(s0.join(PREFIX.transpose().reflexiveClosure())));
+				return e.forAll(s1.oneOf(project(join(s0, PREV_STAR), body)));
 			case ONCE:
 				s1 = (Variable) getVariable();
-				return e.forSome(s1.oneOf(s0.join(PREFIX.transpose().reflexiveClosure())));
+				return e.forSome(s1.oneOf(project(join(s0, PREV_STAR), body)));
 			case BEFORE:
 				Expression v2 = getVariable();
 				e = v2.some().and(e);
@@ -346,6 +556,29 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	}
 
+	/**
+	 * Projects the states over which a temporal formula is quantified into the
+	 * unrolls relevant for its past operator height. A formula with height h has
+	 * the same value in the states of every unroll beyond the h-th, so those need
+	 * not be considered, and the quantification over the remainder is not
+	 * affected by deeper subformulas elsewhere.
+	 *
+	 * @param states
+	 *            the states over which the formula is quantified.
+	 * @param body
+	 *            the quantified temporal formula.
+	 * @return the projected states.
+	 */
+	// [HASLab] adaptive past unrolling
+	private Expression project(Expression states, Formula body) {
+		if (!has_past)
+			return states;
+		int height = heights.computeIfAbsent(body, b -> countHeight(b) - 1);
+		if (height >= unrolls - 1)
+			return states;
+		return join(states, unrollMap(height));
+	}
+
 	private Formula getQuantifierUntil(Formula left, Formula right) {
 
 		Variable r = getVariableUntil(true);
@@ -353,7 +586,7 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		Expression prev_l = getVariablePrevQuantUntil(false);
 		Formula nfleft = left.forAll(l.oneOf(upTo(prev_l, r, false)));
 		nfleft = right.and(nfleft);
-		return nfleft.forSome(r.oneOf(prev_l.join(TRACE.reflexiveClosure())));
+		return nfleft.forSome(r.oneOf(join(prev_l, NEXT_STAR)));
 
 	}
 
@@ -366,7 +599,7 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 		nfleft = right.and(nfleft);
 
-		return nfleft.forSome(r.oneOf(prev_l.join(PREFIX.transpose().reflexiveClosure())));
+		return nfleft.forSome(r.oneOf(join(prev_l, PREV_STAR)));
 	}
 
 	private Formula getQuantifierRelease(Formula always, Formula left, Formula right) {
@@ -377,13 +610,13 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		Formula nfleft;
 		Formula nfright;
 
-		alw = always.forAll(v.oneOf(getVariablePrevQuantRelease(false, true).join(TRACE.reflexiveClosure())));
+		alw = always.forAll(v.oneOf(join(getVariablePrevQuantRelease(false, true), NEXT_STAR)));
 
 		nfleft = right.forAll(l.oneOf(upTo(getVariablePrevQuantRelease(false, true), r, true)));
 
 		nfright = left.and(nfleft);
 
-		nfright = nfright.forSome(r.oneOf(getVariablePrevQuantRelease(false, true).join(TRACE.reflexiveClosure())));
+		nfright = nfright.forSome(r.oneOf(join(getVariablePrevQuantRelease(false, true), NEXT_STAR)));
 
 		return alw.or(nfright);
 	}
@@ -396,14 +629,14 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		Formula nfleft;
 		Formula nfright;
 
-		alw = always.forAll(v.oneOf(getVariablePrevQuantRelease(false, true).join(PREFIX.transpose().reflexiveClosure())));
+		alw = always.forAll(v.oneOf(join(getVariablePrevQuantRelease(false, true), PREV_STAR)));
 
 		nfleft = right.forAll(l.oneOf(downTo(getVariablePrevQuantRelease(false, true), r, true)));
 
 		nfright = left.and(nfleft);
 
 		nfright = nfright
-				.forSome(r.oneOf(getVariablePrevQuantRelease(false, true).join(PREFIX.transpose().reflexiveClosure())));
+				.forSome(r.oneOf(join(getVariablePrevQuantRelease(false, true), PREV_STAR)));
 
 		return alw.or(nfright);
 	}
@@ -474,10 +707,10 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		switch (getOperator()) {
 			case AFTER:
 			case PRIME:
-				variables.add(getVariable().join(TRACE));
+				variables.add(join(getVariable(), TRACE));
 				break;
 			case BEFORE:
-				variables.add(getVariable().join(PREFIX.transpose()));
+				variables.add(join(getVariable(), PREV));
 				break;
 			default:
 				Variable v = Variable.unary("t" + vars);
@@ -518,7 +751,7 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		if (variables.isEmpty()) {
 			Expression s = FIRST;
 			for (int i = 0; i < state; i++)
-				s = s.join(TRACE);
+				s = join(s, TRACE);
 			variables.add(s);
 		} else
 			throw new UnsupportedOperationException("No more vars.");
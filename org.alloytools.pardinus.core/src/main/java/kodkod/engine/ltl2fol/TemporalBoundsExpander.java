@@ -86,6 +86,63 @@ public class TemporalBoundsExpander {
 		return expand(bounds, u, steps, unrolls, inst);
 	}
 
+	/**
+	 * Expands the old bounds for a variable trace length, up to a maximum number of
+	 * states, as {@link #expand(PardinusBounds, int, int)} without unrolls. The
+	 * {@link TemporalTranslator#LAST last} state is not fixed, so that the solver
+	 * can select it, and the {@link TemporalTranslator#PREFIX prefix} relation may
+	 * follow any prefix of the state chain. {@link TemporalTranslator#STATE States}
+	 * that are not reached are ignored. {@link TemporalTranslator#LAST_} remains
+	 * fixed to the last state, but is only relevant in the presence of past
+	 * operators, which are not supported.
+	 * 
+	 * @param bounds
+	 *            the bounds with variable relations to be expanded.
+	 * @param steps
+	 *            the maximum number of distinguished states in the trace.
+	 * @return the expanded bounds.
+	 * @throws IllegalArgumentException
+	 *             steps < 1 || !bounds.resolved().
+	 */
+	// [HASLab] incremental unrolling
+	public static PardinusBounds expandVariable(PardinusBounds bounds, int steps) {
+		PardinusBounds newBounds = expand(bounds, steps, 1);
+		Universe uni = newBounds.universe();
+		String sp = TemporalTranslator.STATE_SEP;
+		TupleSet states = uni.factory().range(uni.factory().tuple(TemporalTranslator.STATEATOM + "0" + sp + "0"),
+				uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + "0"));
+		newBounds.bound(TemporalTranslator.LAST, states);
+		newBounds.bound(TemporalTranslator.PREFIX, newBounds.upperBound(TemporalTranslator.PREFIX));
+		return newBounds;
+	}
+
+	/**
+	 * Expands the old bounds as {@link #expand(PardinusBounds, int, int)}, but
+	 * with the {@link TemporalTranslator#LOOP loop} fixed at the last state, so
+	 * that traces are finite prefixes whose last state repeats forever. This
+	 * avoids the loop selection, and is only complete for formulas in the
+	 * {@link TemporalTranslator#admitsPrefixTraces(kodkod.ast.Formula) safety
+	 * fragment}.
+	 * 
+	 * @param bounds
+	 *            the bounds with variable relations to be expanded.
+	 * @param steps
+	 *            the number of distinguished states in the trace.
+	 * @param unrolls
+	 *            the number of trace unrolls.
+	 * @return the expanded bounds.
+	 * @throws IllegalArgumentException
+	 *             unrolls < 1 || steps < 1 || !bounds.resolved().
+	 */
+	// [HASLab] prefix traces
+	public static PardinusBounds expandPrefix(PardinusBounds bounds, int steps, int unrolls) {
+		PardinusBounds newBounds = expand(bounds, steps, unrolls);
+		Universe uni = newBounds.universe();
+		String sp = TemporalTranslator.STATE_SEP;
+		newBounds.boundExactly(TemporalTranslator.LOOP, uni.factory().setOf(TemporalTranslator.STATEATOM + (steps - 1) + sp + (unrolls - 1)));
+		return newBounds;
+	}
+
 	/**
 	 * Actually expands temporal bounds into their static representation as regular
 	 * bounds with {@link TemporalTranslator#STATE state} atoms appended, unrolled a
@@ -175,6 +232,15 @@ public class TemporalBoundsExpander {
 							TemporalTranslator.STATEATOM + i + sp + 0 }));
 			}
 			newBounds.bound(TemporalTranslator.UNROLL_MAP, unrollMap, unrollMap);
+			// [HASLab] adaptive past unrolling
+			for (int d = 1; d < unrolls - 1; d++) {
+				TupleSet depthMap = uni.factory().noneOf(2);
+				for (int i = 0; i < steps; i++)
+					for (int j = 0; j < unrolls; j++)
+						depthMap.add(uni.factory().tuple(new Object[] { TemporalTranslator.STATEATOM + i + sp + j,
+								TemporalTranslator.STATEATOM + i + sp + Math.min(j, d) }));
+				newBounds.boundExactly(TemporalTranslator.unrollMap(d), depthMap);
+			}
 		}
 
 		if (inst != null)
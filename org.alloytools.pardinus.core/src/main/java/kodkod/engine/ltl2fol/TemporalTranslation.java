@@ -32,6 +32,8 @@ public class TemporalTranslation extends Translation {
     private boolean clear;
     TemporalInstance cand;
     Map<Formula,List<TemporalInstance>> adds;
+    /** The translator of the length-independent part, reused across trace lengths. */
+    TemporalTranslator translator;
 
     public TemporalTranslation(Translation translation, int traceLength, int past_depth, Formula extformula, PardinusBounds extbounds, Formula formula, PardinusBounds bounds, ExtendedOptions options, TemporalInstance cand, Map<Formula,List<TemporalInstance>> adds) {
         super(bounds, options);
@@ -118,6 +120,18 @@ public class TemporalTranslation extends Translation {
         traceLength = Math.max(state, options().minTraceLength());
     }
 
+    /**
+     * Restores the solutions seen and the trace length of a previous point of the
+     * iteration. The SAT solver of this translation still blocks the solutions
+     * seen since, so it must be translated again.
+     */
+    // [HASLab] prefetching exploration
+    public void rewind(List<IterationStep> seen, int traceLength) {
+        previousSols.clear();
+        previousSols.addAll(seen);
+        this.traceLength = traceLength;
+    }
+
     public void traceInc() {
         traceLength++;
         clear();
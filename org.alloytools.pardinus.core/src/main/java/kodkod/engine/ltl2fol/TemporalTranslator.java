@@ -31,6 +31,7 @@ import kodkod.ast.visitor.AbstractReplacer;
 import kodkod.ast.visitor.ReturnVisitor;
 import kodkod.engine.config.ExtendedOptions;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.TemporalOptions;
 import kodkod.engine.fol2sat.FullNegationPropagator;
 import kodkod.engine.fol2sat.Translation;
 import kodkod.engine.fol2sat.Translator;
@@ -44,6 +45,7 @@ import kodkod.util.ints.IntSet;
 import kodkod.util.nodes.AnnotatedNode;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Expands temporal problems into plain problems, i.e., formulas with
@@ -77,6 +79,7 @@ public class TemporalTranslator {
 
 	public static final Relation LAST_ = Relation.unary("S/last_"); 			// ExplicitUnrolls = true
 	public static final Relation UNROLL_MAP = Relation.binary("unroll_map"); 	// ExplicitUnrolls = true
+	private static final Map<Integer,Relation> UNROLL_MAPS = new ConcurrentHashMap<Integer,Relation>();
 
 	public static final Relation LEVEL = Relation.unary("Level"); 				// ExplicitUnrolls = false
 	public static final Relation L_FIRST = Relation.unary("L/first"); 			// ExplicitUnrolls = false
@@ -85,6 +88,24 @@ public class TemporalTranslator {
 
 	public static final String STATE_SEP = "_";
 
+	/**
+	 * The relation mapping the states of each unroll into those of the unroll
+	 * of a given depth, or of the same unroll if not beyond it. The one for depth
+	 * 0 is {@link #UNROLL_MAP}. Formulas with past operator height h can be
+	 * evaluated over the unrolls up to depth h, see
+	 * {@link TemporalBoundsExpander#expand(PardinusBounds, int, int)}.
+	 * 
+	 * @param depth
+	 *            the depth of the target unroll.
+	 * @return the unroll map for that depth.
+	 */
+	// [HASLab] adaptive past unrolling
+	public static Relation unrollMap(int depth) {
+		if (depth == 0)
+			return UNROLL_MAP;
+		return UNROLL_MAPS.computeIfAbsent(depth, d -> Relation.binary("unroll_map_" + d));
+	}
+
 	public static final Expression START = L_FIRST.product(FIRST).union(L_FIRST.join(L_PREFIX.closure()).product(LOOP));
 
 	/** The original temporal formula. */
@@ -93,8 +114,16 @@ public class TemporalTranslator {
 	private final PardinusBounds bounds;
 	/** The past operator depth. */
 	private final int past_depth;
+	/** Whether the loop can be fixed at the last state, see {@link TemporalOptions#prefixTraces()}. */
+	private final boolean prefix;
+	/** Whether lassos are restricted to canonical ones, see {@link ExtendedOptions#tempSymmetries()}. */
+	private final boolean symmetries;
 	/** Map logging the translation of temporal formulas, from resulting formula to original one. **/
 	private final Map<Formula,Formula> tempTransLog = new HashMap<Formula,Formula>();
+	/** The static version of the temporal formula, which does not depend on the trace length. */
+	private Formula extformula;
+	/** The static version of the bodies of higher-order additions, which do not depend on the instance. */
+	private final Map<Formula,Formula> extended = new ConcurrentHashMap<Formula,Formula>();
 	
 	
 	/**
@@ -126,6 +155,10 @@ public class TemporalTranslator {
 		this.formula = formula;
 		this.bounds = bounds;
 		this.past_depth = countHeight(formula);
+		// [HASLab] prefix traces
+		this.prefix = options instanceof TemporalOptions && ((TemporalOptions) options).prefixTraces() && admitsPrefixTraces(formula);
+		// [HASLab] temporal symmetry breaking
+		this.symmetries = options instanceof ExtendedOptions && ((ExtendedOptions) options).tempSymmetries();
 	}
 
 	/**
@@ -144,13 +177,83 @@ public class TemporalTranslator {
 	 * @return the temporal bounds expanded into standard bounds.
 	 */
 	private PardinusBounds expand(int traceLength) {
-		return TemporalBoundsExpander.expand(bounds, traceLength, past_depth);
+		return expand(traceLength, null);
 	}
 
 	private PardinusBounds  expand(int traceLength, TemporalInstance cand) {
+		// [HASLab] prefix traces
+		if (prefix && cand == null)
+			return TemporalBoundsExpander.expandPrefix(bounds, traceLength, past_depth);
 		return TemporalBoundsExpander.expand(bounds, traceLength, past_depth, cand);
 	}
 
+	/**
+	 * Breaks the symmetries of the time dimension of the expanded problem. The
+	 * same infinite trace is represented by several lassos of the same length if
+	 * the states of the loop repeat themselves, e.g., s0 (s1 s2 s1 s2)^w and s0 s1
+	 * s2 (s1 s2)^w. Only the lasso whose loop is not itself a repetition is
+	 * allowed, i.e., the one with the latest loop state. Since a loop that repeats
+	 * a shorter segment k times, k > 1, also repeats a segment with a prime number
+	 * of repetitions, only those need to be forbidden. The predicate only
+	 * compares the values of variable relations at unrolled states, so it is
+	 * preserved by permutations of the remaining atoms and may be combined with
+	 * the regular symmetry breaking predicates.
+	 * 
+	 * @param extformula
+	 *            the expanded formula.
+	 * @param steps
+	 *            the current trace length.
+	 * @param extbounds
+	 *            the expanded bounds, with atom relations.
+	 * @param cand
+	 *            the candidate whose loop is fixed, if any.
+	 * @return the expanded formula with the symmetry breaking predicate.
+	 */
+	// [HASLab] temporal symmetry breaking
+	private Formula breakSymmetries(Formula extformula, int steps, PardinusBounds extbounds, TemporalInstance cand) {
+		if (!symmetries || prefix || cand != null)
+			return extformula;
+		TupleFactory f = extbounds.universe().factory();
+		Expression[] states = new Expression[steps];
+		for (int i = 0; i < steps; i++)
+			states[i] = extbounds.ts2expr(f.setOf(STATEATOM + i + STATE_SEP + 0));
+		Formula[][] eqs = new Formula[steps][steps];
+		List<Formula> preds = new ArrayList<Formula>();
+		for (int l = 0; l < steps - 1; l++) {
+			int m = steps - l;
+			for (int q = 2; q <= m; q++) {
+				if (m % q != 0 || !isPrime(q))
+					continue;
+				int p = m / q;
+				List<Formula> period = new ArrayList<Formula>();
+				period.add(LOOP.eq(extbounds.ts2expr(f.setOf(STATEATOM + l + STATE_SEP + (past_depth - 1)))));
+				for (int i = l; i < steps - p; i++) {
+					if (eqs[i][i + p] == null)
+						eqs[i][i + p] = sameState(states[i], states[i + p]);
+					period.add(eqs[i][i + p]);
+				}
+				preds.add(Formula.and(period).not());
+			}
+		}
+		return extformula.and(Formula.and(preds));
+	}
+
+	/** The formula stating that two states assign the same values to the variable relations. */
+	private Formula sameState(Expression s1, Expression s2) {
+		List<Formula> eqs = new ArrayList<Formula>();
+		for (Relation r : bounds.relations())
+			if (r.isVariable())
+				eqs.add(r.getExpansion().join(s1).eq(r.getExpansion().join(s2)));
+		return Formula.and(eqs);
+	}
+
+	private static boolean isPrime(int n) {
+		for (int d = 2; d * d <= n; d++)
+			if (n % d == 0)
+				return false;
+		return n > 1;
+	}
+
 	/**
 	 * Converts an LTL temporal formula into its FOL static representation. The
 	 * formula is previously converted into negative normal form (NNF) to guarantee
@@ -161,11 +264,28 @@ public class TemporalTranslator {
 	 * 
 	 * @see LTL2FOLTranslator
 	 * 
+	 * The translation does not depend on the trace length, so it is only
+	 * performed once per translator.
+	 * 
 	 * @return the static version of the temporal formula.
 	 */
-	private Formula translate() {
-		tempTransLog.clear();
-		return LTL2FOLTranslator.translate(formula, 0, past_depth > 1, tempTransLog);
+	private synchronized Formula translate() {
+		if (extformula == null)
+			extformula = LTL2FOLTranslator.translate(formula, 0, past_depth, tempTransLog);
+		return extformula;
+	}
+
+	/**
+	 * The translator of a previous translation, which holds the resolved formula
+	 * and bounds, the past operator depth and the static version of the formula,
+	 * none of which depend on the trace length. Created if the translation was not
+	 * produced by a translator.
+	 */
+	// [HASLab] translation reuse
+	private static TemporalTranslator translator(TemporalTranslation tmptrans) {
+		if (tmptrans.translator == null)
+			tmptrans.translator = new TemporalTranslator(tmptrans.formula(), tmptrans.bounds(), tmptrans.options());
+		return tmptrans.translator;
 	}
 
 	/**
@@ -223,6 +343,88 @@ public class TemporalTranslator {
 		return (boolean) node.accept(det);
 	}
 
+	/**
+	 * Checks whether every trace satisfying a formula has a finite prefix that
+	 * also satisfies it if its last state is repeated forever. This is the case
+	 * if every "always" (or negated "eventually") and "releases" (or negated
+	 * "until") is applied to formulas without temporal operators, whose truth
+	 * is preserved by repeating a state. The remainder of the formula is then
+	 * witnessed at a finite number of states.
+	 * 
+	 * @param formula
+	 *            the formula to be checked.
+	 * @return whether the formula is in the safety fragment.
+	 */
+	// [HASLab] prefix traces
+	public static boolean admitsPrefixTraces(Formula formula) {
+		return admitsPrefixTraces(formula, true, false);
+	}
+
+	/**
+	 * Checks whether a formula occurring in the given polarities is in the
+	 * safety fragment, see {@link #admitsPrefixTraces(Formula)}.
+	 */
+	private static boolean admitsPrefixTraces(Formula formula, boolean pos, boolean neg) {
+		if (!hasTemporalOps(formula))
+			return true;
+		if (formula instanceof NotFormula)
+			return admitsPrefixTraces(((NotFormula) formula).formula(), neg, pos);
+		if (formula instanceof BinaryFormula) {
+			BinaryFormula bf = (BinaryFormula) formula;
+			switch (bf.op()) {
+				case AND:
+				case OR:
+					return admitsPrefixTraces(bf.left(), pos, neg) && admitsPrefixTraces(bf.right(), pos, neg);
+				case IMPLIES:
+					return admitsPrefixTraces(bf.left(), neg, pos) && admitsPrefixTraces(bf.right(), pos, neg);
+				default:
+					return admitsPrefixTraces(bf.left(), true, true) && admitsPrefixTraces(bf.right(), true, true);
+			}
+		}
+		if (formula instanceof NaryFormula) {
+			for (Formula f : (NaryFormula) formula)
+				if (!admitsPrefixTraces(f, pos, neg))
+					return false;
+			return true;
+		}
+		if (formula instanceof QuantifiedFormula) {
+			QuantifiedFormula qf = (QuantifiedFormula) formula;
+			return !hasTemporalFormulas(qf.decls()) && admitsPrefixTraces(qf.formula(), pos, neg);
+		}
+		if (formula instanceof UnaryTempFormula) {
+			UnaryTempFormula tf = (UnaryTempFormula) formula;
+			boolean global = (pos && tf.op() == TemporalOperator.ALWAYS) || (neg && tf.op() == TemporalOperator.EVENTUALLY);
+			if (global && hasTemporalOps(tf.formula()))
+				return false;
+			return admitsPrefixTraces(tf.formula(), pos, neg);
+		}
+		if (formula instanceof BinaryTempFormula) {
+			BinaryTempFormula tf = (BinaryTempFormula) formula;
+			boolean global = (pos && tf.op() == TemporalOperator.RELEASES) || (neg && tf.op() == TemporalOperator.UNTIL);
+			if (global && (hasTemporalOps(tf.left()) || hasTemporalOps(tf.right())))
+				return false;
+			return admitsPrefixTraces(tf.left(), pos, neg) && admitsPrefixTraces(tf.right(), pos, neg);
+		}
+		// otherwise temporal operators may only occur in expressions, e.g., primes
+		return !hasTemporalFormulas(formula);
+	}
+
+	/** Checks whether temporal formulas occur in the given AST tree. */
+	private static boolean hasTemporalFormulas(Node node) {
+		AbstractDetector det = new AbstractDetector(new HashSet<Node>()) {
+			@Override
+			public Boolean visit(UnaryTempFormula tempFormula) {
+				return cache(tempFormula, true);
+			}
+
+			@Override
+			public Boolean visit(BinaryTempFormula tempFormula) {
+				return cache(tempFormula, true);
+			}
+		};
+		return (boolean) node.accept(det);
+	}
+
 	/** Count the depth of past operators of the given AST tree. */
 	public static int countHeight(Node node) {
 		ReturnVisitor<Integer, Integer, Integer, Integer> vis = new ReturnVisitor<Integer, Integer, Integer, Integer>() {
@@ -443,10 +645,10 @@ public class TemporalTranslator {
 		for (Formula f : adds.keySet()) {
 			for (TemporalInstance i : adds.get(f)) {
 				if (i.prefixLength() <= tmptrans.traceLength()) {
-					Formula nw = extendFormulas(f,i,tmptrans.extBounds(),tmptrans.bounds(),tmptrans.options());
+					Formula nw = translator(tmptrans).extendFormulas(f,i,tmptrans.extBounds(),tmptrans.bounds(),tmptrans.options());
 					news.add(nw);
 				} else {
-					System.out.println("Ignoring %d because at %d.".formatted(i.prefixLength(),tmptrans.traceLength()));
+					tmptrans.options().reporter().debug("Ignoring %d because at %d.".formatted(i.prefixLength(),tmptrans.traceLength()));
 				}
 			}
 		}
@@ -462,13 +664,12 @@ public class TemporalTranslator {
 			adds.merge(f, tmptrans.adds.get(f), (v1,v2) -> { v1.addAll(v2); return v1; });
 
 		TemporalTranslation ntmp = new TemporalTranslation(translation,tmptrans.traceLength(),tmptrans.pastDepth(),tmptrans.extFormula().and(Formula.compose(FormulaOperator.AND,news)),tmptrans.extBounds(),tmptrans.formula(),tmptrans.bounds(),tmptrans.options(),tmptrans.cand,adds);
+		ntmp.translator = tmptrans.translator;
 		ntmp.addSeenSol(tmptrans.seenSols());
 		return ntmp; 
 
 	}
 
-	private static final Map<Formula, Formula> cache = new HashMap<Formula,Formula>();
-
 	public static TemporalTranslation translate(Formula formula, PardinusBounds bounds, ExtendedOptions options, TemporalInstance cand, Map<Formula, List<TemporalInstance>> adds) {
 		TemporalTranslator tmptrans = new TemporalTranslator(formula, bounds, options);
 		Formula extformula = tmptrans.translate();
@@ -476,7 +677,8 @@ public class TemporalTranslator {
 		Translation translation = null;
 		int traceLength = options.minTraceLength()-1;
 		PardinusBounds extbounds = null;
-		// increase while UNSAT and below max
+		// increase while UNSAT and below max; under prefix traces a trivially
+		// true translation is already a witness of the current length
 		do {
 			traceLength++;
 			extbounds = tmptrans.expand(traceLength,cand);
@@ -491,15 +693,52 @@ public class TemporalTranslator {
 //                        i = j;
 //                    }
 					i = i.unrollStep(traceLength,tmptrans.past_depth).iterator().next();
-					extformula = extformula.and(extendFormulas(f,i,extbounds,bounds,options));
+					extformula = extformula.and(tmptrans.extendFormulas(f,i,extbounds,bounds,options));
 				}
-			translation = Translator.translateIncremental(extformula, extbounds, options);
+			translation = Translator.translateIncremental(tmptrans.breakSymmetries(extformula, traceLength, extbounds, cand), extbounds, options);
 //            if (options.logTranslation() > 0)
 //                translation.log().logTempTranslation(tmptrans.tempTransLog);
-		} while (translation.trivial() && traceLength < options.maxTraceLength());
-		return new TemporalTranslation(translation,traceLength,tmptrans.past_depth,extformula,extbounds,formula,bounds,options,cand,adds);
+		} while (translation.trivial() && !(tmptrans.prefix && translation.cnf().solve()) && traceLength < options.maxTraceLength());
+		TemporalTranslation ntmp = new TemporalTranslation(translation,traceLength,tmptrans.past_depth,extformula,extbounds,formula,bounds,options,cand,adds);
+		ntmp.translator = tmptrans;
+		return ntmp;
 	}
 	
+	/**
+	 * Translates a temporal problem once for the maximum trace length, leaving the
+	 * {@link #LAST last} state to be selected by the solver. Each trace length can
+	 * then be checked on the same SAT solver by assuming its
+	 * {@link #lastStateVariable(TemporalTranslation) last state variable}, so that
+	 * learned clauses are kept between lengths. The trace length of the resulting
+	 * translation starts at the minimum one.
+	 * 
+	 * @return the translation, or null if the problem has past operators and thus
+	 *         requires unrolls.
+	 */
+	// [HASLab] incremental unrolling
+	public static TemporalTranslation translateUnrolling(Formula formula, PardinusBounds bounds, ExtendedOptions options) {
+		TemporalTranslator tmptrans = new TemporalTranslator(formula, bounds, options);
+		if (tmptrans.past_depth > 1)
+			return null;
+		Formula extformula = LTL2FOLTranslator.translate(tmptrans.formula, 0, false, true, tmptrans.tempTransLog);
+		PardinusBounds extbounds = TemporalBoundsExpander.expandVariable(tmptrans.bounds, options.maxTraceLength());
+		extbounds.ensureAtomRelations();
+		Translation translation = Translator.translateIncremental(extformula, extbounds, options);
+		return new TemporalTranslation(translation,options.minTraceLength(),tmptrans.past_depth,extformula,extbounds,formula,bounds,options,null,new HashMap<>());
+	}
+
+	/**
+	 * The primary variable that selects the last state of a trace length in a
+	 * translation produced by
+	 * {@link #translateUnrolling(Formula, PardinusBounds, ExtendedOptions)}. State
+	 * atoms are the first of the expanded universe, so the variables of the
+	 * {@link #LAST last} relation follow the order of the states.
+	 */
+	// [HASLab] incremental unrolling
+	public static int lastStateVariable(TemporalTranslation tmptrans, int traceLength) {
+		return tmptrans.primaryVariables(LAST).min() + traceLength - 1;
+	}
+
 	public static TemporalHOLTranslation translate2proc(Formula formula, PardinusBounds bounds, ExtendedOptions options, int k) {
 		TemporalTranslator tmptrans = new TemporalTranslator(formula, bounds, options);
 		Formula extformula = tmptrans.translate();
@@ -528,7 +767,7 @@ public class TemporalTranslator {
 	 * @param options
 	 * @return
 	 */
-	private static Formula extendFormulas(Formula form, TemporalInstance inst, PardinusBounds extbounds, PardinusBounds bounds, ExtendedOptions options) {
+	private Formula extendFormulas(Formula form, TemporalInstance inst, PardinusBounds extbounds, PardinusBounds bounds, ExtendedOptions options) {
 		final Map<Variable,Expression> varmap = new HashMap<Variable,Expression>();
 		QuantifiedFormula qf = (QuantifiedFormula) form;
 		for (Decl d : qf.decls()) {
@@ -539,19 +778,17 @@ public class TemporalTranslator {
 
 			varmap.put(d.variable().isVariable()?d.variable().getExpansion():d.variable(), extbounds.ts2expr(skTuples));
 		}
-		Formula extadd = cache.get(qf.formula());
-
-		if (extadd == null) {
-			TemporalTranslator _tmptrans = new TemporalTranslator(qf.formula(), bounds, options);
-			extadd = _tmptrans.translate();
-			extadd = ((BinaryFormula) ((BinaryFormula) extadd).right()).left();
-			Formula loops = TemporalTranslator.LOOP.eq(extbounds.ts2expr(inst.tuples(TemporalTranslator.LOOP))).not();
-			for (TupleSet l : inst.alt_loops) {
-				loops = loops.and(TemporalTranslator.LOOP.eq(extbounds.ts2expr(l)).not());
-			}
-
-			extadd = extadd.or(loops);
+		// the translation of the body does not depend on the instance
+		Formula extadd = extended.computeIfAbsent(qf.formula(), f -> {
+			TemporalTranslator _tmptrans = new TemporalTranslator(f, bounds, options);
+			return ((BinaryFormula) ((BinaryFormula) _tmptrans.translate()).right()).left();
+		});
+
+		Formula loops = TemporalTranslator.LOOP.eq(extbounds.ts2expr(inst.tuples(TemporalTranslator.LOOP))).not();
+		for (TupleSet l : inst.alt_loops) {
+			loops = loops.and(TemporalTranslator.LOOP.eq(extbounds.ts2expr(l)).not());
 		}
+		extadd = extadd.or(loops);
 
 		Formula fInc = (extadd.accept(new AbstractReplacer(new HashSet<Node>()) {
 			@Override
@@ -576,30 +813,47 @@ public class TemporalTranslator {
 
 	public static TemporalTranslation nextStep(TemporalTranslation tmptrans) {
 		tmptrans.traceInc();
-		// this could be reused if stored
-		TemporalTranslator t = new TemporalTranslator(tmptrans.formula(), tmptrans.bounds(), tmptrans.options());
+		return translateLength(tmptrans, tmptrans.traceLength());
+	}
 
-		PardinusBounds extbounds = t.expand(tmptrans.traceLength(),tmptrans.cand);
+	/**
+	 * Translates a temporal problem previously translated for another trace
+	 * length, reusing its length-independent part. The previous translation is
+	 * left unchanged, so that several trace lengths may be translated
+	 * concurrently as long as there are no higher-order additions.
+	 * 
+	 * @param tmptrans
+	 *            a previous translation of the problem.
+	 * @param traceLength
+	 *            the trace length of the new translation.
+	 * @return the translation for the given trace length.
+	 */
+	// [HASLab] trace length portfolio
+	public static TemporalTranslation translateLength(TemporalTranslation tmptrans, int traceLength) {
+		TemporalTranslator t = translator(tmptrans);
+
+		PardinusBounds extbounds = t.expand(traceLength,tmptrans.cand);
 		extbounds.ensureAtomRelations();
 		Formula exp_reforms = t.translate();
 
 		// needed for HOL
 		for (Formula f : tmptrans.adds.keySet())
 			for (TemporalInstance i : tmptrans.adds.get(f)) {
-				if (i.prefixLength() <= tmptrans.traceLength()) {
-					i = i.unrollStep(tmptrans.traceLength(),tmptrans.pastDepth()).iterator().next();
-					Formula ext = extendFormulas(f,i,extbounds,tmptrans.bounds(),tmptrans.options());
+				if (i.prefixLength() <= traceLength) {
+					i = i.unrollStep(traceLength,tmptrans.pastDepth()).iterator().next();
+					Formula ext = t.extendFormulas(f,i,extbounds,tmptrans.bounds(),tmptrans.options());
 					exp_reforms = exp_reforms.and(ext);
 				} else {
-					System.out.println("Ignoring %d because at %d.".formatted(i.prefixLength(),tmptrans.traceLength()));
+					tmptrans.options().reporter().debug("Ignoring %d because at %d.".formatted(i.prefixLength(),traceLength));
 				}
 			}
 
-		Translation translation = Translator.translateIncremental(exp_reforms, extbounds, tmptrans.options());
+		Translation translation = Translator.translateIncremental(t.breakSymmetries(exp_reforms, traceLength, extbounds, tmptrans.cand), extbounds, tmptrans.options());
 //        if (tmptrans.options().logTranslation() > 0)
 //            translation.log().logTempTranslation(t.tempTransLog);
 
-		TemporalTranslation ntmp = new TemporalTranslation(translation,tmptrans.traceLength(),tmptrans.pastDepth(),exp_reforms,extbounds,tmptrans.formula(),tmptrans.bounds(),tmptrans.options(),tmptrans.cand,tmptrans.adds);
+		TemporalTranslation ntmp = new TemporalTranslation(translation,traceLength,tmptrans.pastDepth(),exp_reforms,extbounds,tmptrans.formula(),tmptrans.bounds(),tmptrans.options(),tmptrans.cand,tmptrans.adds);
+		ntmp.translator = t;
 		ntmp.addSeenSol(tmptrans.seenSols());
 
         for (IterationStep inst : ntmp.seenSols()) {
@@ -612,13 +866,14 @@ public class TemporalTranslator {
 	}
     
     public static TemporalTranslation translateNext(TemporalTranslation trans) {
-        TemporalTranslator tmptrans = new TemporalTranslator(trans.formula(), trans.bounds(), trans.options());
+        TemporalTranslator tmptrans = translator(trans);
         Formula exp_reforms = tmptrans.translate();
         PardinusBounds extbounds = tmptrans.expand(trans.traceLength());
 		extbounds.ensureAtomRelations();
 
-		Translation translation = Translator.translateIncremental(exp_reforms, extbounds, trans.options());
+		Translation translation = Translator.translateIncremental(tmptrans.breakSymmetries(exp_reforms, trans.traceLength(), extbounds, null), extbounds, trans.options());
 		TemporalTranslation tmptrn = new TemporalTranslation(translation,trans.traceLength(),trans.pastDepth(),exp_reforms,extbounds,trans.formula(),trans.bounds(),trans.options(),trans.cand,trans.adds);
+		tmptrn.translator = tmptrans;
 		tmptrn.addSeenSol(trans.seenSols());
 
         for (IterationStep inst : trans.seenSols()) {
@@ -634,19 +889,28 @@ public class TemporalTranslator {
     }
 
     public static TemporalTranslation translateNextFormula(TemporalTranslation trans, int state, TemporalInstance inst) {
-        TemporalTranslator tmptrans = new TemporalTranslator(trans.formula().and(trans.reforms()), trans.bounds(), trans.options());
-        Formula exp_reforms = tmptrans.translate();
+        TemporalTranslator tmptrans = translator(trans);
+        Formula exp_reforms;
+        // the negated instances are conjoined to the translation of the formula,
+        // unless they require further unrolls
+        if (countHeight(trans.reforms()) <= tmptrans.past_depth) {
+        	exp_reforms = tmptrans.translate().and(LTL2FOLTranslator.translateConjunct(trans.reforms(), 0, tmptrans.past_depth, new HashMap<Formula,Formula>()));
+        } else {
+        	tmptrans = new TemporalTranslator(trans.formula().and(trans.reforms()), trans.bounds(), trans.options());
+        	exp_reforms = tmptrans.translate();
+        }
         PardinusBounds extbounds = tmptrans.expand(trans.traceLength());
         
         // this freezes the prefix at the bound level
         TemporalBoundsExpander.extend(trans.bounds(), extbounds, state < 0 ? 0 : state, trans.traceLength(),
                 inst);
 
-		Translation translation = Translator.translateIncremental(exp_reforms, extbounds, trans.options());
+		Translation translation = Translator.translateIncremental(tmptrans.breakSymmetries(exp_reforms, trans.traceLength(), extbounds, null), extbounds, trans.options());
 		// if (trans.options().logTranslation() > 0)
         //     translation.log().logTempTranslation(tmptrans.tempTransLog);
 
 		TemporalTranslation tmptrn = new TemporalTranslation(translation,trans.traceLength(),trans.pastDepth(),exp_reforms,extbounds,trans.formula(),trans.bounds(),trans.options(),trans.cand,trans.adds);
+        tmptrn.translator = translator(trans);
         tmptrn.addSeenSol(trans.seenSols());
         return tmptrn;
     }
@@ -0,0 +1,46 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+/**
+ * Provides an interface to incremental SAT solvers that can solve under
+ * assumptions, i.e., temporarily fix the value of some literals for a single
+ * call without discarding the clauses learned. Used behind the incremental
+ * unrolling of the temporal model finding solvers.
+ */
+public interface AssumptionSATSolver extends SATSolver {
+
+	/**
+	 * Checks the satisfiability of the clauses under a set of assumed literals,
+	 * which only hold during this call. Unsatisfiability under the assumptions
+	 * does not prevent further calls with other assumptions.
+	 * 
+	 * @param assumptions
+	 *            the literals assumed to hold.
+	 * @return true if the clauses are satisfiable under the assumptions.
+	 * @throws SATAbortedException
+	 *             if the call was aborted.
+	 */
+	public abstract boolean solve(int[] assumptions) throws SATAbortedException;
+
+}
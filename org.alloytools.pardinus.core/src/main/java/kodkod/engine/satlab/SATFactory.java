@@ -164,6 +164,18 @@ public abstract class SATFactory implements Serializable, Comparable<SATFactory>
 		return false;
 	}
 
+	/**
+	 * Returns true if the solvers returned by this.instance() are
+	 * {@link AssumptionSATSolver AssumptionSATSolvers}, i.e., if they can be
+	 * solved under assumptions. Implies {@link #incremental()}.
+	 * 
+	 * @return true if the solvers returned by this.instance() accept assumptions
+	 */
+	// [HASLab] incremental unrolling
+	public boolean assumptions() {
+		return false;
+	}
+
 	/**
 	 * Returns true if the solvers returned by this.instance() are unbounded.
 	 * 
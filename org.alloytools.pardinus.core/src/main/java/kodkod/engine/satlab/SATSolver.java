@@ -106,5 +106,16 @@ public interface SATSolver {
 	 * @ensures frees the memory used by this solver
 	 */
 	public abstract void free();
+
+	/**
+	 * Requests a running call to {@link #solve()} from another thread to stop as
+	 * soon as possible, in which case it throws a {@link SATAbortedException}.
+	 * Solvers that cannot be stopped ignore the request and run to completion.
+	 * The solver should not be solved again after being aborted.
+	 * 
+	 * @ensures requests the running search to stop
+	 */
+	// [HASLab] trace length portfolio
+	public default void abort() {}
 	
 }
@@ -516,15 +516,34 @@ public class PardinusBounds extends Bounds {
 		
 		integration++;
 		
-		PardinusBounds integrated = amalgamated.clone();
-
 		if (sol.stats().primaryVariables() == 0)
 			trivial_config = true;
 
+		PardinusBounds integrated = integratedOpen();
+
 		for (Relation e : this.relations())
 			if (getTupleConfiguration(e.name(), sol.instance()) != null)
 				integrated.boundExactly(e,getTupleConfiguration(e.name(), sol.instance()));
 
+		return integrated;
+	}
+
+	/**
+	 * The integrated bounds before fixing any configuration, i.e., with the
+	 * relations of the partial problem still at their amalgamated bounds.
+	 * Configurations must then be imposed by other means, such as assumptions
+	 * on the variables of these relations.
+	 * 
+	 * @return the integrated bounds with the partial relations unfixed.
+	 */
+	// [HASLab] incremental integrated problems
+	public synchronized PardinusBounds integratedOpen() {
+		if (integrated)
+			throw new IllegalArgumentException("Already integrated.");
+		if (amalgamated == null)
+			throw new IllegalArgumentException("Decomposed solving requires decomposed bounds.");
+
+		PardinusBounds integrated = amalgamated.clone();
 		integrated.amalgamated = this.amalgamated;
 		integrated.trivial_config = this.trivial_config;
 		integrated.integrated = true;
@@ -533,6 +552,21 @@ public class PardinusBounds extends Bounds {
 		return integrated;
 	}
 
+	/**
+	 * The tuples of a relation of the partial problem in a configuration,
+	 * identified by its name.
+	 * 
+	 * @param r
+	 *            the partial relation.
+	 * @param config
+	 *            the configuration.
+	 * @return the tuples of r in config, or null if not defined.
+	 */
+	// [HASLab] incremental integrated problems
+	public static TupleSet configuration(Relation r, Instance config) {
+		return getTupleConfiguration(r.name(), config);
+	}
+
 	private static TupleSet getTupleConfiguration(String name, Instance s) {
 		for (Relation r : s.relationTuples().keySet())
 			if (r.name().equals(name))
@@ -48,8 +48,8 @@ import java.util.Map.Entry;
  */
 public class TemporalInstance extends Instance {
 
-	/** The states comprising the trace. */
-	private final List<Instance> states;
+	/** The states comprising the trace, delta-encoded. */
+	private final TraceStates states;
 	/** The looping state. */
 	public final int loop;
 	/** The looping state. */
@@ -91,7 +91,8 @@ public class TemporalInstance extends Instance {
 			super.add(entry.index(), universe().factory().setOf(entry.value().iterator().next().atom(0)));
 
 		this.static_universe = instances.get(0).universe();
-		this.states = instances;
+		// [HASLab] delta-encoded traces
+		this.states = TraceStates.of(instances);
 		this.loop = loop;
 		this.unrolls = unrolls;
 	}
@@ -141,6 +142,14 @@ public class TemporalInstance extends Instance {
 					unrollMap.add(u.factory().tuple(u.atom(i + j * instances.size()), u.atom(i)));
 			}
 			instance.put(TemporalTranslator.UNROLL_MAP, unrollMap);
+			// [HASLab] adaptive past unrolling
+			for (int d = 1; d < unrolls - 1; d++) {
+				TupleSet depthMap = u.factory().noneOf(2);
+				for (int i = 0; i < instances.size(); i++)
+					for (int j = 0; j < unrolls; j++)
+						depthMap.add(u.factory().tuple(u.atom(i + j * instances.size()), u.atom(i + Math.min(j, d) * instances.size())));
+				instance.put(TemporalTranslator.unrollMap(d), depthMap);
+			}
 			instance.put(TemporalTranslator.LAST_, u.factory().setOf(u.atom(instances.size() - 1)));
 		}
 
@@ -205,7 +214,7 @@ public class TemporalInstance extends Instance {
 		Tuple tuple_loop = tupleset_loop.iterator().next();
 		loop = TemporalTranslator.interpretState(tuple_loop);
 		unrolls = TemporalTranslator.interpretUnroll(tuple_loop);
-		states = new ArrayList<Instance>();
+		states = new TraceStates();
 
 		Iterator<Tuple> tupleset_times = eval.evaluate(TemporalTranslator.STATE).iterator();
 		Set<Object> atom_times = new HashSet<Object>();
@@ -240,7 +249,7 @@ public class TemporalInstance extends Instance {
 				inst.add(entry.index(), static_universe.factory().setOf(t));
 			}
 
-			states.add(inst);
+			states.append(inst);
 		}
 		
 	}
@@ -459,9 +468,10 @@ public class TemporalInstance extends Instance {
 			newstates.add(this.states.get(i));
 		size -= prefixLength();
 		int loopsize = prefixLength() - loop;
-		// add the corresponding unrolled states
+		// add the corresponding unrolled states, the loop materialized only once
+		List<Instance> loopstates = size > 0 ? new ArrayList<Instance>(this.states.subList(loop, prefixLength())) : null;
 		for (int i = 0; i < size; i++)
-			newstates.add(this.states.get((i % loopsize) + loop));
+			newstates.add(loopstates.get(i % loopsize));
 
 		// creates a new instance for every isomorphic loop (multiples of loop size
 		// after the prefix)
@@ -548,22 +558,16 @@ public class TemporalInstance extends Instance {
 
 		if (s.universe().equals(universe())) {
 			super.add(relation, s);
-			for (int i = 0; i < states.size(); i++) {
-				states.get(i).add(relation, TemporalBoundsExpander.convertToUniv(s, static_universe));
-			}
+			states.put(relation, TemporalBoundsExpander.convertToUniv(s, static_universe));
 		} else {
 			super.add(relation, TemporalBoundsExpander.convertToUniv(s, universe()));
-			for (int i = 0; i < states.size(); i++) {
-				states.get(i).add(relation, s);
-			}
+			states.put(relation, s);
 		}
 	}
 
 	public void remove(final Relation r) {
 		relations().remove(r.isVariable()?r.getExpansion():r);
-		for (int i = 0; i < states.size(); i++) {
-			states.get(i).relations().remove(r);
-		}
+		states.removeRelation(r);
 	}
 
 	/**
@@ -604,6 +608,7 @@ public class TemporalInstance extends Instance {
 	 * @return an unmodifiable view of this instance.
 	 */
 	public TemporalInstance unmodifiableView() {
-		return new TemporalInstance(Collections.unmodifiableList(states), loop, unrolls);
+		// the states are not modifiable as a list and need not be encoded again
+		return new TemporalInstance(states, loop, unrolls);
 	}
 }
@@ -0,0 +1,225 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.instance;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import kodkod.ast.Relation;
+import kodkod.util.ints.Ints;
+import kodkod.util.ints.SparseSequence;
+
+/**
+ * The states of a {@link TemporalInstance temporal instance}, stored as the
+ * tuples of the first state and, for each following state, the tuples added to
+ * and removed from the relations that changed since the previous one. Most
+ * relations are unchanged between consecutive states, so long traces take
+ * space proportional to the changes rather than to the number of states.
+ * 
+ * States are materialized on demand, and the last one is kept so that
+ * traversing the trace in order applies each delta once. For random access,
+ * the tuples of every {@link #CHECKPOINT}-th state are also kept, which only
+ * costs a map since tuple sets are shared between states while unchanged. For
+ * the same reason, materialized states are unmodifiable.
+ * 
+ * @assumes all states share the universe and the integer tuples of the first state
+ */
+final class TraceStates extends AbstractList<Instance> {
+
+	/** The distance between states whose tuples are kept. */
+	private static final int CHECKPOINT = 32;
+
+	/** The changes of a relation from one state to the next. */
+	private static final class Delta {
+		/** The delta of a relation absent from the state. */
+		private static final Delta ABSENT = new Delta(null, null);
+
+		private final TupleSet added, removed;
+
+		private Delta(TupleSet added, TupleSet removed) {
+			this.added = added;
+			this.removed = removed;
+		}
+	}
+
+	private Universe universe;
+	private SparseSequence<TupleSet> ints;
+	/** The changes of each state from the previous one, starting at the second. */
+	private final List<Map<Relation, Delta>> deltas = new ArrayList<Map<Relation, Delta>>();
+	/** The tuples of every CHECKPOINT-th state, starting with the first. */
+	private final List<Map<Relation, TupleSet>> checkpoints = new ArrayList<Map<Relation, TupleSet>>();
+	/** The tuples of the last state appended. */
+	private Map<Relation, TupleSet> tail;
+	/** The last state materialized and its index. */
+	private Instance cached;
+	private Map<Relation, TupleSet> cachedTuples;
+	private int cachedIndex = -1;
+
+	/**
+	 * Encodes a sequence of states, unless it already is.
+	 * 
+	 * @param states
+	 *            the states.
+	 * @return the encoded states.
+	 */
+	static TraceStates of(List<Instance> states) {
+		if (states instanceof TraceStates)
+			return (TraceStates) states;
+		TraceStates res = new TraceStates();
+		for (Instance s : states)
+			res.append(s);
+		return res;
+	}
+
+	/**
+	 * Appends a state to the trace, storing only its differences to the last
+	 * one.
+	 * 
+	 * @param state
+	 *            the new state.
+	 */
+	synchronized void append(Instance state) {
+		if (tail == null) {
+			universe = state.universe();
+			ints = state.intTuples();
+			tail = new LinkedHashMap<Relation, TupleSet>();
+			for (Relation r : state.relations())
+				tail.put(r, state.tuples(r).clone());
+			checkpoints.add(new LinkedHashMap<Relation, TupleSet>(tail));
+			return;
+		}
+		Map<Relation, Delta> delta = new LinkedHashMap<Relation, Delta>();
+		for (Relation r : state.relations()) {
+			TupleSet now = state.tuples(r), prev = tail.get(r);
+			if (prev == null)
+				delta.put(r, new Delta(now.clone(), universe.factory().noneOf(r.arity())));
+			else if (!prev.equals(now)) {
+				TupleSet added = now.clone(), removed = prev.clone();
+				added.removeAll(prev);
+				removed.removeAll(now);
+				delta.put(r, new Delta(added, removed));
+			}
+		}
+		for (Relation r : tail.keySet())
+			if (!state.contains(r))
+				delta.put(r, Delta.ABSENT);
+		apply(tail, delta);
+		deltas.add(delta.isEmpty() ? Collections.<Relation, Delta> emptyMap() : delta);
+		if (deltas.size() % CHECKPOINT == 0)
+			checkpoints.add(new LinkedHashMap<Relation, TupleSet>(tail));
+	}
+
+	/**
+	 * Applies the changes of a state to the tuples of the previous one. Changed
+	 * tuple sets are replaced by new ones, since they may be shared.
+	 */
+	private void apply(Map<Relation, TupleSet> tuples, Map<Relation, Delta> delta) {
+		for (Map.Entry<Relation, Delta> e : delta.entrySet()) {
+			Relation r = e.getKey();
+			Delta d = e.getValue();
+			if (d == Delta.ABSENT)
+				tuples.remove(r);
+			else {
+				TupleSet prev = tuples.get(r);
+				TupleSet ts = prev == null ? universe.factory().noneOf(r.arity()) : prev.clone();
+				ts.removeAll(d.removed);
+				ts.addAll(d.added);
+				tuples.put(r, ts);
+			}
+		}
+	}
+
+	/**
+	 * Materializes the i-th state, starting from the last one materialized or
+	 * from the closest checkpoint, whichever precedes it more closely.
+	 */
+	@Override
+	public synchronized Instance get(int i) {
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size());
+		if (i == cachedIndex)
+			return cached;
+		int j = i / CHECKPOINT * CHECKPOINT;
+		Map<Relation, TupleSet> tuples;
+		if (cachedIndex >= j && cachedIndex < i) {
+			tuples = new LinkedHashMap<Relation, TupleSet>(cachedTuples);
+			j = cachedIndex;
+		} else
+			tuples = new LinkedHashMap<Relation, TupleSet>(checkpoints.get(i / CHECKPOINT));
+		for (; j < i; j++)
+			apply(tuples, deltas.get(j));
+		Map<Relation, TupleSet> views = new LinkedHashMap<Relation, TupleSet>();
+		for (Map.Entry<Relation, TupleSet> e : tuples.entrySet())
+			views.put(e.getKey(), e.getValue().unmodifiableView());
+		cachedIndex = i;
+		cachedTuples = tuples;
+		cached = new Instance(universe, Collections.unmodifiableMap(views), Ints.unmodifiableSequence(ints));
+		return cached;
+	}
+
+	@Override
+	public synchronized int size() {
+		return tail == null ? 0 : deltas.size() + 1;
+	}
+
+	/**
+	 * Sets the tuples of a relation in every state.
+	 * 
+	 * @param relation
+	 *            the relation.
+	 * @param tuples
+	 *            its tuples, drawn from the universe of the states.
+	 */
+	synchronized void put(Relation relation, TupleSet tuples) {
+		if (tail == null)
+			return;
+		TupleSet ts = tuples.clone();
+		for (Map<Relation, TupleSet> checkpoint : checkpoints)
+			checkpoint.put(relation, ts);
+		tail.put(relation, ts);
+		for (Map<Relation, Delta> delta : deltas)
+			delta.remove(relation);
+		cachedIndex = -1;
+	}
+
+	/**
+	 * Removes a relation from every state.
+	 * 
+	 * @param relation
+	 *            the relation.
+	 */
+	synchronized void removeRelation(Relation relation) {
+		for (Map<Relation, TupleSet> checkpoint : checkpoints)
+			checkpoint.remove(relation);
+		if (tail != null)
+			tail.remove(relation);
+		for (Map<Relation, Delta> delta : deltas)
+			delta.remove(relation);
+		cachedIndex = -1;
+	}
+
+}
@@ -26,6 +26,11 @@ public class LightSat4JRef extends SATFactory {
 	public boolean incremental() {
 		return true;
 	}
+
+	@Override
+	public boolean assumptions() {
+		return true;
+	}
 	@Override
 	public Optional<String> getDescription() {
 		return Optional.of("SAT4J is a Java library used for solving Boolean Satisfiability (SAT) problems and more generally Pseudo-Boolean (PB) problems. It is an open-source project under the GNU LGPL license, providing various SAT and MaxSAT solvers in Java. It is very reliable and works on all platforms");
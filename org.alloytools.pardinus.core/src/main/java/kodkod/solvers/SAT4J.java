@@ -23,12 +23,14 @@ package kodkod.solvers;
 
 import java.util.NoSuchElementException;
 
+import org.sat4j.core.VecInt;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.ISolver;
 import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.IteratorInt;
 
-import kodkod.engine.satlab.SATSolver;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
 
 /**
  * A wrapper class that provides
@@ -37,11 +39,12 @@ import kodkod.engine.satlab.SATSolver;
  * 
  * @author Emina Torlak
  */
-public final class SAT4J implements SATSolver {
+public final class SAT4J implements AssumptionSATSolver {
 	private ISolver solver;
 	private final ReadOnlyIVecInt wrapper;
 	private Boolean sat; 
 	private int vars, clauses;
+	private volatile boolean aborted;
 	
 	/**
 	 * Constructs a wrapper for the given instance
@@ -114,10 +117,36 @@ public final class SAT4J implements SATSolver {
 	 */
 	public boolean solve() {
 		try {
+			if (aborted)
+				throw new SATAbortedException("aborted");
 			if (!Boolean.FALSE.equals(sat))
 				sat = Boolean.valueOf(solver.isSatisfiable());
 			return sat;
 		} catch (org.sat4j.specs.TimeoutException e) {
+			if (aborted)
+				throw new SATAbortedException(e);
+			throw new RuntimeException("timed out");
+		} 
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#solve(int[])
+	 */
+	// [HASLab] incremental unrolling
+	public boolean solve(int[] assumptions) {
+		try {
+			if (aborted)
+				throw new SATAbortedException("aborted");
+			if (Boolean.FALSE.equals(sat))
+				return false;
+			// unsat under assumptions is not definitive
+			final boolean res = solver.isSatisfiable(new VecInt(assumptions));
+			sat = res ? Boolean.TRUE : null;
+			return res;
+		} catch (org.sat4j.specs.TimeoutException e) {
+			if (aborted)
+				throw new SATAbortedException(e);
 			throw new RuntimeException("timed out");
 		} 
 	}
@@ -134,6 +163,18 @@ public final class SAT4J implements SATSolver {
 		return solver.model(variable);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#abort()
+	 */
+	// [HASLab] trace length portfolio
+	public void abort() {
+		aborted = true;
+		final ISolver s = solver;
+		if (s != null)
+			s.expireTimeout();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATSolver#free()
@@ -0,0 +1,137 @@
+package kodkod.solvers.api;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.engine.config.Reporter;
+
+/**
+ * Measures a phase of an analysis that may involve external tools: its
+ * wall-clock time and the peak resident set size. The peak is the high-water
+ * mark of the processes {@link #watch(Process) watched} during the phase, which
+ * only live for the phase, or otherwise the largest resident size of this JVM
+ * sampled while the phase runs, as its own high-water mark covers the whole
+ * life of the JVM. Resident sizes are read from /proc and are -1 where that is
+ * not available.
+ */
+public final class PhaseTimer {
+
+	private static final long SAMPLE_MS = 50;
+
+	private static final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "phase-rss-sampler");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final String name;
+	private final long start;
+	private long millis = -1;
+	private volatile long peakRss = -1;
+	private volatile boolean watched;
+	private ScheduledFuture<?> sampling;
+
+	private PhaseTimer(String name) {
+		this.name = name;
+		this.start = System.nanoTime();
+		this.sampling = sample("/proc/self/status", "VmRSS:");
+	}
+
+	/**
+	 * Starts measuring a phase.
+	 *
+	 * @param name the name of the phase.
+	 * @return the running timer.
+	 */
+	public static PhaseTimer start(String name) {
+		return new PhaseTimer(name);
+	}
+
+	/**
+	 * Samples the resident set size of an external process until it exits or
+	 * the phase stops. Only one process is sampled at a time.
+	 *
+	 * @param process the process run during this phase.
+	 * @return this timer.
+	 */
+	public synchronized PhaseTimer watch(Process process) {
+		sampling.cancel(false);
+		if (!watched)
+			peakRss = -1;
+		watched = true;
+		ScheduledFuture<?> s = sample("/proc/" + process.pid() + "/status", "VmHWM:");
+		process.onExit().thenRun(() -> s.cancel(false));
+		sampling = s;
+		return this;
+	}
+
+	private ScheduledFuture<?> sample(String status, String field) {
+		return sampler.scheduleAtFixedRate(() -> update(kb(status, field)), 0, SAMPLE_MS, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void update(long rss) {
+		if (rss > peakRss)
+			peakRss = rss;
+	}
+
+	/**
+	 * Stops measuring the phase, fixing its time and peak resident size.
+	 *
+	 * @return this timer.
+	 */
+	public synchronized PhaseTimer stop() {
+		if (millis < 0) {
+			millis = (System.nanoTime() - start) / 1000000;
+			sampling.cancel(false);
+			if (!watched)
+				update(kb("/proc/self/status", "VmRSS:"));
+		}
+		return this;
+	}
+
+	/**
+	 * Stops measuring the phase and reports it.
+	 *
+	 * @param reporter the reporter.
+	 */
+	public void stop(Reporter reporter) {
+		stop();
+		reporter.phase(name, millis, peakRss);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * The duration of the phase in milliseconds, -1 while running.
+	 */
+	public long millis() {
+		return millis;
+	}
+
+	/**
+	 * The peak resident set size sampled during the phase in kilobytes, -1 if
+	 * unavailable.
+	 */
+	public long peakRss() {
+		return peakRss;
+	}
+
+	private static long kb(String status, String field) {
+		try {
+			for (String line : Files.readAllLines(Paths.get(status)))
+				if (line.startsWith(field))
+					return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+		} catch (IOException | RuntimeException e) {
+			// process already gone or no procfs
+		}
+		return -1;
+	}
+
+}
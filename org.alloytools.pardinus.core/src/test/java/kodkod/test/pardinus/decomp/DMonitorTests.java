@@ -0,0 +1,142 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.decomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import kodkod.engine.Explorer;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.DecomposedOptions.DMode;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.decomp.DMonitorMXBean;
+
+/**
+ * Tests the live metrics of the decomposed solving process, exported through
+ * JMX and reported as JSON snapshots.
+ */
+public class DMonitorTests extends DecomposedFixture {
+
+	private final List<String> snapshots = Collections.synchronizedList(new ArrayList<String>());
+
+	public DMonitorTests() {
+		super(4);
+	}
+
+	private PardinusSolver solver(long period) {
+		ExtendedOptions opt = options(2);
+		opt.setDecomposedMode(DMode.PARALLEL);
+		opt.setMetricsPeriod(period);
+		opt.setReporter(new AbstractReporter() {
+			@Override
+			public void reportMetrics(String json) {
+				snapshots.add(json);
+			}
+		});
+		return new PardinusSolver(opt);
+	}
+
+	private static Set<ObjectName> registered() throws MalformedObjectNameException {
+		return ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("kodkod.decomp:type=DMonitor,*"), null);
+	}
+
+	private static long sum(String json, String key) {
+		Matcher m = Pattern.compile("\"" + key + "\":\\[([0-9,]*)\\]").matcher(json);
+		assertTrue(key, m.find());
+		long s = 0;
+		for (String v : m.group(1).split(","))
+			s += Long.parseLong(v);
+		return s;
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		Explorer<Solution> sols = solver(20).solveAll(disjoint(), bounds);
+		assertTrue(sols.hasNextC());
+
+		// still running, exported through JMX
+		Set<ObjectName> names = registered();
+		assertEquals(1, names.size());
+		DMonitorMXBean monitor = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), names.iterator().next(), DMonitorMXBean.class);
+		assertEquals(2, monitor.getWorkers());
+		assertEquals(2, monitor.getBusyWorkers() + monitor.getIdleWorkers());
+		assertEquals(monitor.getHistogramBounds().length + 1, monitor.getSolvingHistogram().length);
+
+		int sats = enumerate(sols).size();
+		assertEquals(3 * 3 * 3 * 3 - 2 * 2 * 2 * 2 - 2 * 2 * 2 * 2 + 1, sats);
+
+		// a last snapshot is reported and the bean unregistered once terminated
+		for (int i = 0; i < 100 && !registered().isEmpty(); i++)
+			Thread.sleep(20);
+		assertTrue(registered().isEmpty());
+		assertFalse(snapshots.isEmpty());
+		String last = snapshots.get(snapshots.size() - 1);
+		assertTrue(last, last.contains("\"configsDone\":true"));
+		assertTrue(last, last.contains("\"sats\":" + sats));
+		assertTrue(last, last.contains("\"winner\":\"integrated\""));
+		Matcher runs = Pattern.compile("\"runs\":([0-9]+)").matcher(last);
+		assertTrue(runs.find());
+		assertEquals(Long.parseLong(runs.group(1)), sum(last, "translationHistogram"));
+		assertEquals(Long.parseLong(runs.group(1)), sum(last, "solvingHistogram"));
+	}
+
+	@Test
+	public void testFinished() throws Exception {
+		// fewer configurations than the batch, all solved without consuming them
+		Explorer<Solution> sols = solver(20).solveAll(disjoint().and(a.one()).and(b.one()), bounds);
+		assertTrue(sols.hasNextC());
+		for (int i = 0; i < 100 && !registered().isEmpty(); i++)
+			Thread.sleep(20);
+		assertTrue(registered().isEmpty());
+		String last = snapshots.get(snapshots.size() - 1);
+		assertTrue(last, last.contains("\"configsDone\":true"));
+		assertTrue(last, last.contains("\"sats\":" + 4 * 3));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		Explorer<Solution> sols = solver(0).solveAll(disjoint(), bounds);
+		assertTrue(sols.hasNextC());
+		assertTrue(registered().isEmpty());
+		enumerate(sols);
+		assertTrue(snapshots.isEmpty());
+	}
+
+}
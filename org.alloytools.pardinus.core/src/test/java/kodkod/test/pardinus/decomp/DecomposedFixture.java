@@ -0,0 +1,145 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.decomp;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.Explorer;
+import kodkod.engine.Solution;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+/**
+ * The problem shared by the decomposed solving tests: configurations over the
+ * sets a and b, and integrated problems over the set c and the relation d, over
+ * n atoms.
+ */
+public abstract class DecomposedFixture {
+
+	protected final int n;
+
+	protected Relation a, b, c, d;
+	protected PardinusBounds bounds;
+
+	protected DecomposedFixture(int n) {
+		this.n = n;
+	}
+
+	@Before
+	public void setup() {
+		a = Relation.unary("a");
+		b = Relation.unary("b");
+		c = Relation.unary("c");
+		d = Relation.binary("d");
+
+		Object[] atoms = new Object[n];
+		for (int i = 0; i < n; i++)
+			atoms[i] = "A" + i;
+		Universe uni = new Universe(atoms);
+		TupleFactory f = uni.factory();
+
+		PardinusBounds bounds1 = new PardinusBounds(uni);
+		PardinusBounds bounds2 = new PardinusBounds(uni);
+		bounds1.bound(a, f.allOf(1));
+		bounds1.bound(b, f.allOf(1));
+		bounds2.bound(c, f.allOf(1));
+		bounds2.bound(d, f.allOf(2));
+		bounds = new PardinusBounds(bounds1, bounds2);
+	}
+
+	/** Decomposed solving without symmetry breaking. */
+	static ExtendedOptions options(int threads) {
+		ExtendedOptions opt = new ExtendedOptions();
+		opt.setSolver(SATFactory.DEFAULT);
+		opt.setSymmetryBreaking(0);
+		opt.setRunTemporal(false);
+		opt.setRunUnbounded(false);
+		opt.setRunDecomposed(true);
+		opt.setThreads(threads);
+		return opt;
+	}
+
+	/** Configurations over a and b, the remainder relating them through c and d. */
+	protected Formula linked() {
+		Formula partial = a.some().and(a.in(b));
+		Formula remainder = c.in(b).and(c.eq(a).not()).and(d.in(a.product(c))).and(d.some());
+		return partial.and(remainder);
+	}
+
+	/** Many configurations, only those where a and b are disjoint are sat. */
+	protected Formula disjoint() {
+		Formula partial = a.some().and(b.some());
+		Formula remainder = d.in(a.product(b)).and(d.some()).and(a.product(b).in(d)).and(a.intersection(b).no()).and(c.no());
+		return partial.and(remainder);
+	}
+
+	/** The sat solutions found going through every configuration. */
+	static List<Solution> enumerate(Explorer<Solution> sols) {
+		List<Solution> found = new ArrayList<Solution>();
+		Solution sol = sols.next();
+		while (true) {
+			if (sol.unsat()) {
+				if (!sols.hasNextC())
+					break;
+				sol = sols.nextC();
+				if (sol.unsat())
+					break;
+			}
+			found.add(sol);
+			sol = sols.next();
+		}
+		return found;
+	}
+
+	/**
+	 * The instances of a, b, c and d found going through every configuration.
+	 * Skolems are fresh relations for each integrated problem, so solutions
+	 * differing only in skolems are collapsed.
+	 */
+	protected Set<Map<Relation, TupleSet>> instances(Explorer<Solution> sols) {
+		Set<Map<Relation, TupleSet>> found = new HashSet<Map<Relation, TupleSet>>();
+		Set<Map<Relation, TupleSet>> seen = new HashSet<Map<Relation, TupleSet>>();
+		for (Solution sol : enumerate(sols)) {
+			assertTrue("repeated solution", seen.add(sol.instance().relationTuples()));
+			Map<Relation, TupleSet> tuples = new HashMap<Relation, TupleSet>(sol.instance().relationTuples());
+			tuples.keySet().retainAll(bounds.amalgamated().relations());
+			found.add(tuples);
+		}
+		return found;
+	}
+}
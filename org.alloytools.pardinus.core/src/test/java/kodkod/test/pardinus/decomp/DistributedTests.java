@@ -0,0 +1,159 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.decomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.DProblemWorker;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.TupleSet;
+
+/**
+ * Tests whether solving the integrated problems in worker processes agrees
+ * with solving them locally.
+ */
+public class DistributedTests extends DecomposedFixture {
+
+	public DistributedTests() {
+		super(3);
+	}
+
+	private ExtendedOptions options(boolean distributed) {
+		ExtendedOptions opt = options(2);
+		opt.setRunDistributed(distributed);
+		// integrated problems must not fall back to local solving
+		opt.setReporter(new AbstractReporter() {
+			@Override
+			public void debug(String debug) {
+				assertFalse(debug, debug.startsWith("Integrated problems not distributable"));
+			}
+
+			@Override
+			public void warning(String warning) {
+				fail(warning);
+			}
+		});
+		opt.configOptions().setReporter(opt.reporter());
+		return opt;
+	}
+
+	/** A remainder with quantifiers, comprehensions, integers and predicates. */
+	private Formula richer() {
+		Variable x = Variable.unary("x"), y = Variable.unary("y");
+		Formula partial = a.some().and(a.in(b));
+		Expression image = x.join(d).some().comprehension(x.oneOf(a)).union(y.product(y).join(c).some().comprehension(y.oneOf(b)));
+		Formula remainder = Formula.and(x.join(d).lone().forAll(x.oneOf(a)), d.acyclic(), d.join(Expression.UNIV).in(a),
+				c.count().lte(IntConstant.constant(2)), c.some().iff(d.some()), image.no().not(),
+				x.in(c).implies(x.join(d.transpose()).some()).forSome(x.oneOf(b)));
+		return partial.and(remainder);
+	}
+
+	private Set<Map<Relation, TupleSet>> enumerate(ExtendedOptions opt, Formula formula) {
+		return instances(new PardinusSolver(opt).solveAll(formula, bounds));
+	}
+
+	@Test
+	public void testEnumeration() {
+		Set<Map<Relation, TupleSet>> expected = enumerate(options(false), linked());
+		Set<Map<Relation, TupleSet>> actual = enumerate(options(true), linked());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testRicher() {
+		Set<Map<Relation, TupleSet>> expected = enumerate(options(false), richer());
+		Set<Map<Relation, TupleSet>> actual = enumerate(options(true), richer());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSat() {
+		assertTrue(new PardinusSolver(options(true)).solve(linked(), bounds).sat());
+	}
+
+	@Test
+	public void testUnsat() {
+		Formula formula = linked().and(c.eq(Expression.UNIV)).and(a.eq(b));
+		assertFalse(new PardinusSolver(options(true)).solve(formula, bounds).sat());
+	}
+
+	@Test
+	public void testListenLoopback() throws IOException {
+		try (ServerSocket server = DProblemWorker.listen(null, 0)) {
+			assertTrue(server.getInetAddress().isLoopbackAddress());
+		}
+		try (ServerSocket server = DProblemWorker.listen("127.0.0.1", 0)) {
+			assertEquals("127.0.0.1", server.getInetAddress().getHostAddress());
+		}
+	}
+
+	@Test
+	public void testHosts() throws IOException {
+		try (ServerSocket server = DProblemWorker.listen(null, 0)) {
+			Thread t = new Thread(() -> {
+				try {
+					while (true) {
+						Socket socket = server.accept();
+						new Thread(() -> {
+							try (Socket s = socket) {
+								DProblemWorker.serve(s.getInputStream(), s.getOutputStream());
+							} catch (IOException e) {
+								// disconnected
+							}
+						}).start();
+					}
+				} catch (IOException e) {
+					// server closed
+				}
+			});
+			t.setDaemon(true);
+			t.start();
+
+			ExtendedOptions opt = options(true);
+			opt.setWorkerHosts(Arrays.asList("localhost:" + server.getLocalPort()));
+			assertEquals(enumerate(options(false), linked()), enumerate(opt, linked()));
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.decomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleSet;
+
+/**
+ * Tests whether solving the integrated problems incrementally under assumptions
+ * agrees with translating each configuration anew.
+ */
+public class IncrementalIntegrationTests extends DecomposedFixture {
+
+	private static final int THREADS = 2;
+
+	/** the number of integrated problems translated */
+	private final AtomicInteger translations = new AtomicInteger();
+
+	public IncrementalIntegrationTests() {
+		super(3);
+	}
+
+	private PardinusSolver solver(boolean incremental, int symmetry) {
+		ExtendedOptions opt = options(THREADS);
+		opt.setSymmetryBreaking(symmetry);
+		opt.setIncrementalIntegration(incremental);
+		opt.setReporter(new AbstractReporter() {
+			@Override
+			public void translatingToBoolean(Formula formula, Bounds bounds) {
+				translations.incrementAndGet();
+			}
+
+			@Override
+			public void debug(String debug) {
+				assertFalse(debug, debug.startsWith("Integrated problems not solvable incrementally"));
+			}
+		});
+		opt.configOptions().setReporter(new AbstractReporter() {});
+		return new PardinusSolver(opt);
+	}
+
+	@Test
+	public void testEnumeration() {
+		Set<Map<Relation, TupleSet>> expected = instances(solver(false, 0).solveAll(linked(), bounds));
+		// each configuration is translated anew
+		assertTrue(translations.getAndSet(0) > THREADS);
+		Set<Map<Relation, TupleSet>> actual = instances(solver(true, 0).solveAll(linked(), bounds));
+		// once per solver thread
+		assertTrue(translations.get() <= THREADS);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testSat() {
+		assertTrue(solver(true, 20).solve(linked(), bounds).sat());
+		assertTrue(translations.get() <= THREADS);
+	}
+
+	@Test
+	public void testUnsat() {
+		Formula formula = linked().and(c.eq(Expression.UNIV)).and(a.eq(b));
+		assertFalse(solver(false, 20).solve(formula, bounds).sat());
+		assertFalse(solver(true, 20).solve(formula, bounds).sat());
+	}
+
+}
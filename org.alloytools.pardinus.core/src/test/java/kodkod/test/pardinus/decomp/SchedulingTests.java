@@ -0,0 +1,123 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.decomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.DecomposedOptions.DMode;
+import kodkod.engine.config.DecomposedOptions.DOrder;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.TupleSet;
+
+/**
+ * Tests whether the scheduling of the integrated problems, namely the number
+ * of solver threads, the order of the configurations and the hybrid mode,
+ * affects the solutions found.
+ */
+public class SchedulingTests extends DecomposedFixture {
+
+	public SchedulingTests() {
+		super(4);
+	}
+
+	private PardinusSolver solver(int threads, DOrder order, DMode mode) {
+		ExtendedOptions opt = options(threads);
+		opt.setDecomposedMode(mode);
+		opt.setConfigOrder(order);
+		opt.configOptions().setReporter(opt.reporter());
+		return new PardinusSolver(opt);
+	}
+
+	@Test
+	public void testOrders() {
+		Set<Map<Relation, TupleSet>> expected = instances(solver(1, DOrder.FIFO, DMode.PARALLEL).solveAll(disjoint(), bounds));
+		// (2^N-1)^2 configurations, those with disjoint a and b have one solution
+		assertEquals(3 * 3 * 3 * 3 - 2 * 2 * 2 * 2 - 2 * 2 * 2 * 2 + 1, expected.size());
+		for (DOrder order : DOrder.values())
+			for (int threads : new int[] { 1, 3, 0 })
+				assertEquals(order + " " + threads, expected, instances(solver(threads, order, DMode.PARALLEL).solveAll(disjoint(), bounds)));
+	}
+
+	@Test
+	public void testSat() {
+		for (DOrder order : DOrder.values()) {
+			assertTrue(solver(0, order, DMode.PARALLEL).solve(disjoint(), bounds).sat());
+			assertTrue(solver(0, order, DMode.HYBRID).solve(disjoint(), bounds).sat());
+		}
+	}
+
+	@Test
+	public void testUnsat() {
+		Formula formula = disjoint().and(a.union(b).eq(Expression.UNIV)).and(d.no());
+		for (DOrder order : DOrder.values()) {
+			assertFalse(solver(0, order, DMode.PARALLEL).solve(formula, bounds).sat());
+			assertFalse(solver(2, order, DMode.PARALLEL).solve(formula, bounds).sat());
+		}
+	}
+
+	@Test
+	public void testConfigSolverFailure() {
+		for (DOrder order : DOrder.values()) {
+			PardinusSolver solver = solver(1, order, DMode.PARALLEL);
+			// the configuration solver fails after its first, sat, configuration,
+			// once the integrated problem of that configuration is likely done
+			AtomicInteger calls = new AtomicInteger();
+			solver.options().configOptions().setReporter(new AbstractReporter() {
+				@Override
+				public void solvingCNF(int step, int primaryVars, int vars, int clauses) {
+					if (calls.incrementAndGet() > 1) {
+						try {
+							Thread.sleep(200);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						throw new IllegalStateException();
+					}
+				}
+			});
+			// which must not be mistaken for a solution
+			List<Solution> sols = enumerate(solver.solveAll(disjoint(), bounds));
+			assertFalse(sols.isEmpty());
+			for (Solution sol : sols)
+				assertNotNull(sol.instance().tuples(d));
+			assertEquals(2, calls.get());
+		}
+	}
+
+}
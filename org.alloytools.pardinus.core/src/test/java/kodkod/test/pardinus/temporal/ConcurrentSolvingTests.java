@@ -0,0 +1,105 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TemporalInstance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+/**
+ * Tests whether independent temporal problems can be solved concurrently in
+ * the same JVM.
+ */
+public class ConcurrentSolvingTests {
+
+	private static final int THREADS = 8;
+
+	// shared by every problem, must not be modified by the translation
+	private static final Relation b = Relation.binary("b");
+	private static final Formula mult = b.function(Expression.UNIV, Expression.UNIV);
+
+	/**
+	 * Solves a problem requiring n+1 states, adding one atom at a time, over a
+	 * fresh universe.
+	 */
+	private static int solve(int n) {
+		ExtendedOptions opt = TraceFixture.options();
+		Universe uni = TraceFixture.universe(n);
+		TupleFactory f = uni.factory();
+
+		Relation a = Relation.unary_variable("a");
+		PardinusBounds bounds = new PardinusBounds(uni);
+		bounds.bound(a, f.allOf(1));
+		bounds.bound(b, f.allOf(2));
+
+		Formula formula = TraceFixture.growing(a).and(mult);
+
+		Solution sol = new PardinusSolver(opt).solve(formula, bounds);
+		assertTrue(sol.sat());
+		return ((TemporalInstance) sol.instance()).prefixLength();
+	}
+
+	@Test
+	public void testConcurrentSolves() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> runs = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 2 * THREADS; i++) {
+				final int n = 2 + i % 4;
+				runs.add(pool.submit(() -> solve(n)));
+			}
+			for (int i = 0; i < runs.size(); i++)
+				assertEquals(3 + i % 4, (int) runs.get(i).get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSequentialAfterConcurrent() throws Exception {
+		String before = mult.toString();
+		testConcurrentSolves();
+		assertEquals(before, mult.toString());
+		for (int n = 2; n < 6; n++)
+			assertEquals(n + 1, solve(n));
+	}
+
+}
@@ -0,0 +1,120 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.engine.Evaluator;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.instance.TemporalInstance;
+
+/**
+ * Tests whether the incremental unrolling of traces over a single SAT solver
+ * agrees with the translation of each trace length anew.
+ */
+public class IncrementalUnrollingTests extends TraceFixture {
+
+	public IncrementalUnrollingTests() {
+		super(4);
+	}
+
+	private Solution solve(Formula formula, boolean incremental) {
+		opt.setIncrementalUnrolling(incremental);
+		return new PardinusSolver(opt).solve(formula, bounds);
+	}
+
+	/** Whether a witness satisfies the formula it was found for. */
+	private void assertWitness(Formula formula, Solution sol) {
+		assertTrue(formula.toString(), sol.sat());
+		assertTrue(formula.toString(), new Evaluator(sol.instance()).evaluate(formula, 0));
+	}
+
+	@Test
+	public void testSatLength() {
+		Solution sol1 = solve(growing(), false);
+		Solution sol2 = solve(growing(), true);
+		assertTrue(sol1.sat());
+		assertWitness(growing(), sol2);
+		assertEquals(n + 1, ((TemporalInstance) sol1.instance()).prefixLength());
+		assertEquals(n + 1, ((TemporalInstance) sol2.instance()).prefixLength());
+	}
+
+	@Test
+	public void testSatMinLength() {
+		opt.setMinTraceLength(3);
+		Solution sol1 = solve(a.some().always(), false);
+		Solution sol2 = solve(a.some().always(), true);
+		assertTrue(sol1.sat());
+		assertTrue(sol2.sat());
+		assertEquals(3, ((TemporalInstance) sol1.instance()).prefixLength());
+		assertEquals(3, ((TemporalInstance) sol2.instance()).prefixLength());
+	}
+
+	@Test
+	public void testSatUniv() {
+		// the states must not be visible through univ
+		Formula formula = growing().and(Expression.UNIV.eq(b));
+		Solution sol = solve(formula, true);
+		assertTrue(sol.sat());
+		assertEquals(n + 1, ((TemporalInstance) sol.instance()).prefixLength());
+	}
+
+	@Test
+	public void testWitnesses() {
+		// the states after the last one must not be part of the witness
+		Formula[] formulas = { a.some().implies(a.some()), a.eq(a.prime()), a.in(b).not().after(),
+				a.some().and(a.no().after()), a.some().always(), a.no().until(a.some()), a.eq(b).eventually(),
+				a.prime().prime().some().and(a.no()) };
+		for (Formula formula : formulas) {
+			Solution sol1 = solve(formula, false);
+			Solution sol2 = solve(formula, true);
+			assertWitness(formula, sol2);
+			assertEquals(formula.toString(), ((TemporalInstance) sol1.instance()).prefixLength(),
+					((TemporalInstance) sol2.instance()).prefixLength());
+		}
+	}
+
+	@Test
+	public void testUnsat() {
+		opt.setMaxTraceLength(n);
+		assertFalse(solve(growing(), false).sat());
+		assertFalse(solve(growing(), true).sat());
+	}
+
+	@Test
+	public void testPast() {
+		// falls back to the regular unrolling
+		Formula formula = growing().and(a.some().implies(a.no().once()).always());
+		Solution sol = solve(formula, true);
+		assertTrue(sol.sat());
+		assertEquals(n + 1, ((TemporalInstance) sol.instance()).prefixLength());
+	}
+
+}
@@ -27,7 +27,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
@@ -270,4 +273,73 @@ public class InstanceExpansionTests {
 
 		solver.free();
 	}
+
+	// [HASLab] delta-encoded traces
+	@Test
+	public void testLongTrace() {
+		int n = 4, len = 150, loop = 37;
+
+		Relation a = Relation.unary_variable("a");
+		Relation r = Relation.binary_variable("r");
+		Relation b = Relation.unary("b");
+
+		Object[] atoms = new Object[n];
+		for (int i = 0; i < n; i++)
+			atoms[i] = "A" + i;
+
+		Universe uni = new Universe(atoms);
+		TupleFactory f = uni.factory();
+
+		// a changes occasionally, r at every state, b never
+		Random rnd = new Random(7);
+		List<Instance> trace = new ArrayList<Instance>();
+		TupleSet as = f.noneOf(1);
+		for (int i = 0; i < len; i++) {
+			Instance st = new Instance(uni);
+			if (i % 5 == 0) {
+				as = f.noneOf(1);
+				for (int j = 0; j < n; j++)
+					if (rnd.nextBoolean())
+						as.add(f.tuple("A" + j));
+			}
+			TupleSet rs = f.noneOf(2);
+			rs.add(f.tuple("A" + (i % n), "A" + ((i + 1) % n)));
+			st.add(a, as.clone());
+			st.add(r, rs);
+			st.add(b, f.setOf("A0"));
+			trace.add(st);
+		}
+
+		TemporalInstance inst = new TemporalInstance(trace, loop, 1);
+		assertEquals("wrong trace length", len, inst.prefixLength());
+		for (int i = 0; i < len; i++)
+			assertEquals("state mismatched with original", trace.get(i).relationTuples(), inst.state(i).relationTuples());
+		for (int k = 0; k < 500; k++) {
+			int i = rnd.nextInt(3 * len);
+			assertEquals("state mismatched with original", trace.get(inst.normalizedIndex(i)).relationTuples(), inst.state(i).relationTuples());
+		}
+
+		Evaluator e1 = new Evaluator(inst);
+		for (int i = 0; i < len + 10; i++) {
+			Evaluator e2 = new Evaluator(inst.state(i));
+			assertEquals("expanded representation mistached with single state", e1.evaluate(a, i).toString(), e2.evaluate(a).toString());
+			assertEquals("expanded representation mistached with single state", e1.evaluate(r, i).toString(), e2.evaluate(r).toString());
+		}
+
+		TemporalInstance view = inst.unmodifiableView();
+		for (int i = 0; i < len; i++)
+			assertEquals("view mismatched with original", trace.get(i).relationTuples(), view.state(i).relationTuples());
+		try {
+			view.state(3).add(b, f.setOf("A1"));
+			fail("states should not be modifiable");
+		} catch (UnsupportedOperationException e) {}
+
+		inst.add(b, f.setOf("A1", "A2"));
+		inst.remove(r);
+		for (int i = 0; i < len; i++) {
+			assertEquals("relation update not propagated", f.setOf("A1", "A2"), inst.state(i).tuples(b));
+			assertEquals("relation removal not propagated", null, inst.state(i).tuples(r));
+			assertEquals("state mismatched with original", trace.get(i).tuples(a), inst.state(i).tuples(a));
+		}
+	}
 }
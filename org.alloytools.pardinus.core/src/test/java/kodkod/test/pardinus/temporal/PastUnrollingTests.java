@@ -14,16 +14,20 @@ import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
 import kodkod.ast.operator.FormulaOperator;
+import kodkod.engine.Evaluator;
 import kodkod.engine.Solution;
 import kodkod.engine.Solver;
 import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.fol2sat.Translator;
 import kodkod.engine.ltl2fol.LTL2FOLTranslator;
 import kodkod.engine.ltl2fol.NNFReplacer;
 import kodkod.engine.ltl2fol.TemporalBoundsExpander;
 import kodkod.engine.ltl2fol.TemporalTranslation;
 import kodkod.engine.ltl2fol.TemporalTranslator;
 import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
 import kodkod.instance.PardinusBounds;
+import kodkod.instance.TemporalInstance;
 import kodkod.instance.Universe;
 
 /**
@@ -1046,4 +1050,39 @@ public class PastUnrollingTests {
 		return;
 	}
 
+	/*
+	 * Subformulas with lower past operator height are only quantified over the
+	 * unrolls they require, checked against the evaluation over all (and more)
+	 * unrolls for every trace of up to 3 states.
+	 */
+	@Test
+	public final void testAdaptiveUnrolls() {
+		n = 2;
+		doBounds();
+		Universe u = b.universe();
+		Formula shallow = S.some().always();
+		Formula deep = S.some().and(S.no().and(S.some().once()).once()).eventually();
+		Formula mixed = S.no().historically().or(S.some().before()).eventually().and(S.lone().always());
+		Formula[] tts = new Formula[] { shallow.or(deep), shallow.not().and(deep), mixed.or(deep), deep.always() };
+		ExtendedOptions options = new ExtendedOptions();
+
+		for (int len = 1; len <= 3; len++)
+			for (int vals = 0; vals < (1 << len); vals++)
+				for (int loop = 0; loop < len; loop++) {
+					List<Instance> states = new ArrayList<Instance>();
+					for (int i = 0; i < len; i++) {
+						Instance st = new Instance(u);
+						st.add(S, (vals & (1 << i)) != 0 ? u.factory().setOf("A0") : u.factory().noneOf(1));
+						states.add(st);
+					}
+					for (Formula tt : tts) {
+						int dp = TemporalTranslator.countHeight(tt);
+						boolean adaptive = new Evaluator(new TemporalInstance(states, loop, dp)).evaluate(tt);
+						TemporalInstance full = new TemporalInstance(states, loop, dp + 2);
+						Formula ff = LTL2FOLTranslator.translate(tt, 0, true, new HashMap<Formula,Formula>());
+						assertEquals(tt + " at " + vals + "/" + loop, Translator.evaluate(ff, full, options).booleanValue(), adaptive);
+					}
+				}
+	}
+
 }
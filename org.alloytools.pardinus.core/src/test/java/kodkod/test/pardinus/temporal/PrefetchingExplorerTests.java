@@ -0,0 +1,150 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.Explorer;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.PrefetchingExplorer;
+import kodkod.engine.Solution;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+/**
+ * Tests whether exploring with solutions computed ahead produces the same
+ * solutions as exploring without, including when switching between iteration
+ * operations.
+ */
+public class PrefetchingExplorerTests {
+
+	private ExtendedOptions opt;
+	private Relation a, b;
+	private PardinusBounds bounds;
+	private Formula formula;
+
+	@Before
+	public void setup() {
+		opt = TraceFixture.options();
+		opt.setMaxTraceLength(5);
+
+		Universe uni = TraceFixture.universe(3);
+		TupleFactory f = uni.factory();
+
+		a = Relation.unary_variable("a");
+		b = Relation.unary("b");
+		bounds = new PardinusBounds(uni);
+		bounds.bound(a, f.allOf(1));
+		bounds.bound(b, f.allOf(1));
+		formula = a.in(b).always().and(a.some().eventually()).and(a.lone().always());
+	}
+
+	/**
+	 * Applies a sequence of operations, 'N', 'C', 'P' or 'S', to an explorer,
+	 * recording the solutions and the operations that fail.
+	 */
+	private List<String> explore(int prefetch, String ops) {
+		opt.setPrefetch(prefetch);
+		PardinusSolver solver = new PardinusSolver(opt);
+		Explorer<Solution> sols = solver.solveAll(formula, bounds);
+		assertEquals(prefetch > 0, sols instanceof PrefetchingExplorer);
+		List<String> res = new ArrayList<String>();
+		for (char op : ops.toCharArray()) {
+			Solution sol;
+			try {
+				switch (op) {
+					case 'C':
+						sol = sols.nextC();
+						break;
+					case 'P':
+						sol = sols.nextP();
+						break;
+					case 'S':
+						sol = sols.nextS(1, 1, Collections.singleton(a));
+						break;
+					default:
+						sol = sols.next();
+				}
+			} catch (RuntimeException e) {
+				res.add(op + " " + e.getClass().getSimpleName());
+				continue;
+			}
+			// leaves time for the next solutions to be computed ahead
+			if (prefetch > 0)
+				pause();
+			res.add(op + " " + (sol.sat() ? sol.instance().toString() : "UNSAT") + " " + sols.hasNext() + sols.hasNextC() + sols.hasNextP());
+		}
+		solver.free();
+		return res;
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void check(String ops) {
+		List<String> expected = explore(0, ops);
+		for (int prefetch = 1; prefetch <= 3; prefetch++)
+			assertEquals(expected, explore(prefetch, ops));
+	}
+
+	@Test
+	public void testRepeated() {
+		check("NNNNNNNN");
+	}
+
+	@Test
+	public void testSwitching() {
+		check("NNCPPCCNSSPC");
+	}
+
+	@Test
+	public void testSegments() {
+		check("NSSSSSSCSS");
+	}
+
+	@Test
+	public void testExhausted() {
+		opt.setMaxTraceLength(1);
+		List<String> res = explore(2, "NNNNN");
+		assertTrue(res.contains("N NoSuchElementException"));
+		assertEquals(explore(0, "NNNNN"), res);
+	}
+
+}
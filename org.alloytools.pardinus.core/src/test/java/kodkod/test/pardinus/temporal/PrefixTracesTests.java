@@ -0,0 +1,138 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Evaluator;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.ltl2fol.TemporalTranslator;
+import kodkod.instance.TemporalInstance;
+
+/**
+ * Tests whether searching for finite prefixes of formulas in the safety
+ * fragment agrees with searching for lassos.
+ */
+public class PrefixTracesTests extends TraceFixture {
+
+	public PrefixTracesTests() {
+		super(3);
+	}
+
+	private Solution solve(Formula formula, boolean prefix) {
+		opt.setPrefixTraces(prefix);
+		return new PardinusSolver(opt).solve(formula, bounds);
+	}
+
+	@Test
+	public void testFragment() {
+		assertTrue(TemporalTranslator.admitsPrefixTraces(a.some().always()));
+		assertTrue(TemporalTranslator.admitsPrefixTraces(a.no().eventually().not()));
+		assertTrue(TemporalTranslator.admitsPrefixTraces(a.no().after().eventually().and(a.in(b).always())));
+		assertTrue(TemporalTranslator.admitsPrefixTraces(a.some().once().eventually()));
+		assertTrue(TemporalTranslator.admitsPrefixTraces(a.some().always().implies(b.some()).not()));
+		assertFalse(TemporalTranslator.admitsPrefixTraces(a.some().eventually().always()));
+		assertFalse(TemporalTranslator.admitsPrefixTraces(a.some().always().eventually().not()));
+		assertFalse(TemporalTranslator.admitsPrefixTraces(a.in(a.prime()).always()));
+		assertFalse(TemporalTranslator.admitsPrefixTraces(a.some().always().eventually().implies(b.some())));
+		assertFalse(TemporalTranslator.admitsPrefixTraces(a.some().releases(a.no().after())));
+	}
+
+	@Test
+	public void testSat() {
+		// a counterexample to "always a in b" that only holds later in the trace
+		Formula formula = Formula.and(a.no(), a.in(b).after().after(), a.some().after().after().after(), a.lone().always());
+		Solution lasso = solve(formula, false);
+		Solution prefix = solve(formula, true);
+		assertTrue(lasso.sat());
+		assertTrue(prefix.sat());
+		TemporalInstance inst = (TemporalInstance) prefix.instance();
+		assertEquals(((TemporalInstance) lasso.instance()).prefixLength(), inst.prefixLength());
+		assertEquals(inst.prefixLength() - 1, inst.loop);
+		assertTrue(prefix.stats().primaryVariables() < lasso.stats().primaryVariables());
+	}
+
+	@Test
+	public void testUnsat() {
+		Formula formula = a.some().always().and(a.no().eventually());
+		assertFalse(solve(formula, false).sat());
+		assertFalse(solve(formula, true).sat());
+	}
+
+	@Test
+	public void testTrivialLength() {
+		// trivially true at every length, the shortest prefix must be found
+		Formula formula = a.eq(a.prime());
+		Solution lasso = solve(formula, false);
+		Solution prefix = solve(formula, true);
+		assertTrue(prefix.sat());
+		assertEquals(1, ((TemporalInstance) lasso.instance()).prefixLength());
+		assertEquals(1, ((TemporalInstance) prefix.instance()).prefixLength());
+		assertTrue(new Evaluator(prefix.instance()).evaluate(formula, 0));
+	}
+
+	@Test
+	public void testTautology() {
+		Formula[] formulas = new Formula[] { a.some().implies(a.some()), b.some().or(b.no()) };
+		for (Formula formula : formulas) {
+			Solution sol = solve(formula, true);
+			assertTrue(sol.sat());
+			assertEquals(1, ((TemporalInstance) sol.instance()).prefixLength());
+			assertTrue(new Evaluator(sol.instance()).evaluate(formula, 0));
+		}
+	}
+
+	@Test
+	public void testEnumeration() {
+		Formula formula = a.some().always();
+		opt.setPrefixTraces(true);
+		Iterator<Solution> sols = new PardinusSolver(opt).solveAll(formula, bounds);
+		int n = 0;
+		while (n < 10 && sols.hasNext()) {
+			Solution sol = sols.next();
+			if (!sol.sat())
+				break;
+			assertTrue(new Evaluator(sol.instance()).evaluate(formula, 0));
+			n++;
+		}
+		assertEquals(10, n);
+	}
+
+	@Test
+	public void testOutsideFragment() {
+		// requires a proper loop, solved as a lasso
+		Formula formula = a.no().eventually().always().and(a.some().eventually().always());
+		Solution sol = solve(formula, true);
+		assertTrue(sol.sat());
+		assertTrue(((TemporalInstance) sol.instance()).loop < ((TemporalInstance) sol.instance()).prefixLength() - 1);
+	}
+
+}
@@ -0,0 +1,135 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TemporalInstance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+/**
+ * Tests whether breaking the symmetries of the time dimension enumerates every
+ * trace of a given length exactly once, by comparing with the enumeration of
+ * every lasso.
+ */
+public class TemporalSymmetryTests {
+
+	private static final int LENGTH = 4;
+
+	private ExtendedOptions opt;
+	private Relation a;
+	private PardinusBounds bounds;
+
+	@Before
+	public void setup() {
+		opt = TraceFixture.options();
+		opt.setSymmetryBreaking(0);
+		opt.setMinTraceLength(LENGTH);
+		opt.setMaxTraceLength(LENGTH);
+
+		Universe uni = TraceFixture.universe(2);
+		TupleFactory f = uni.factory();
+
+		a = Relation.unary_variable("a");
+		bounds = new PardinusBounds(uni);
+		bounds.bound(a, f.allOf(1));
+	}
+
+	/** Enumerates the lassos of the solutions of a formula. */
+	private List<String> lassos(Formula formula, boolean symmetries) {
+		opt.setTempSymmetries(symmetries);
+		PardinusSolver solver = new PardinusSolver(opt);
+		List<String> res = new ArrayList<String>();
+		Iterator<Solution> sols = solver.solveAll(formula, bounds);
+		Solution sol = sols.next();
+		while (sol.sat()) {
+			res.add(trace((TemporalInstance) sol.instance()));
+			sol = sols.next();
+		}
+		solver.free();
+		return res;
+	}
+
+	/**
+	 * The canonical representation of the infinite trace of an instance, with the
+	 * shortest loop and prefix.
+	 */
+	private String trace(TemporalInstance inst) {
+		List<String> states = new ArrayList<String>();
+		for (int i = 0; i < inst.prefixLength(); i++)
+			states.add(inst.state(i).tuples(a).toString());
+		int l = inst.loop, n = states.size(), p = n - l;
+		for (int d = 1; d < n - l; d++)
+			if ((n - l) % d == 0 && states.subList(l, n - d).equals(states.subList(l + d, n))) {
+				p = d;
+				break;
+			}
+		while (l > 0 && states.get(l - 1).equals(states.get(l + p - 1)))
+			l--;
+		return states.subList(0, l) + "" + states.subList(l, l + p);
+	}
+
+	private void check(Formula formula) {
+		List<String> all = lassos(formula, false);
+		List<String> broken = lassos(formula, true);
+		Set<String> traces = new HashSet<String>(all);
+		assertTrue(all.size() > traces.size());
+		assertEquals(traces.size(), broken.size());
+		assertEquals(traces, new HashSet<String>(broken));
+	}
+
+	@Test
+	public void testFuture() {
+		check(a.lone().always());
+	}
+
+	@Test
+	public void testPast() {
+		check(a.lone().always().and(a.no().once().always()));
+	}
+
+	@Test
+	public void testConstant() {
+		Relation b = Relation.unary("b");
+		bounds.bound(b, bounds.universe().factory().allOf(1));
+		check(b.some().and(a.eq(b).always()));
+	}
+
+}
@@ -8,6 +8,7 @@ import kodkod.engine.ltl2fol.TemporalTranslator;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.util.LinkedHashMap;
 
@@ -515,4 +516,20 @@ public class TemporalTranslatorTests {
 		Formula result = FIRST.join(PREFIX.transpose()).some().and(f1.and(f2));		
 		assertEquals(result.toString(), ((BinaryFormula)LTL2FOLTranslator.translate(initial,0,false,new LinkedHashMap<Formula,Formula>())).right().toString());
 	}
+
+	/* Sharing */
+	@Test
+	public final void sharing_same_state() {
+		// structurally equal but distinct formulas at the same state
+		Formula initial = elected.in(elected.prime()).after().and(elected.in(elected.prime()).after());
+		BinaryFormula result = (BinaryFormula) ((BinaryFormula)LTL2FOLTranslator.translate(initial,0,false,new LinkedHashMap<Formula,Formula>())).right();
+		assertSame(result.left(), result.right());
+	}
+
+	@Test
+	public final void sharing_state_expressions() {
+		Formula initial = elected.some().after().and(elected.lone().after());
+		BinaryFormula result = (BinaryFormula) ((BinaryFormula)LTL2FOLTranslator.translate(initial,0,false,new LinkedHashMap<Formula,Formula>())).right();
+		assertSame(((MultiplicityFormula) result.left()).expression(), ((MultiplicityFormula) result.right()).expression());
+	}
 }
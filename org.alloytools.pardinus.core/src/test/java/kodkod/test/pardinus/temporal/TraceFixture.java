@@ -0,0 +1,99 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import org.junit.Before;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+/**
+ * The problem shared by the trace length tests: a variable set a and a static
+ * set b over n atoms, with traces of up to 10 states.
+ */
+public abstract class TraceFixture {
+
+	protected final int n;
+
+	protected ExtendedOptions opt;
+	protected Relation a, b;
+	protected PardinusBounds bounds;
+
+	protected TraceFixture(int n) {
+		this.n = n;
+	}
+
+	@Before
+	public void setup() {
+		opt = options();
+		Universe uni = universe(n);
+		TupleFactory f = uni.factory();
+
+		a = Relation.unary_variable("a");
+		b = Relation.unary("b");
+		bounds = new PardinusBounds(uni);
+		bounds.bound(a, f.allOf(1));
+		bounds.bound(b, f.allOf(1));
+	}
+
+	/** Bounded temporal solving with traces of up to 10 states. */
+	static ExtendedOptions options() {
+		ExtendedOptions opt = new ExtendedOptions();
+		opt.setSolver(SATFactory.DEFAULT);
+		opt.setSymmetryBreaking(20);
+		opt.setRunDecomposed(false);
+		opt.setRunTemporal(true);
+		opt.setRunUnbounded(false);
+		opt.setMaxTraceLength(10);
+		return opt;
+	}
+
+	/** A universe of atoms A0 to An-1. */
+	static Universe universe(int n) {
+		Object[] atoms = new Object[n];
+		for (int i = 0; i < n; i++)
+			atoms[i] = "A" + i;
+		return new Universe(atoms);
+	}
+
+	/**
+	 * Adds one atom at a time to a until all are added, requiring as many states
+	 * as atoms plus one.
+	 */
+	static Formula growing(Relation a) {
+		Formula init = a.no();
+		Formula step = a.in(a.prime()).and(a.prime().difference(a).one()).or(a.eq(Expression.UNIV).and(a.prime().eq(a)));
+		return Formula.and(init, step.always(), a.eq(Expression.UNIV).eventually());
+	}
+
+	/** Adds one atom at a time until all are added, requiring n+1 states. */
+	protected Formula growing() {
+		return growing(a);
+	}
+}
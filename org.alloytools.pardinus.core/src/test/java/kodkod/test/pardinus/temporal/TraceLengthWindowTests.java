@@ -0,0 +1,74 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.instance.TemporalInstance;
+
+/**
+ * Tests whether checking a window of trace lengths concurrently agrees with
+ * checking them one at a time.
+ */
+public class TraceLengthWindowTests extends TraceFixture {
+
+	public TraceLengthWindowTests() {
+		super(4);
+	}
+
+	private Solution solve(Formula formula, int window) {
+		opt.setTraceLengthWindow(window);
+		return new PardinusSolver(opt).solve(formula, bounds);
+	}
+
+	@Test
+	public void testSatLength() {
+		for (int window = 1; window <= n + 2; window++) {
+			Solution sol = solve(growing(), window);
+			assertTrue(sol.sat());
+			assertEquals(n + 1, ((TemporalInstance) sol.instance()).prefixLength());
+		}
+	}
+
+	@Test
+	public void testSatMinLength() {
+		opt.setMinTraceLength(3);
+		Solution sol = solve(a.some().always(), 4);
+		assertTrue(sol.sat());
+		assertEquals(3, ((TemporalInstance) sol.instance()).prefixLength());
+	}
+
+	@Test
+	public void testUnsat() {
+		opt.setMaxTraceLength(n);
+		assertFalse(solve(growing(), 3).sat());
+	}
+
+}
@@ -0,0 +1,92 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import kodkod.engine.PardinusSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.TemporalOptions.TraceStrategy;
+import kodkod.instance.TemporalInstance;
+
+/**
+ * Tests the trace length selected by the several trace strategies, with and
+ * without incremental unrolling.
+ */
+public class TraceStrategyTests extends TraceFixture {
+
+	public TraceStrategyTests() {
+		super(4);
+	}
+
+	private int length(TraceStrategy strategy, boolean incremental) {
+		opt.setTraceStrategy(strategy);
+		opt.setIncrementalUnrolling(incremental);
+		Solution sol = new PardinusSolver(opt).solve(growing(), bounds);
+		assertTrue(sol.sat());
+		return ((TemporalInstance) sol.instance()).prefixLength();
+	}
+
+	@Test
+	public void testLinear() {
+		assertEquals(n + 1, length(TraceStrategy.LINEAR, false));
+		assertEquals(n + 1, length(TraceStrategy.LINEAR, true));
+	}
+
+	@Test
+	public void testDoubling() {
+		// 1, 2, 4, 8
+		assertEquals(8, length(TraceStrategy.DOUBLING, false));
+		assertEquals(8, length(TraceStrategy.DOUBLING, true));
+		// capped by the maximum
+		opt.setMaxTraceLength(6);
+		assertEquals(6, length(TraceStrategy.DOUBLING, false));
+		assertEquals(6, length(TraceStrategy.DOUBLING, true));
+	}
+
+	@Test
+	public void testBisection() {
+		assertEquals(n + 1, length(TraceStrategy.BISECTION, false));
+		assertEquals(n + 1, length(TraceStrategy.BISECTION, true));
+		opt.setMinTraceLength(3);
+		assertEquals(n + 1, length(TraceStrategy.BISECTION, false));
+		assertEquals(n + 1, length(TraceStrategy.BISECTION, true));
+	}
+
+	@Test
+	public void testUnsat() {
+		opt.setMaxTraceLength(n);
+		for (TraceStrategy strategy : TraceStrategy.values()) {
+			opt.setTraceStrategy(strategy);
+			opt.setIncrementalUnrolling(false);
+			assertFalse(new PardinusSolver(opt).solve(growing(), bounds).sat());
+			opt.setIncrementalUnrolling(true);
+			assertFalse(new PardinusSolver(opt).solve(growing(), bounds).sat());
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.pardinus.temporal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Solver;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.ltl2fol.TemporalTranslation;
+import kodkod.engine.ltl2fol.TemporalTranslator;
+
+/**
+ * Tests whether reusing the length-independent translation of a temporal
+ * problem across trace lengths agrees with translating each length anew.
+ */
+public class TranslationReuseTests extends TraceFixture {
+
+	public TranslationReuseTests() {
+		super(3);
+	}
+
+	/** Whether the static version of a translation is sat. */
+	private boolean sat(TemporalTranslation trans) {
+		return new Solver(opt).solve(trans.extFormula(), trans.extBounds()).sat();
+	}
+
+	private void assertSteps(Formula formula) {
+		opt.setMinTraceLength(1);
+		TemporalTranslation trans = TemporalTranslator.translate(formula, bounds, opt);
+		Formula ext = trans.extFormula();
+		while (trans.traceLength() <= n + 1) {
+			// only the bounds are expanded again
+			assertSame(ext, trans.extFormula());
+			ExtendedOptions fresh = options();
+			fresh.setMinTraceLength(trans.traceLength());
+			TemporalTranslation anew = TemporalTranslator.translate(formula, bounds, fresh);
+			assertEquals(trans.traceLength(), anew.traceLength());
+			assertEquals("length " + trans.traceLength(), sat(anew), sat(trans));
+			// all atoms are added in n+1 states
+			assertEquals("length " + trans.traceLength(), trans.traceLength() > n, sat(trans));
+			trans = TemporalTranslator.nextStep(trans);
+		}
+		TemporalTranslation next = TemporalTranslator.translateNext(trans);
+		assertSame(ext, next.extFormula());
+		assertTrue(sat(next));
+	}
+
+	@Test
+	public void testNextStep() {
+		assertSteps(growing());
+	}
+
+	@Test
+	public void testNextStepPast() {
+		assertSteps(growing().and(a.some().implies(a.no().once()).always()));
+	}
+
+}
@@ -0,0 +1,80 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.test.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import kodkod.solvers.api.PhaseTimer;
+
+import org.junit.Test;
+
+public class PhaseTimerTest {
+
+	private static final String SELF = "/proc/self/status";
+
+	@Test
+	public void testUnwatched() throws Exception {
+		assumeTrue(new File(SELF).canRead());
+		long before = kb(SELF, "VmRSS:");
+		PhaseTimer timer = PhaseTimer.start("unwatched");
+		Thread.sleep(120);
+		timer.stop();
+		long hwm = kb(SELF, "VmHWM:");
+		assertTrue(timer.millis() >= 100);
+		// the resident size of the phase, bounded by that of the whole JVM
+		assertTrue(timer.peakRss() > 0);
+		assertTrue(timer.peakRss() <= hwm);
+		assertTrue(timer.peakRss() >= before / 2);
+		// stopping again fixes nothing new
+		long peak = timer.peakRss(), millis = timer.millis();
+		timer.stop();
+		assertEquals(peak, timer.peakRss());
+		assertEquals(millis, timer.millis());
+	}
+
+	@Test
+	public void testWatched() throws Exception {
+		assumeTrue(new File(SELF).canRead() && new File("/bin/sleep").canExecute());
+		PhaseTimer timer = PhaseTimer.start("watched");
+		Process p = new ProcessBuilder("/bin/sleep", "0.3").start();
+		timer.watch(p);
+		p.waitFor();
+		timer.stop();
+		// the peak is that of the external process, far smaller than this JVM
+		assertTrue(timer.peakRss() > 0);
+		assertTrue(timer.peakRss() < kb(SELF, "VmRSS:"));
+	}
+
+	private static long kb(String status, String field) throws Exception {
+		for (String line : Files.readAllLines(Paths.get(status)))
+			if (line.startsWith(field))
+				return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+		return -1;
+	}
+}
@@ -25,22 +25,20 @@ package org.alloytools.solvers.natv.electrod;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 import kodkod.ast.Relation;
 import kodkod.engine.unbounded.InvalidUnboundedSolution;
@@ -100,31 +98,67 @@ public class ElectrodReader {
     }
 
     public TemporalInstance read(Reader reader) throws InvalidUnboundedSolution {
-        return read(new InputSource(reader));
+        try {
+            return read(factory().createXMLStreamReader(reader));
+        } catch (XMLStreamException e) {
+            throw new InvalidUnboundedSolution("Failed to parse Electrod XML.", e);
+        }
     }
 
     public TemporalInstance read(InputSource source) throws InvalidUnboundedSolution {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setValidating(false);
-        factory.setIgnoringElementContentWhitespace(true);
+        if (source.getCharacterStream() != null)
+            return read(source.getCharacterStream());
+        try {
+            if (source.getByteStream() != null)
+                return read(factory().createXMLStreamReader(source.getByteStream()));
+            return read(factory().createXMLStreamReader(source.getSystemId(), new URL(source.getSystemId()).openStream()));
+        } catch (XMLStreamException | IOException e) {
+            throw new InvalidUnboundedSolution("Failed to parse Electrod XML.", e);
+        }
+    }
+
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        return factory;
+    }
+
+    /**
+     * Streams through the XML solution, building each state as soon as it is
+     * read, rather than building the whole document first.
+     */
+    private TemporalInstance read(XMLStreamReader xml) throws InvalidUnboundedSolution {
+        // Electrod names are resolved through indexes built once per solution
+        Map<String,Relation> name2rel = new HashMap<String,Relation>();
+        for (Relation r : bounds.relations()) {
+            String nm = rel2name.get(r);
+            if (nm != null)
+                name2rel.putIfAbsent(nm, r);
+        }
+        Map<String,Object> name2atom = new HashMap<String,Object>();
+        for (int i = 0; i < bounds.universe().size(); i++)
+            name2atom.putIfAbsent(ElectrodPrinter.normRel(bounds.universe().atom(i).toString()), bounds.universe().atom(i));
+
         try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(source);
-            Element root = doc.getDocumentElement();
-            nbvars = Integer.valueOf(root.getAttributes().getNamedItem("nbvars").getNodeValue());
-            ctime = getMillis(root.getAttributes().getNamedItem("conversion-time").getNodeValue());
-            atime = getMillis(root.getAttributes().getNamedItem("analysis-time").getNodeValue());
-            NodeList elems = root.getChildNodes();
-            int c = 0;
-            for (int i = 0; i < elems.getLength(); i++) {
-                if (elems.item(i).getNodeName().equals("st")) {
-                    if (elems.item(i).getAttributes().getNamedItem("loop-target").getNodeValue().equals("true"))
-                        loop = c;
-                    insts.add(state(elems.item(i)));
-                    c++;
+            try {
+                while (xml.hasNext() && xml.next() != XMLStreamConstants.START_ELEMENT);
+                nbvars = Integer.valueOf(xml.getAttributeValue(null, "nbvars"));
+                ctime = getMillis(xml.getAttributeValue(null, "conversion-time"));
+                atime = getMillis(xml.getAttributeValue(null, "analysis-time"));
+                int c = 0;
+                while (xml.hasNext()) {
+                    if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("st")) {
+                        if ("true".equals(xml.getAttributeValue(null, "loop-target")))
+                            loop = c;
+                        insts.add(state(xml, name2rel, name2atom));
+                        c++;
+                    }
                 }
+            } finally {
+                xml.close();
             }
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+        } catch (XMLStreamException | RuntimeException e) {
             throw new InvalidUnboundedSolution("Failed to parse Electrod XML.", e);
         }
         if (insts.size() == 0)
@@ -162,53 +196,62 @@ public class ElectrodReader {
 
     /**
      * Parses a single state of the trace as a static regular Kodkod {@link Instance
-     * instance}. Atoms and relations may have been renamed by
-     * {@link ElectrodPrinter#normRel(String)}, which must be reverted.
+     * instance}, consuming the stream up to the end of the state. Atoms and
+     * relations may have been renamed by {@link ElectrodPrinter#normRel(String)},
+     * which must be reverted.
      *
-     * @param node the XML node containing the state.
+     * @param xml the XML stream positioned at the start of the state.
+     * @param name2rel the relations indexed by their Electrod names.
+     * @param name2atom the atoms indexed by their Electrod names.
      * @return the static instance corresponding to the state.
      */
-    private Instance state(Node node) {
-        Instance inst = new Instance(bounds.universe());
-
-        for (Relation r : bounds.relations()) {
-
-            NodeList e = null;
-            for (int i = 0; i < node.getChildNodes().getLength(); i++) {
-                if (node.getChildNodes().item(i).getNodeName().equals("rel")) {
-                    String nm = rel2name.get(r);
-                    if (node.getChildNodes().item(i).getAttributes().getNamedItem("name").getNodeValue().equals(nm))
-                        e = node.getChildNodes().item(i).getChildNodes();
-                }
-            }
-            List<List<String>> buff__ = new ArrayList<List<String>>();
-
-            if (e != null)
-                for (int i = 0; i < e.getLength(); i++) {
-                    if (e.item(i).getNodeName().equals("t")) {
-                        List<String> buff_ = new ArrayList<String>();
-                        for (int j = 0; j < e.item(i).getChildNodes().getLength(); j++) {
-                            if (e.item(i).getChildNodes().item(j).getNodeName().equals("a")) {
-                                buff_.add(e.item(i).getChildNodes().item(j).getTextContent());
-                            }
-                        }
-                        buff__.add(buff_);
-                    }
-                }
-
-            List<Tuple> buff = new ArrayList<Tuple>();
-            for (List<String> buff_ : buff__) {
-                List<Object> _buff = new ArrayList<Object>();
-                for (String x : buff_)
-                    for (int i = 0; i < bounds.universe().size(); i++) {
-                        if (ElectrodPrinter.normRel(bounds.universe().atom(i).toString()).equals(x))
-                            _buff.add(bounds.universe().atom(i));
+    private Instance state(XMLStreamReader xml, Map<String,Relation> name2rel, Map<String,Object> name2atom) throws XMLStreamException {
+        Map<Relation,List<Tuple>> tuples = new HashMap<Relation,List<Tuple>>();
+        Relation rel = null;
+        List<Object> atoms = null;
+        int depth = 1;
+        while (depth > 0) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT :
+                    depth++;
+                    switch (xml.getLocalName()) {
+                        case "rel" :
+                            rel = name2rel.get(xml.getAttributeValue(null, "name"));
+                            if (rel != null)
+                                tuples.computeIfAbsent(rel, r -> new ArrayList<Tuple>());
+                            break;
+                        case "t" :
+                            atoms = new ArrayList<Object>();
+                            break;
+                        case "a" :
+                            Object atom = name2atom.get(xml.getElementText());
+                            depth--;
+                            if (atoms != null && atom != null)
+                                atoms.add(atom);
+                            break;
+                        default :
+                            break;
                     }
-                buff.add(bounds.universe().factory().tuple(_buff));
+                    break;
+                case XMLStreamConstants.END_ELEMENT :
+                    depth--;
+                    if (xml.getLocalName().equals("t")) {
+                        if (rel != null)
+                            tuples.get(rel).add(bounds.universe().factory().tuple(atoms));
+                        atoms = null;
+                    } else if (xml.getLocalName().equals("rel"))
+                        rel = null;
+                    break;
+                default :
+                    break;
             }
+        }
 
+        Instance inst = new Instance(bounds.universe());
+        for (Relation r : bounds.relations()) {
+            List<Tuple> buff = tuples.get(r);
             TupleSet t;
-            if (buff.isEmpty())
+            if (buff == null || buff.isEmpty())
                 t = bounds.universe().factory().noneOf(r.arity());
             else
                 t = bounds.universe().factory().setOf(buff);
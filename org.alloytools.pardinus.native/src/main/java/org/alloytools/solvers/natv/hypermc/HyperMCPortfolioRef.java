@@ -0,0 +1,47 @@
+package org.alloytools.solvers.natv.hypermc;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import aQute.bnd.annotation.spi.ServiceProvider;
+import kodkod.engine.satlab.SATFactory;
+
+@ServiceProvider(SATFactory.class )
+public class HyperMCPortfolioRef extends HyperMCSolverRef {
+
+    private static final long serialVersionUID = 1L;
+
+    public HyperMCPortfolioRef() {
+        super("hypersmv");
+    }
+
+    @Override
+    public String id() {
+        return "hyper.portfolio";
+    }
+
+    @Override
+    List<String[]> backends() {
+        return Arrays.asList(new String[] {
+                                           "ah", "--ahsolver=forq"
+        }, new String[] {
+                         "ah", "--ahsolver=spot"
+        }, new String[] {
+                         "ah", "--ahsolver=rabit"
+        }, new String[] {
+                         "ah", "--ahsolver=bait"
+        });
+    }
+
+    @Override
+    public Optional<String> getDescription() {
+        return Optional.ofNullable("This is a portfolio of the AutoHyper inclusion checkers run concurrently over the same electrod output, returning the first result, with translations through electrod and hypersmv.");
+    }
+
+    @Override
+    public String check() {
+        return "todo: need to check electrod/hypersmv/ah combination in some way";
+    }
+
+}
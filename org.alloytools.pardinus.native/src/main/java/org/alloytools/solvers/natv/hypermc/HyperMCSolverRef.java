@@ -4,17 +4,22 @@ import static kodkod.util.nodes.AnnotatedNode.annotateRoots;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -46,15 +51,20 @@ import kodkod.instance.PardinusBounds;
 import kodkod.instance.TemporalInstance;
 import kodkod.instance.TupleSet;
 import kodkod.solvers.api.NativeCode;
+import kodkod.solvers.api.PhaseTimer;
 import kodkod.solvers.api.TemporalSolverFactory;
 import kodkod.util.nodes.AnnotatedNode;
 
 abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFactory {
 
-    private static final long serialVersionUID = 1L;
-    final File                electrod;
-    final File                solver;
-    final String              solverId;
+    private static final long    serialVersionUID = 1L;
+    /** The image of the containers in which hypersmv runs the back-ends. */
+    static final String          DOCKER_IMAGE     = "hyperalloy/hypercheckers-arm64";
+    /** The variables of a trace in the LTLSPEC generated by electrod. */
+    private static final Pattern TRACE_VAR        = Pattern.compile("([a-zA-Z0-9#_-]*)-_([a-zA-Z0-9#_-]*)####0([a-zA-Z0-9#_-]*)");
+    final File                   electrod;
+    final File                   solver;
+    final String                 solverId;
 
     class HyperMCSolver implements HyperSolver<ExtendedOptions> {
 
@@ -200,18 +210,34 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
         }
 
         try {
+            // every run gets its own workspace, which is also the working
+            // directory of the external tools, so that the files they create
+            // (A.witness, A.xml, prop.hp) never clash with concurrent runs;
+            // electrod and hypersmv only take files, which hypersmv also
+            // mounts in its back-end containers, so these cannot be piped
             File tempDir = Files.createTempDirectory(options.uniqueName()).toFile();
+            // trace models are often identical across commands, reuse their SMV
+            String key = dry && options.smvCache() && SMVCache.INSTANCE.enabled() ? SMVCache.key(electrod, args, elo) : null;
             File eloFile = new File(tempDir, "output.elo");
             write(eloFile, elo);
-            File out = new File(tempDir, ".out");
             args.add(eloFile.getAbsolutePath());
-            processBuilder.redirectError(out);
-            processBuilder.redirectOutput(out);
-            reporter.debug("starting electrod process with : " + args);
-
-            process = processBuilder.start();
-            exitCode = process.waitFor();
-            output = read(out);
+            if (key != null && SMVCache.INSTANCE.restore(key, tempDir)) {
+                reporter.debug("reusing cached electrod output " + key);
+                exitCode = 0;
+            } else {
+                processBuilder.directory(tempDir);
+                processBuilder.redirectErrorStream(true);
+                reporter.debug("starting electrod process with : " + args);
+
+                PhaseTimer electrodPhase = PhaseTimer.start(dry ? "electrod smv" : "electrod hyperformula");
+                process = processBuilder.start();
+                electrodPhase.watch(process);
+                output = drain(process);
+                exitCode = process.waitFor();
+                electrodPhase.stop(reporter);
+                if (exitCode == 0 && key != null)
+                    SMVCache.INSTANCE.store(key, tempDir);
+            }
 
             if (exitCode == 0) {
                 String smvName = tempDir.list((File dir, String name) -> name.endsWith(".smv"))[0];
@@ -220,71 +246,45 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
                 if (!dry) {
 
                     // define hp file from SMV LTLPEC
-                    Pattern pattern = Pattern.compile("\\nLTLSPEC(.*?);", Pattern.DOTALL);
-                    Matcher matcher = pattern.matcher(read(smvFile));
-                    matcher.find();
-                    String hpContent = matcher.group(1).trim();
-                    pattern = Pattern.compile("([a-zA-Z0-9#_-]*)-_([a-zA-Z0-9#_-]*)####0([a-zA-Z0-9#_-]*)");
-                    matcher = pattern.matcher(hpContent);
-                    hpContent = matcher.replaceAll("$1$3[$2]");
-                    hpContent = options.isLast().get(0) + "\n" + hpContent;
+                    String hpContent;
+                    try (BufferedReader smv = Files.newBufferedReader(smvFile.toPath(), StandardCharsets.UTF_8)) {
+                        hpContent = hyperFormula(smv, (String) options.isLast().get(0));
+                    }
 
+                    File hpFile = new File(tempDir, "prop.hp");
+                    write(hpFile, hpContent);
 
                     if (solver != null) {
-                        File hpFile = new File(tempDir, "prop.hp");
-                        Files.write(hpFile.toPath(), hpContent.getBytes());
-
                         // run hypersmv
                         File hs = NativeCode.platform.getExecutable("hypersmv").orElse(null);
-                        args.clear();
-                        args.add(hs.getAbsolutePath());
-                        args.add("ah");
-                        options.isLast().subList(4, options.isLast().size()).forEach(x -> args.add((String) x));
-
-                        args.add("--informula=" + hpFile.getAbsolutePath());
-                        args.add("--ahsolver=forq");
-                        //                    args.add("--debug=True");
-                        args.add("--witness=True");
-                        args.add("--docker=hyperalloy/hypercheckers-arm64");
-
-                        try (BufferedReader br = new BufferedReader(new FileReader("hypersmv.config"))) {
-                            String firstLine = br.readLine();
-                            args.addAll(Arrays.asList(firstLine.split(" ")));
-                        } catch (Exception e) {
-                        }
-
-
-                        processBuilder = new ProcessBuilder(args);
-                        process = processBuilder.start();
-                        processBuilder.redirectErrorStream(true);
-                        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            line = line;
-                        }
-                        exitCode = process.waitFor();
+                        List<String> inputs = new ArrayList<String>();
+                        options.isLast().subList(4, options.isLast().size()).forEach(x -> inputs.add((String) x));
+                        PhaseTimer hypersmvPhase = PhaseTimer.start("hypersmv");
+                        File witnessDir = check(reporter, hs, inputs, hpFile, config(options.hyperSMVConfig()), tempDir, hypersmvPhase);
+                        hypersmvPhase.stop(reporter);
 
                         // run MC solver
                         args.clear();
-                        File el = NativeCode.platform.getExecutable("electrod").orElse(null);
-                        args.add(el.getAbsolutePath());
-                        args.add("A.witness");
+                        args.add(electrod.getAbsolutePath());
+                        args.add(new File(witnessDir, "A.witness").getAbsolutePath());
                         File f = new File((String) options.isLast().get(1), "output.info");
                         args.add("--bt");
                         args.add(f.getAbsolutePath());
 
-                        processBuilder = new ProcessBuilder(args);
-                        process = processBuilder.start();
-                        processBuilder.redirectErrorStream(true);
-                        reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-                        while ((line = reader.readLine()) != null) {
-                            line = line;
+                        reporter.debug("starting electrod process with : " + args);
+                        PhaseTimer replayPhase = PhaseTimer.start("witness replay");
+                        process = new ProcessBuilder(args).directory(witnessDir).redirectErrorStream(true).start();
+                        replayPhase.watch(process);
+                        output = drain(process);
+                        int replayCode = process.waitFor();
+                        replayPhase.stop(reporter);
+                        if (replayCode != 0) {
+                            String report = "electrod witness replay exit code: " + replayCode + ":\n  args=" + String.join(" ", args) + "\n  output=" + output;
+                            reporter.debug(report);
+                            throw new AbortedException(report);
                         }
-                        exitCode = process.waitFor();
 
-                        File xmlFile = new File("A.xml");
+                        File xmlFile = new File(witnessDir, "A.xml");
                         String xmlLink = String.format("%05d.xml", bounds.integration);
                         File link = new File(tempDir, xmlLink);
                         Files.createLink(link.toPath(), xmlFile.toPath());
@@ -292,54 +292,65 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
                         TupleSet atom = bounds.upperBound((Relation) options.isLast().get(2));
 
                         ElectrodReader rd = new ElectrodReader(bounds, rel2name, atom);
-                        TemporalInstance temporalInstance = rd.read(read(xmlFile));
+                        TemporalInstance temporalInstance;
+                        PhaseTimer decodePhase = PhaseTimer.start("xml decode");
+                        try (Reader xml = Files.newBufferedReader(xmlFile.toPath(), StandardCharsets.UTF_8)) {
+                            temporalInstance = rd.read(xml);
+                        }
+                        decodePhase.stop(reporter);
 
                         Bounds outerbds = (Bounds) options.isLast().get(3);
 
-                        List<Instance> new_instances = new ArrayList<Instance>();
-                        // project into outermost quantifier trace
-                        for (int i = 0; i < temporalInstance.prefixLength(); i++) {
-                            Instance instance = new Instance(outerbds.universe());
-                            for (Relation r : outerbds.relations()) {
-                                for (Relation r2 : temporalInstance.state(i).relations()) {
-                                    if (r.name().equals(r2.name())) {
+                        if (temporalInstance != null) {
+                            // witness relations indexed by name once, rather than
+                            // searched for every relation of every state
+                            Map<String,Relation> name2rel = new HashMap<String,Relation>();
+                            for (Relation r2 : temporalInstance.state(0).relations())
+                                name2rel.putIfAbsent(r2.name(), r2);
+
+                            List<Instance> new_instances = new ArrayList<Instance>();
+                            // project into outermost quantifier trace
+                            for (int i = 0; i < temporalInstance.prefixLength(); i++) {
+                                Instance state = temporalInstance.state(i);
+                                Instance instance = new Instance(outerbds.universe());
+                                for (Relation r : outerbds.relations()) {
+                                    Relation r2 = name2rel.get(r.name());
+                                    if (r2 != null) {
                                         TupleSet ts;
 
                                         if (r.arity() == r2.arity())
-                                            ts = temporalInstance.state(i).tuples(r2);
+                                            ts = state.tuples(r2);
                                         else {
-                                            ts = bounds.universe().factory().noneOf(r.arity());
-                                            temporalInstance.state(i).tuples(r2).forEach(t -> {
-                                                List<Object> ats = new ArrayList();
+                                            TupleSet proj = bounds.universe().factory().noneOf(r.arity());
+                                            state.tuples(r2).forEach(t -> {
+                                                List<Object> ats = new ArrayList<Object>(r2.arity() - 1);
                                                 for (int k = 1; k < r2.arity(); k++)
                                                     ats.add(t.atom(k));
-                                                ts.add(bounds.universe().factory().tuple(ats));
+                                                proj.add(bounds.universe().factory().tuple(ats));
                                             });
-
+                                            ts = proj;
                                         }
 
                                         instance.add(r, TemporalBoundsExpander.convertToUniv(ts, outerbds.universe()));
-                                        break;
-                                    }
-                                }
-                                if (!instance.contains(r))
-                                    if (outerbds.lowerBound(r).size() == outerbds.upperBound(r).size())
+                                    } else if (outerbds.lowerBound(r).size() == outerbds.upperBound(r).size())
                                         instance.add(r, outerbds.upperBound(r));
                                     else
                                         throw new RuntimeException("Unbound relation: " + r);
 
+                                }
+                                new_instances.add(instance);
                             }
-                            new_instances.add(instance);
-                        }
 
-                        temporalInstance = new TemporalInstance(new_instances, temporalInstance.loop, temporalInstance.unrolls);
+                            temporalInstance = new TemporalInstance(new_instances, temporalInstance.loop, temporalInstance.unrolls);
+                        }
 
                         Statistics stats = new Statistics(rd.nbvars, 0, 0, rd.ctime, rd.atime);
                         Solution solution = temporalInstance == null ? Solution.unsatisfiable(stats, null) : Solution.satisfiable(stats, temporalInstance);
                         return solution;
                     } else {
-                        File hpFile = new File("prop.hp");
-                        Files.write(hpFile.toPath(), hpContent.getBytes());
+                        // translator only, the property is delivered as the
+                        // output of the solution, in the workspace of the run
+                        reporter.debug("hyperformula written to " + hpFile.getAbsolutePath());
 
                         String xmlLink = String.format("%05d.xml", bounds.integration);
                         File link = new File(tempDir, xmlLink);
@@ -367,6 +378,9 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
         InterruptedException e) {
             Thread.currentThread().interrupt();
             exception = e;
+        } catch (AbortedException e) {
+            // already reported by the back-ends
+            throw e;
         } catch (Exception e) {
             exception = e;
         } finally {
@@ -378,6 +392,238 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
         throw new AbortedException(report);
     }
 
+    /**
+     * The hyper model checking back-ends run by hypersmv, each given as its mode
+     * followed by its specific options. When more than one is given, they are
+     * run as a portfolio.
+     *
+     * @return the back-ends to be run.
+     */
+    List<String[]> backends() {
+        return Collections.singletonList(new String[] {
+                                                       "ah", "--ahsolver=forq"
+        });
+    }
+
+    /**
+     * Runs hypersmv over the trace models and the hyperformula with every
+     * {@link #backends() back-end}. Each back-end runs in its own directory,
+     * where its witness is produced; the first to finish successfully wins and
+     * the remaining processes are destroyed. The resident size of the first
+     * back-end is sampled by the phase timer.
+     *
+     * @return the directory of the winning back-end.
+     * @throws AbortedException if no back-end succeeds, reporting the exit code
+     *             and output of each.
+     */
+    private File check(Reporter reporter, File hs, List<String> inputs, File hpFile, List<String> config, File tempDir, PhaseTimer phase) throws Exception {
+        List<String[]> backends = backends();
+        List<Process> processes = new ArrayList<Process>();
+        List<File> dirs = new ArrayList<File>();
+        ExecutorService pool = Executors.newFixedThreadPool(backends.size());
+        try {
+            CompletionService<Outcome> done = new ExecutorCompletionService<Outcome>(pool);
+            for (int i = 0; i < backends.size(); i++) {
+                String[] backend = backends.get(i);
+                List<String> args = new ArrayList<String>();
+                args.add(hs.getAbsolutePath());
+                args.add(backend[0]);
+                args.addAll(inputs);
+                args.add("--informula=" + hpFile.getAbsolutePath());
+                for (int j = 1; j < backend.length; j++)
+                    args.add(backend[j]);
+                //                    args.add("--debug=True");
+                args.add("--witness=True");
+                args.add("--docker=" + DOCKER_IMAGE);
+                args.addAll(config);
+
+                File dir = backends.size() == 1 ? tempDir : new File(tempDir, backend[0] + i);
+                dir.mkdirs();
+                reporter.debug("starting hypersmv process with : " + args);
+                Process process = new ProcessBuilder(args).directory(dir).redirectErrorStream(true).start();
+                if (processes.isEmpty())
+                    phase.watch(process);
+                processes.add(process);
+                dirs.add(dir);
+                done.submit(() -> {
+                    String output = drain(process);
+                    return new Outcome(String.join(" ", backend), dir, process.waitFor(), output);
+                });
+            }
+            List<Outcome> failed = new ArrayList<Outcome>();
+            for (int i = 0; i < backends.size(); i++) {
+                Outcome outcome = done.take().get();
+                if (outcome.exitCode == 0) {
+                    if (backends.size() > 1)
+                        reporter.debug("hypersmv portfolio won by " + outcome.backend);
+                    return outcome.dir;
+                }
+                failed.add(outcome);
+            }
+            String report = failed(failed);
+            reporter.debug(report);
+            throw new AbortedException(report);
+        } finally {
+            boolean stale = false;
+            for (Process process : processes)
+                if (process.isAlive()) {
+                    destroyTree(process);
+                    stale = true;
+                }
+            pool.shutdownNow();
+            if (stale)
+                stopContainers(reporter, tempDir);
+        }
+    }
+
+    /**
+     * The outcome of a hypersmv back-end.
+     */
+    static final class Outcome {
+
+        final String backend;
+        final File   dir;
+        final int    exitCode;
+        final String output;
+
+        Outcome(String backend, File dir, int exitCode, String output) {
+            this.backend = backend;
+            this.dir = dir;
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Reports the back-ends that failed, none having succeeded.
+     *
+     * @param failed the outcomes of the back-ends, in order of termination.
+     * @return the report.
+     */
+    static String failed(List<Outcome> failed) {
+        StringBuilder report = new StringBuilder("no hypersmv back-end succeeded:");
+        for (Outcome outcome : failed)
+            report.append("\n  ").append(outcome.backend).append(" exit code: ").append(outcome.exitCode).append("\n  output=").append(outcome.output);
+        return report.toString();
+    }
+
+    /**
+     * The additional arguments of hypersmv, given in the first line of its
+     * configuration file.
+     *
+     * @param file the configuration file, or null if none.
+     * @return the additional arguments.
+     * @throws IOException if the configuration file cannot be read.
+     */
+    static List<String> config(String file) throws IOException {
+        if (file == null)
+            return Collections.emptyList();
+        try (BufferedReader br = Files.newBufferedReader(new File(file).toPath(), StandardCharsets.UTF_8)) {
+            String firstLine = br.readLine();
+            if (firstLine == null || firstLine.trim().isEmpty())
+                return Collections.emptyList();
+            return Arrays.asList(firstLine.trim().split("\\s+"));
+        }
+    }
+
+    /**
+     * Extracts the hyperformula from the LTLSPEC of the SMV model generated by
+     * electrod, reading the model only up to the end of the specification.
+     * Trace variables are renamed to the indexed form expected by hypersmv.
+     *
+     * @param smv the SMV model generated by electrod.
+     * @param quants the quantifier prefix of the hyperformula.
+     * @return the contents of the hyperformula file.
+     * @throws IOException if the model has no LTLSPEC.
+     */
+    static String hyperFormula(BufferedReader smv, String quants) throws IOException {
+        StringBuilder spec = null;
+        for (String line; (line = smv.readLine()) != null;) {
+            if (spec == null) {
+                if (!line.startsWith("LTLSPEC"))
+                    continue;
+                spec = new StringBuilder();
+                line = line.substring("LTLSPEC".length());
+            }
+            int end = line.indexOf(';');
+            if (end >= 0) {
+                spec.append(line, 0, end);
+                break;
+            }
+            spec.append(line).append('\n');
+        }
+        if (spec == null)
+            throw new IOException("No LTLSPEC in the SMV model generated by electrod");
+        return quants + "\n" + TRACE_VAR.matcher(spec.toString().trim()).replaceAll("$1$3[$2]");
+    }
+
+    /**
+     * Destroys a process and all its descendants, the latter first so that none
+     * is orphaned while the tree is being destroyed.
+     *
+     * @param process the process to be destroyed.
+     */
+    static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Stops the back-end containers of a run that are still running. The docker
+     * daemon keeps them alive after their client is destroyed, so they are
+     * found among the running containers of the {@link #DOCKER_IMAGE image} by
+     * bind-mounting a directory inside the run's own workspace. Best effort, as
+     * docker may not even be installed.
+     *
+     * @param reporter the reporter of the run.
+     * @param workspace the workspace of the run.
+     */
+    private void stopContainers(Reporter reporter, File workspace) {
+        try {
+            Process ps = new ProcessBuilder("docker", "ps", "-q", "--filter", "ancestor=" + DOCKER_IMAGE).redirectErrorStream(true).start();
+            String running = drain(ps).trim();
+            if (ps.waitFor() != 0 || running.isEmpty())
+                return;
+            List<String> args = new ArrayList<String>(Arrays.asList("docker", "inspect", "--format", "{{.Id}}{{range .Mounts}}\t{{.Source}}{{end}}"));
+            args.addAll(Arrays.asList(running.split("\\s+")));
+            Process inspect = new ProcessBuilder(args).redirectErrorStream(true).start();
+            List<String> stale = containersIn(drain(inspect), workspace);
+            if (inspect.waitFor() != 0 || stale.isEmpty())
+                return;
+            stale.add(0, "kill");
+            stale.add(0, "docker");
+            reporter.debug("stopping hypersmv containers with : " + stale);
+            new ProcessBuilder(stale).redirectErrorStream(true).start().waitFor();
+        } catch (IOException e) {
+            // no docker, no containers
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Selects the containers that bind-mount a directory inside a workspace.
+     *
+     * @param inspect the output of docker inspect, one container per line with
+     *            its id followed by the sources of its mounts, separated by
+     *            tabs.
+     * @param workspace the workspace of a run.
+     * @return the ids of the selected containers.
+     */
+    static List<String> containersIn(String inspect, File workspace) {
+        List<String> ids = new ArrayList<String>();
+        String root = workspace.getAbsolutePath();
+        for (String line : inspect.split("\n")) {
+            String[] fields = line.trim().split("\t");
+            for (int i = 1; i < fields.length; i++)
+                if (fields[i].equals(root) || fields[i].startsWith(root + File.separator)) {
+                    ids.add(fields[0]);
+                    break;
+                }
+        }
+        return ids;
+    }
+
     private String addSolverToPath(String PATH, File solverPath) {
         String dir = solverPath.getParent();
         if (PATH == null) {
@@ -386,16 +632,21 @@ abstract class HyperMCSolverRef extends SATFactory implements TemporalSolverFact
             return dir + File.pathSeparator + PATH;
     }
 
-    private String read(File file) throws Exception {
-        try {
-            if (file != null && file.isFile()) {
-                byte[] allBytes = Files.readAllBytes(file.toPath());
-                return new String(allBytes, StandardCharsets.UTF_8);
-            }
-        } catch (Exception e) {
-            return e.toString();
+    /**
+     * Consumes the merged output of an external process until it terminates, so
+     * that it never blocks on a full pipe.
+     *
+     * @param process the running process.
+     * @return the output of the process.
+     */
+    private String drain(Process process) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                sb.append(line).append('\n');
         }
-        return "no file " + file;
+        return sb.toString();
     }
 
     private void write(File file, String contents) throws Exception {
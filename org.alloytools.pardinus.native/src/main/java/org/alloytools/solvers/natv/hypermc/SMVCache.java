@@ -0,0 +1,171 @@
+package org.alloytools.solvers.natv.hypermc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent, content-addressed cache of the SMV models generated by Electrod
+ * for the trace models of hyperproperties. Entries are keyed by a hash of the
+ * Electrod problem (which is a canonical rendering of the Kodkod formula and
+ * bounds), the Electrod arguments and the Electrod executable itself, and store
+ * the generated .smv file together with the output.info needed to replay
+ * witnesses.
+ * <p>
+ * The cache is opt-in, through {@link kodkod.engine.config.ExtendedOptions#smvCache()}.
+ * It lives in the directory given by the system property
+ * {@code alloy.hypermc.cache} or in {@code ~/.alloy/hypermc} by default.
+ * Entries are evicted least-recently-used first once the cache exceeds
+ * {@code alloy.hypermc.cache.mb} megabytes (by default 256).
+ */
+final class SMVCache {
+
+    static final String   PROPERTY = "alloy.hypermc.cache";
+    static final SMVCache INSTANCE = new SMVCache(System.getProperty(PROPERTY), Long.getLong(PROPERTY + ".mb", 256) * 1024 * 1024);
+
+    private final File    root;
+    private final long    limit;
+
+    /**
+     * @param dir the directory of the cache, or null for the default one.
+     * @param limit the maximum size of the cache in bytes.
+     */
+    SMVCache(String dir, long limit) {
+        File r = dir != null ? new File(dir) : new File(System.getProperty("user.home"), ".alloy" + File.separator + "hypermc");
+        if (!r.isDirectory() && !r.mkdirs())
+            r = null;
+        this.root = r;
+        this.limit = limit;
+    }
+
+    /**
+     * Whether the cache is available.
+     */
+    boolean enabled() {
+        return root != null;
+    }
+
+    /**
+     * Computes the key of an Electrod problem.
+     *
+     * @param electrod the Electrod executable.
+     * @param args the Electrod arguments, excluding the problem file.
+     * @param elo the Electrod problem.
+     * @return the hexadecimal key.
+     */
+    static String key(File electrod, List<String> args, String elo) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update((electrod.getAbsolutePath() + "\0" + electrod.length() + "\0" + electrod.lastModified() + "\0").getBytes(StandardCharsets.UTF_8));
+            for (String arg : args)
+                md.update((arg + "\0").getBytes(StandardCharsets.UTF_8));
+            md.update(elo.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies a cached entry into a workspace.
+     *
+     * @param key the key of the problem.
+     * @param dir the workspace of the run.
+     * @return whether the entry was found.
+     */
+    boolean restore(String key, File dir) {
+        if (root == null)
+            return false;
+        File entry = new File(root, key);
+        File[] files = entry.listFiles();
+        if (files == null || files.length == 0)
+            return false;
+        try {
+            for (File f : files)
+                Files.copy(f.toPath(), new File(dir, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            entry.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the SMV model and the output.info produced in a workspace, evicting
+     * the least recently used entries if the cache grows beyond its limit. The
+     * entry is first assembled aside and then moved into place, so concurrent
+     * runs never observe partial entries.
+     *
+     * @param key the key of the problem.
+     * @param dir the workspace of the run.
+     */
+    void store(String key, File dir) {
+        if (root == null)
+            return;
+        File entry = new File(root, key);
+        if (entry.isDirectory())
+            return;
+        File[] files = dir.listFiles((File d, String name) -> name.endsWith(".smv") || name.equals("output.info"));
+        if (files == null || files.length == 0)
+            return;
+        try {
+            // hidden, so that eviction ignores entries being assembled
+            File tmp = Files.createTempDirectory(root.toPath(), "." + key).toFile();
+            for (File f : files)
+                Files.copy(f.toPath(), new File(tmp, f.getName()).toPath());
+            try {
+                Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // another run stored it first
+                delete(tmp);
+            }
+        } catch (IOException e) {
+            // caching is best effort
+            return;
+        }
+        evict();
+    }
+
+    private synchronized void evict() {
+        File[] entries = root.listFiles((File d, String name) -> !name.startsWith("."));
+        if (entries == null)
+            return;
+        long[] sizes = new long[entries.length];
+        long size = 0;
+        for (int i = 0; i < entries.length; i++) {
+            File[] files = entries[i].listFiles();
+            if (files != null)
+                for (File f : files)
+                    sizes[i] += f.length();
+            size += sizes[i];
+        }
+        if (size <= limit)
+            return;
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> entries[i].lastModified()));
+        for (int i = 0; i < order.length && size > limit; i++) {
+            size -= sizes[order[i]];
+            delete(entries[order[i]]);
+        }
+    }
+
+    private static void delete(File entry) {
+        File[] files = entry.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        entry.delete();
+    }
+}
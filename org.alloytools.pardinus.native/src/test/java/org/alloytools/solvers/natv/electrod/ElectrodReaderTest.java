@@ -0,0 +1,123 @@
+package org.alloytools.solvers.natv.electrod;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import kodkod.ast.Relation;
+import kodkod.engine.unbounded.InvalidUnboundedSolution;
+import kodkod.instance.Instance;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TemporalInstance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+public class ElectrodReaderTest {
+
+    private static final String FIXTURE = "witness.xml";
+
+    private Universe             universe;
+    private TupleFactory         f;
+    private PardinusBounds       bounds;
+    private Map<Relation,String> rel2name;
+    private Relation             a, r, x, b;
+
+    @Before
+    public void setup() {
+        universe = new Universe(Arrays.asList("A$0", "A$1", "B$0"));
+        f = universe.factory();
+        bounds = new PardinusBounds(universe);
+        a = Relation.unary("this/A");
+        r = Relation.binary("this/A.r");
+        // the witness of a trace model, whose state atom is projected away
+        x = Relation.binary("this/W.x");
+        // not in the witness
+        b = Relation.unary("this/B");
+        bounds.bound(a, f.setOf("A$0", "A$1"));
+        bounds.bound(r, f.setOf("A$0", "A$1").product(f.setOf("B$0")));
+        bounds.bound(x, f.setOf("B$0").product(f.setOf("A$0", "A$1")));
+        bounds.boundExactly(b, f.setOf("B$0"));
+        rel2name = new HashMap<Relation,String>();
+        for (Relation rel : bounds.relations())
+            rel2name.put(rel, ElectrodPrinter.normRel(rel.name()));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        ElectrodReader rd = new ElectrodReader(bounds, rel2name, f.setOf("B$0"));
+        TemporalInstance inst;
+        try (Reader xml = new InputStreamReader(fixture(), StandardCharsets.UTF_8)) {
+            inst = rd.read(xml);
+        }
+        assertEquals(42, rd.nbvars);
+        assertEquals(1500, rd.ctime);
+        assertEquals(20, rd.atime);
+        assertEquals(3, inst.prefixLength());
+        assertEquals(1, inst.loop);
+
+        assertState(inst.state(0), set("A$0"), f.setOf(f.tuple("A$0", "B$0")), f.setOf("B$0").product(set("A$1")));
+        assertState(inst.state(1), set("A$0", "A$1"), f.noneOf(2), f.noneOf(2));
+        assertState(inst.state(2), set("A$1"), f.setOf(f.tuple("A$0", "B$0"), f.tuple("A$1", "B$0")), f.setOf("B$0").product(set("A$0", "A$1")));
+    }
+
+    @Test
+    public void testReadSources() throws Exception {
+        TemporalInstance expected;
+        try (Reader xml = new InputStreamReader(fixture(), StandardCharsets.UTF_8)) {
+            expected = new ElectrodReader(bounds, rel2name, f.setOf("B$0")).read(xml);
+        }
+        // the byte stream and the system id of an input source are read alike
+        TemporalInstance bytes;
+        try (InputStream xml = fixture()) {
+            bytes = new ElectrodReader(bounds, rel2name, f.setOf("B$0")).read(new InputSource(xml));
+        }
+        TemporalInstance url = new ElectrodReader(bounds, rel2name, f.setOf("B$0")).read(new InputSource(getClass().getResource(FIXTURE).toString()));
+        for (TemporalInstance inst : Arrays.asList(bytes, url)) {
+            assertEquals(expected.prefixLength(), inst.prefixLength());
+            assertEquals(expected.loop, inst.loop);
+            for (int i = 0; i < expected.prefixLength(); i++)
+                assertEquals(expected.state(i).relationTuples(), inst.state(i).relationTuples());
+        }
+    }
+
+    @Test
+    public void testUnsat() throws Exception {
+        String xml = "<instance nbvars=\"7\" conversion-time=\"1\" analysis-time=\"2\"></instance>";
+        ElectrodReader rd = new ElectrodReader(bounds, rel2name);
+        assertNull(rd.read(xml));
+        assertEquals(7, rd.nbvars);
+    }
+
+    @Test(expected = InvalidUnboundedSolution.class)
+    public void testMalformed() throws Exception {
+        new ElectrodReader(bounds, rel2name).read("<instance nbvars=\"7\" conversion-time=\"1\" analysis-time=\"2\"><st loop-target=\"true\">");
+    }
+
+    private void assertState(Instance state, TupleSet as, TupleSet rs, TupleSet xs) {
+        assertEquals(as, state.tuples(a));
+        assertEquals(rs, state.tuples(r));
+        assertEquals(xs, state.tuples(x));
+        assertEquals(f.noneOf(1), state.tuples(b));
+        assertEquals(4, state.relations().size());
+    }
+
+    private TupleSet set(String... atoms) {
+        return f.setOf((Object[]) atoms);
+    }
+
+    private InputStream fixture() {
+        return getClass().getResourceAsStream(FIXTURE);
+    }
+}
@@ -0,0 +1,101 @@
+package org.alloytools.solvers.natv.hypermc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HyperMCSolverRefTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testHyperFormula() throws Exception {
+        String smv = "MODULE main\n" //
+                     + "VAR x : boolean;\n" //
+                     + "LTLSPEC G (T_x-_A####0_y\n" //
+                     + "  -> F T_x-_B####0_y);\n" //
+                     + "LTLSPEC unreachable;\n";
+        String hp = HyperMCSolverRef.hyperFormula(new BufferedReader(new StringReader(smv)), "forall A. exists B.");
+        assertEquals("forall A. exists B.\nG (T_x_y[A]\n  -> F T_x_y[B])", hp);
+    }
+
+    @Test(expected = IOException.class)
+    public void testHyperFormulaMissing() throws Exception {
+        HyperMCSolverRef.hyperFormula(new BufferedReader(new StringReader("MODULE main\n")), "forall A.");
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(Collections.emptyList(), HyperMCSolverRef.config(null));
+        File config = tmp.newFile("hypersmv.config");
+        Files.write(config.toPath(), " --timeout=60  --cores=2\nignored\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("--timeout=60", "--cores=2"), HyperMCSolverRef.config(config.getPath()));
+        Files.write(config.toPath(), new byte[0]);
+        assertEquals(Collections.emptyList(), HyperMCSolverRef.config(config.getPath()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testConfigMissing() throws Exception {
+        HyperMCSolverRef.config(new File(tmp.getRoot(), "none").getPath());
+    }
+
+    @Test
+    public void testDestroyTree() throws Exception {
+        assumeTrue(new File("/bin/sh").canExecute());
+        // a back-end that, like hypersmv, runs the actual work in a child
+        Process process = new ProcessBuilder("/bin/sh", "-c", "sleep 60 & sleep 60 & wait").start();
+        List<ProcessHandle> descendants;
+        long deadline = System.currentTimeMillis() + 5000;
+        do {
+            descendants = process.descendants().collect(Collectors.toList());
+        } while (descendants.size() < 2 && System.currentTimeMillis() < deadline);
+        assertEquals(2, descendants.size());
+
+        HyperMCSolverRef.destroyTree(process);
+        process.waitFor(5, TimeUnit.SECONDS);
+        assertFalse(process.isAlive());
+        for (ProcessHandle p : descendants) {
+            p.onExit().get(5, TimeUnit.SECONDS);
+            assertFalse(p.isAlive());
+        }
+    }
+
+    @Test
+    public void testFailed() {
+        List<HyperMCSolverRef.Outcome> failed = Arrays.asList(new HyperMCSolverRef.Outcome("hq", new File("hq1"), 2, "no witness\n"), new HyperMCSolverRef.Outcome("ah --ahsolver=forq", new File("ah0"), 137, "killed\n"));
+        String report = HyperMCSolverRef.failed(failed);
+        // every back-end is reported with its own exit code and output
+        assertTrue(report, report.contains("hq exit code: 2\n  output=no witness"));
+        assertTrue(report, report.contains("ah --ahsolver=forq exit code: 137\n  output=killed"));
+    }
+
+    @Test
+    public void testContainersIn() {
+        File workspace = new File("/tmp/run1");
+        String inspect = "c1\t/tmp/run1/ah1\t/usr/share\n" //
+                         + "c2\t/tmp/run10\n" //
+                         + "c3\t/tmp/run1\n" //
+                         + "c4\n" //
+                         + "c5\t/tmp/run2/ah0\n";
+        assertEquals(Arrays.asList("c1", "c3"), HyperMCSolverRef.containersIn(inspect, workspace));
+        assertEquals(Arrays.asList(), HyperMCSolverRef.containersIn("", workspace));
+    }
+}
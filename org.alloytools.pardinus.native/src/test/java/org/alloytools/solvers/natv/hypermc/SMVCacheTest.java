@@ -0,0 +1,109 @@
+package org.alloytools.solvers.natv.hypermc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SMVCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final List<String> ARGS = Arrays.asList("electrod", "--bmc", "10");
+
+    @Test
+    public void testKeyStable() throws Exception {
+        File electrod = executable("v1");
+        assertEquals(SMVCache.key(electrod, ARGS, "problem"), SMVCache.key(electrod, ARGS, "problem"));
+        assertEquals(64, SMVCache.key(electrod, ARGS, "problem").length());
+    }
+
+    @Test
+    public void testKeyInvalidation() throws Exception {
+        File electrod = executable("v1");
+        String key = SMVCache.key(electrod, ARGS, "problem");
+        assertNotEquals(key, SMVCache.key(electrod, ARGS, "problem'"));
+        assertNotEquals(key, SMVCache.key(electrod, Arrays.asList("electrod", "--bmc", "11"), "problem"));
+        // a new electrod invalidates every entry
+        write(electrod, "v2, rebuilt");
+        assertNotEquals(key, SMVCache.key(electrod, ARGS, "problem"));
+    }
+
+    @Test
+    public void testStoreRestore() throws Exception {
+        SMVCache cache = new SMVCache(tmp.newFolder("cache").getPath(), Long.MAX_VALUE);
+        File run = workspace("run", "MODULE main");
+        cache.store("k", run);
+
+        File other = tmp.newFolder("other");
+        assertTrue(cache.restore("k", other));
+        assertEquals("MODULE main", read(new File(other, "A.smv")));
+        assertEquals("info", read(new File(other, "output.info")));
+        // the problem itself is not cached
+        assertFalse(new File(other, "output.elo").exists());
+        assertFalse(cache.restore("missing", other));
+    }
+
+    @Test
+    public void testStoreAtomic() throws Exception {
+        File root = tmp.newFolder("cache");
+        SMVCache cache = new SMVCache(root.getPath(), Long.MAX_VALUE);
+        cache.store("k", workspace("first", "first"));
+        // an entry is never overwritten, nor left half-written
+        cache.store("k", workspace("second", "second"));
+        assertEquals(Arrays.asList("k"), Arrays.asList(root.list()));
+        File other = tmp.newFolder("other");
+        assertTrue(cache.restore("k", other));
+        assertEquals("first", read(new File(other, "A.smv")));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File root = tmp.newFolder("cache");
+        // room for two entries of 9 bytes
+        SMVCache cache = new SMVCache(root.getPath(), 20);
+        cache.store("a", workspace("a", "aaaaa"));
+        new File(root, "a").setLastModified(1000);
+        cache.store("b", workspace("b", "bbbbb"));
+        new File(root, "b").setLastModified(2000);
+        // using the oldest entry makes it the most recent one
+        assertTrue(cache.restore("a", tmp.newFolder("use")));
+        cache.store("c", workspace("c", "ccccc"));
+        assertTrue(new File(root, "a").isDirectory());
+        assertFalse(new File(root, "b").exists());
+        assertTrue(new File(root, "c").isDirectory());
+    }
+
+    private File executable(String content) throws Exception {
+        File f = new File(tmp.getRoot(), "electrod");
+        write(f, content);
+        return f;
+    }
+
+    private File workspace(String name, String smv) throws Exception {
+        File dir = tmp.newFolder(name);
+        write(new File(dir, "A.smv"), smv);
+        write(new File(dir, "output.info"), "info");
+        write(new File(dir, "output.elo"), "problem");
+        return dir;
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File f) throws Exception {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+}